@@ -1,6 +1,6 @@
 set role mudengine_world;
 
-create sequence mudengine_world.MUD_PLACE_SEQ;
+create sequence mudengine_world.MUD_PLACE_SEQ increment by 50;
 
 CREATE TABLE mudengine_world.MUD_PLACE_CLASS (
 	CODE				varchar(20) NOT NULL,
@@ -29,6 +29,7 @@ CREATE TABLE mudengine_world.MUD_PLACE  (
 	CLASS_CODE	varchar(20) NOT NULL,
 	NAME		varchar(30),
 	DESCRIPTION			varchar(500),
+	VERSION		integer NOT NULL DEFAULT 0,
 	CONSTRAINT MUD_PLACE_PK PRIMARY KEY (CODE),
 	FOREIGN KEY (CLASS_CODE) REFERENCES mudengine_world.MUD_PLACE_CLASS(CODE)
 );
@@ -55,5 +56,17 @@ CREATE TABLE mudengine_world.MUD_PLACE_ATTR (
 	FOREIGN KEY (PLACE_CODE) REFERENCES mudengine_world.MUD_PLACE(CODE) on delete cascade
 );
 
+create sequence mudengine_world.MUD_NOTIFICATION_OUTBOX_SEQ increment by 50;
+
+CREATE TABLE mudengine_world.MUD_NOTIFICATION_OUTBOX (
+	CODE				bigint NOT NULL,
+	ENTITY_ID			bigint NOT NULL,
+	EVENT				varchar(30) NOT NULL,
+	PAYLOAD				bytea NOT NULL,
+	AUTH_TOKEN			varchar(1000),
+	CREATED_AT			timestamp NOT NULL DEFAULT now(),
+	CONSTRAINT MUD_NOTIFICATION_OUTBOX_PK PRIMARY KEY (CODE)
+);
+
 
 reset role;
@@ -1,5 +1,8 @@
 set role mudengine_world;
 
+DROP TABLE mudengine_world.MUD_NOTIFICATION_OUTBOX;
+DROP SEQUENCE mudengine_world.MUD_NOTIFICATION_OUTBOX_SEQ;
+
 DROP TABLE mudengine_world.MUD_PLACE_ATTR;
 DROP TABLE mudengine_world.MUD_PLACE_EXIT;
 DROP TABLE mudengine_world.MUD_PLACE;
@@ -4,12 +4,14 @@ import org.springframework.boot.SpringApplication;
 
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages= {
 		"com.cailleach.mudengine.world",
 		"com.cailleach.mudengine.common"
 })
 @EnableAspectJAutoProxy
+@EnableScheduling
 public class MudWorldApplication {
 
 	public static void main(String[] args) {
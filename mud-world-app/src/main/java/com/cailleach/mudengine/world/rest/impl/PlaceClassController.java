@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.cailleach.mudengine.world.rest.PlaceClassEndpoint;
 import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.rest.dto.PlaceClassLineage;
 import com.cailleach.mudengine.world.service.PlaceClassService;
 
 import lombok.RequiredArgsConstructor;
@@ -14,11 +15,23 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class PlaceClassController implements PlaceClassEndpoint {
 
-	private PlaceClassService service;
+	private final PlaceClassService service;
 	
 	@Override
 	public PlaceClass getPlaceClass(@PathVariable String placeClass) {
 		
 		return service.getPlaceClass(placeClass);
 	}
+	
+	@Override
+	public PlaceClassLineage getPlaceClassLineage(@PathVariable String placeClass) {
+		
+		return service.getPlaceClassLineage(placeClass);
+	}
+	
+	@Override
+	public boolean isA(@PathVariable String placeClass, @PathVariable String ancestorClass) {
+		
+		return service.isA(placeClass, ancestorClass);
+	}
 }
@@ -1,5 +1,9 @@
 package com.cailleach.mudengine.world.rest.impl;
 
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -8,6 +12,11 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.cailleach.mudengine.world.rest.PlaceEndpoint;
 import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamage;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamageResult;
+import com.cailleach.mudengine.world.rest.dto.PlaceNeighbourhood;
+import com.cailleach.mudengine.world.rest.dto.PlacePath;
+import com.cailleach.mudengine.world.service.PlaceDamageService;
 import com.cailleach.mudengine.world.service.PlaceService;
 
 import lombok.RequiredArgsConstructor;
@@ -18,6 +27,8 @@ public class PlaceController implements PlaceEndpoint {
 	
 	private final PlaceService service;
 	
+	private final PlaceDamageService damageService;
+	
 	@Override
 	public Place getPlace(@PathVariable Long placeId) {
 
@@ -25,12 +36,49 @@ public class PlaceController implements PlaceEndpoint {
 	}
 
 	
+	@Override
+	public Stream<Place> getPlaces(List<Long> placeIds) {
+		
+		return service.getPlaces(placeIds);
+	}
+	
+	@Override
+	public Stream<Place> getPlacesInBulk(@RequestBody List<Long> placeIds) {
+		
+		return service.getPlaces(placeIds);
+	}
+	
+	@Override
+	public PlaceNeighbourhood getNeighbourhood(@PathVariable Long placeId, int depth, boolean withPlaces) {
+		
+		return service.getNeighbourhood(placeId, depth, withPlaces);
+	}
+	
+	@Override
+	public ResponseEntity<PlacePath> getPath(@PathVariable Long placeId, @PathVariable Long targetPlaceId, 
+			boolean throughClosedExits) {
+		
+		return ResponseEntity.of(service.findPath(placeId, targetPlaceId, throughClosedExits));
+	}
+	
 	@Override
 	public Place updatePlace(@PathVariable Long placeId, @RequestBody Place requestPlace) {
 		
 		return service.updatePlace(placeId, requestPlace);
 	}
 
+	@Override
+	public Place updatePlaceAttrs(@PathVariable Long placeId, @RequestBody Map<String, Integer> attrDeltas) {
+		
+		return service.updatePlaceAttrs(placeId, attrDeltas);
+	}
+
+	@Override
+	public PlaceDamageResult damagePlaces(@RequestBody List<PlaceDamage> damages) {
+		
+		return damageService.damagePlaces(damages);
+	}
+
 	@Override
 	public void destroyPlace(@PathVariable Long placeId) {
 		
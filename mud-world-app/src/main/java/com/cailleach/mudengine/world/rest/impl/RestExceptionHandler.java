@@ -3,6 +3,7 @@ package com.cailleach.mudengine.world.rest.impl;
 import java.time.OffsetDateTime;
 import java.util.Locale;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -10,6 +11,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 import com.cailleach.mudengine.common.exception.EntityNotFoundException;
+import com.cailleach.mudengine.common.exception.IllegalParameterException;
 import com.cailleach.mudengine.common.security.Session;
 import com.cailleach.mudengine.common.utils.ApiErrorMessage;
 import com.cailleach.mudengine.common.utils.CommonConstants;
@@ -35,6 +37,36 @@ public class RestExceptionHandler {
 				.build();
 	}
 
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	@ExceptionHandler(IllegalParameterException.class)
+	public ApiErrorMessage handleIllegalParameterExceptions(IllegalParameterException ex) {
+		
+		String localizedMessage = LocalizedMessages.getMessage(getLocale(), ex.getMessageKey(), ex.getMessageParams());
+
+		return ApiErrorMessage.builder()
+				.status(HttpStatus.BAD_REQUEST.getReasonPhrase())
+				.error(HttpStatus.BAD_REQUEST.toString())
+				.message(localizedMessage)
+				.timestamp(OffsetDateTime.now())
+				.build();
+	}
+
+	/**
+	 * The place changed while being updated, and the changes couldn't be merged.
+	 * The caller should read the place again and retry.
+	 */
+	@ResponseStatus(HttpStatus.CONFLICT)
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	public ApiErrorMessage handleConflictExceptions(OptimisticLockingFailureException ex) {
+
+		return ApiErrorMessage.builder()
+				.status(HttpStatus.CONFLICT.getReasonPhrase())
+				.error(HttpStatus.CONFLICT.toString())
+				.message(ex.getMessage())
+				.timestamp(OffsetDateTime.now())
+				.build();
+	}
+
 	@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
 	@ExceptionHandler(RuntimeException.class)
 	public ApiErrorMessage handleAnyExceptions(RuntimeException ex) {
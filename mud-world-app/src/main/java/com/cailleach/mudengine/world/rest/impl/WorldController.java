@@ -0,0 +1,35 @@
+package com.cailleach.mudengine.world.rest.impl;
+
+import java.io.InputStream;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.cailleach.mudengine.world.rest.WorldEndpoint;
+import com.cailleach.mudengine.world.rest.dto.WorldImportResult;
+import com.cailleach.mudengine.world.service.WorldTransferService;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequiredArgsConstructor
+public class WorldController implements WorldEndpoint {
+	
+	private final WorldTransferService service;
+	
+	@Override
+	public ResponseEntity<StreamingResponseBody> exportWorld() {
+		
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(NDJSON))
+				.body(service::exportWorld);
+	}
+	
+	@Override
+	public WorldImportResult importWorld(InputStream worldStream) {
+		
+		return service.importWorld(worldStream);
+	}
+}
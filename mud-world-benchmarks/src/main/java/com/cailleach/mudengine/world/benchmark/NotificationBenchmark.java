@@ -0,0 +1,102 @@
+package com.cailleach.mudengine.world.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.cailleach.mudengine.common.security.Session;
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.service.impl.NotificationService;
+
+/**
+ * Building the notifications of a place update (before/after comparison).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationBenchmark {
+	
+	private static final int ATTR_COUNT = 12;
+	
+	@Param({"1", "3", "6"})
+	private int exitCount;
+	
+	/**
+	 * What changes between before and after: nothing, every exit toggled or the place class
+	 */
+	@Param({"none", "exits", "class"})
+	private String change;
+	
+	private NotificationService service;
+	
+	private PlaceEntity beforePlace;
+	
+	private PlaceEntity afterPlace;
+	
+	@Setup
+	public void setup() {
+		
+		// Only building the notifications, nothing is sent
+		service = new NotificationService(null, null, null, null, null);
+		
+		// World name is taken from the caller session
+		Session session = new Session();
+		session.setCurWorldName("benchmark");
+		
+		UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken("benchmark", "token");
+		authentication.setDetails(session);
+		
+		SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+		SecurityContextHolder.getContext().setAuthentication(authentication);
+		
+		beforePlace = SyntheticWorld.place(1L, 
+				SyntheticWorld.placeClass(SyntheticWorld.PLACE_CLASS, ATTR_COUNT, "ATTR"), 
+				exitCount);
+		
+		afterPlace = SyntheticWorld.place(1L, 
+				SyntheticWorld.placeClass(SyntheticWorld.PLACE_CLASS, ATTR_COUNT, "ATTR"), 
+				exitCount);
+		
+		switch(change) {
+			case "exits":
+				afterPlace.getExits().forEach(d -> {
+					d.setOpened(!d.isOpened());
+					d.setLocked(!d.isLocked());
+				});
+				break;
+			case "class":
+				afterPlace.setPlaceClass(SyntheticWorld.placeClass(SyntheticWorld.OTHER_PLACE_CLASS, ATTR_COUNT, "ATTR"));
+				break;
+			default:
+				break;
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		SecurityContextHolder.clearContext();
+	}
+	
+	@Benchmark
+	public List<NotificationMessage> handlePlaceChange() {
+		return service.handlePlaceChange(beforePlace, afterPlace);
+	}
+}
@@ -0,0 +1,78 @@
+package com.cailleach.mudengine.world.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+import com.cailleach.mudengine.world.service.impl.NotificationMessageConverter;
+import com.cailleach.mudengine.world.service.impl.NotificationMessageConverter.WireFormat;
+import com.cailleach.mudengine.world.service.impl.NotificationOutbox;
+import com.cailleach.mudengine.world.service.impl.NotificationService;
+
+/**
+ * Encoding and decoding an exit notification in each wire format of the place topic.
+ * 
+ * JAVA is the body of the ObjectMessage sent by default (the notification serialized
+ * as an object), BINARY the body of the BytesMessage.  Their sizes (815 and 44 bytes) are checked
+ * in NotificationMessageConverterTests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationFormatBenchmark {
+	
+	@Param({"JAVA", "BINARY"})
+	private WireFormat format;
+	
+	private NotificationMessage notification;
+	
+	private byte[] payload;
+	
+	@Setup
+	public void setup() {
+		
+		notification = NotificationMessage.builder()
+				.entity(NotificationMessage.EnumEntity.PLACE)
+				.entityId(4242L)
+				.event(EnumNotificationEvent.PLACE_EXIT_OPEN)
+				.messageKey(NotificationService.PLACE_EXIT_OPEN_MSG)
+				.args(new String[] {"NORTH"})
+				.targetEntity(NotificationMessage.EnumEntity.PLACE)
+				.targetEntityId(4243L)
+				.worldName("aforgotten")
+			.build();
+		
+		payload = encode();
+	}
+	
+	@Benchmark
+	public byte[] encode() {
+		
+		return (format==WireFormat.BINARY) ?
+				NotificationMessageConverter.encode(notification) :
+				NotificationOutbox.serialize(notification);
+	}
+	
+	@Benchmark
+	public NotificationMessage decode() {
+		
+		return (format==WireFormat.BINARY) ?
+				NotificationMessageConverter.decode(payload) :
+				NotificationOutbox.deserialize(payload);
+	}
+}
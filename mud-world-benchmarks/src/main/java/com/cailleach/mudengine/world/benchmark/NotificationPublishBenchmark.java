@@ -0,0 +1,134 @@
+package com.cailleach.mudengine.world.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+
+import com.cailleach.mudengine.common.utils.CommonConstants;
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+import com.cailleach.mudengine.world.service.impl.NotificationMessageConverter;
+import com.cailleach.mudengine.world.service.impl.NotificationMessageConverter.WireFormat;
+import com.cailleach.mudengine.world.service.impl.NotificationPublisher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Publishing a burst of place notifications to an embedded broker, over TCP,
+ * one JmsTemplate send per notification versus one session per batch.
+ * 
+ * transacted only applies to the sends one by one: the publisher always commits each batch at once.
+ * The connection factory is cached the same way Spring Boot does by default.
+ * Both ways use the wire format of the run (see NotificationFormatBenchmark for the formats alone).
+ * Scores are bursts per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationPublishBenchmark {
+	
+	private static final String PLACE_TOPIC = "place.benchmark";
+	private static final String AUTH_TOKEN = "benchmark-token";
+	
+	@Param({"1", "5", "20"})
+	private int burstSize;
+	
+	@Param({"false", "true"})
+	private boolean transacted;
+	
+	@Param({"JAVA", "BINARY"})
+	private WireFormat format;
+	
+	private BrokerService broker;
+	
+	private CachingConnectionFactory connectionFactory;
+	
+	private JmsTemplate jmsTemplate;
+	
+	private ActiveMQTopic placeTopic;
+	
+	private NotificationPublisher publisher;
+	
+	private List<NotificationMessage> burst;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		
+		broker = new BrokerService();
+		broker.setBrokerName("benchmark");
+		broker.setPersistent(false);
+		broker.setUseJmx(false);
+		broker.addConnector("tcp://127.0.0.1:0");
+		broker.start();
+		
+		connectionFactory = new CachingConnectionFactory(
+				new ActiveMQConnectionFactory(
+						broker.getTransportConnectors().get(0).getPublishableConnectString()
+						));
+		
+		jmsTemplate = new JmsTemplate(connectionFactory);
+		jmsTemplate.setSessionTransacted(transacted);
+		jmsTemplate.setMessageConverter(new NotificationMessageConverter(format));
+		
+		placeTopic = new ActiveMQTopic(PLACE_TOPIC);
+		
+		publisher = new NotificationPublisher(jmsTemplate, jmsTemplate.getMessageConverter(), new SimpleMeterRegistry(), PLACE_TOPIC, 100, 0L);
+		
+		burst = LongStream.rangeClosed(1, burstSize)
+				.mapToObj(d -> NotificationMessage.builder()
+						.entity(NotificationMessage.EnumEntity.PLACE)
+						.entityId(d)
+						.event(EnumNotificationEvent.PLACE_EXIT_OPEN)
+					.build())
+				.toList();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		
+		connectionFactory.destroy();
+		broker.stop();
+	}
+	
+	/**
+	 * How notifications used to be sent: one convertAndSend each.
+	 */
+	@Benchmark
+	public void perMessage() {
+		
+		burst.forEach(d -> 
+			jmsTemplate.convertAndSend(placeTopic, d, m -> {
+				m.setObjectProperty(CommonConstants.AUTH_TOKEN_HEADER, AUTH_TOKEN);
+				return m;
+			})
+		);
+	}
+	
+	@Benchmark
+	public void batched() {
+		
+		publisher.publish(burst, AUTH_TOKEN);
+	}
+}
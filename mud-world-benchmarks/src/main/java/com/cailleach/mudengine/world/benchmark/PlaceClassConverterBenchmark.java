@@ -0,0 +1,44 @@
+package com.cailleach.mudengine.world.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cailleach.mudengine.world.model.PlaceClassEntity;
+import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.service.converter.todto.PlaceClassConverter;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceClassConverterBenchmark {
+	
+	@Param({"2", "12", "40"})
+	private int attrCount;
+	
+	private PlaceClassEntity placeClass;
+	
+	@Setup
+	public void setup() {
+		
+		placeClass = SyntheticWorld.placeClass(SyntheticWorld.PLACE_CLASS, attrCount, "ATTR");
+	}
+	
+	@Benchmark
+	public PlaceClass convert() {
+		return PlaceClassConverter.convert(placeClass);
+	}
+}
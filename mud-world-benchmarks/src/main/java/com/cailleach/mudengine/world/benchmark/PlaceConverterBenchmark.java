@@ -0,0 +1,66 @@
+package com.cailleach.mudengine.world.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.service.converter.todto.PlaceClassConverter;
+import com.cailleach.mudengine.world.service.converter.todto.PlaceConverter;
+
+/**
+ * Entity to DTO conversion of a place, as done on every uncached getPlace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceConverterBenchmark {
+	
+	@Param({"2", "12", "40"})
+	private int attrCount;
+	
+	@Param({"1", "3", "6"})
+	private int exitCount;
+	
+	private PlaceEntity place;
+	
+	private PlaceClass placeClass;
+	
+	@Setup
+	public void setup() {
+		
+		place = SyntheticWorld.place(1L, 
+				SyntheticWorld.placeClass(SyntheticWorld.PLACE_CLASS, attrCount, "ATTR"), 
+				exitCount);
+		
+		placeClass = PlaceClassConverter.convert(place.getPlaceClass());
+	}
+	
+	@Benchmark
+	public Place convert() {
+		return PlaceConverter.convert(place);
+	}
+	
+	/**
+	 * With the place class already converted, as served by the place class catalog.
+	 */
+	@Benchmark
+	public Place convertWithPlaceClass() {
+		return PlaceConverter.convert(place, placeClass);
+	}
+}
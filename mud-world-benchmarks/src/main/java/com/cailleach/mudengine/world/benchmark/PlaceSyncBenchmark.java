@@ -0,0 +1,175 @@
+package com.cailleach.mudengine.world.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.world.model.PlaceClassEntity;
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.repository.PlaceClassRepository;
+import com.cailleach.mudengine.world.repository.PlaceExitRepository;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.service.cache.PlaceCache;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
+import com.cailleach.mudengine.world.service.graph.WorldGraph;
+import com.cailleach.mudengine.world.service.impl.PlaceServiceImpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Attribute and exit synchronization of PlaceServiceImpl.updatePlace, measured through the
+ * service itself over in-memory repositories (so no database time is included).
+ * 
+ * Each invocation switches between two requests (or two place classes), so every call removes,
+ * adds and updates attributes and toggles exits instead of settling on a no-op.  Along with the
+ * sync, each call takes the snapshot of the place, converts the response and updates the place
+ * cache and the world graph, as a real update does.
+ * 
+ * Run it with the gc profiler (-prof gc) to check the bytes allocated per update
+ * (gc.alloc.rate.norm), not only the time taken.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceSyncBenchmark {
+	
+	private static final Long PLACE_CODE = 1L;
+	
+	private static final long PLACE_CACHE_MAX_WEIGHT = 1000L;
+	private static final int MAX_NEIGHBOURHOOD_DEPTH = 10;
+	private static final int MAX_NEIGHBOURHOOD_SIZE = 1000;
+	private static final int MAX_BULK_IDS = 1000;
+	
+	@Param({"2", "12", "40"})
+	private int attrCount;
+	
+	@Param({"1", "3", "6"})
+	private int exitCount;
+	
+	private PlaceServiceImpl service;
+	
+	private PlaceEntity place;
+	
+	private Place[] requests;
+	
+	private Place[] classRequests;
+	
+	private int current;
+	
+	@Setup
+	public void setup() {
+		
+		PlaceClassEntity[] placeClasses = new PlaceClassEntity[] {
+				SyntheticWorld.placeClass(SyntheticWorld.PLACE_CLASS, attrCount, "ATTR"),
+				SyntheticWorld.placeClass(SyntheticWorld.OTHER_PLACE_CLASS, attrCount, "ATTR")
+		};
+		
+		place = SyntheticWorld.place(PLACE_CODE, placeClasses[0], exitCount);
+		
+		// The place is read for update and saved as it is; exit names are left out
+		PlaceRepository placeRepository = RepositoryStubs.stub(PlaceRepository.class, Map.of(
+				"findForUpdateByCode", args -> {
+					// Taken again on each load, as a place just read has no snapshot
+					place.setLoadedState(null);
+					return Optional.of(place);
+				},
+				"save", args -> args[0],
+				"findNamesByCodeIn", args -> List.of(),
+				"findAllCodes", args -> List.of(PLACE_CODE)
+				));
+		
+		PlaceExitRepository exitRepository = RepositoryStubs.stub(PlaceExitRepository.class, Map.of(
+				"findAll", args -> List.of()
+				));
+		
+		PlaceClassRepository classRepository = RepositoryStubs.stub(PlaceClassRepository.class, Map.of(
+				"findAll", args -> List.of(placeClasses)
+				));
+		
+		PlaceClassCatalog placeClassCatalog = new PlaceClassCatalog(classRepository);
+		placeClassCatalog.reload();
+		
+		WorldGraph worldGraph = new WorldGraph(placeRepository, exitRepository, MAX_NEIGHBOURHOOD_DEPTH, MAX_NEIGHBOURHOOD_SIZE);
+		worldGraph.reload();
+		
+		// Attribute deltas, notifications and bulk reads aren't used by updatePlace
+		service = new PlaceServiceImpl(placeRepository, null,
+				placeClassCatalog,
+				new PlaceCache(new SimpleMeterRegistry(), PLACE_CACHE_MAX_WEIGHT),
+				worldGraph,
+				null,
+				new InlineTransactionTemplate(),
+				new SimpleMeterRegistry(),
+				MAX_BULK_IDS);
+		
+		// All attributes updated and exits toggled / half the attributes replaced and exits back
+		Place secondRequest = SyntheticWorld.updateRequest(place, attrCount / 2);
+		secondRequest.getExits().values().forEach(d -> d.setOpened(!d.isOpened()));
+		
+		requests = new Place[] {
+				SyntheticWorld.updateRequest(place, attrCount),
+				secondRequest
+		};
+		
+		// Same request, for each place class
+		classRequests = new Place[placeClasses.length];
+		
+		for(int i=0;i<placeClasses.length;i++) {
+			
+			classRequests[i] = SyntheticWorld.updateRequest(place, attrCount);
+			classRequests[i].setClassCode(placeClasses[i].getCode());
+		}
+		
+		current = 0;
+	}
+	
+	@Benchmark
+	public Place syncAttrAndExits() {
+		
+		current ^= 1;
+		
+		return service.updatePlace(PLACE_CODE, requests[current]);
+	}
+	
+	@Benchmark
+	public Place syncAttrFromPlaceClass() {
+		
+		// The place is in the other class
+		current ^= 1;
+		
+		return service.updatePlace(PLACE_CODE, classRequests[current]);
+	}
+	
+	/**
+	 * Runs the callback right away, with no transaction
+	 */
+	private static class InlineTransactionTemplate extends TransactionTemplate {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		public <T> T execute(TransactionCallback<T> action) throws TransactionException {
+			return action.doInTransaction(null);
+		}
+	}
+}
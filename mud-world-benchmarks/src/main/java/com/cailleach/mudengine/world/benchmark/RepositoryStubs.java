@@ -0,0 +1,46 @@
+package com.cailleach.mudengine.world.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * In-memory stand-ins for the repositories, so services can be benchmarked through
+ * their public API without a database.
+ */
+public class RepositoryStubs {
+	
+	private RepositoryStubs() { }
+	
+	/**
+	 * Repository answering the given methods (by name, from their arguments).
+	 * Any other method throws UnsupportedOperationException.
+	 */
+	public static <T> T stub(Class<T> repositoryClass, Map<String, Function<Object[], Object>> answers) {
+		
+		return repositoryClass.cast(Proxy.newProxyInstance(
+				RepositoryStubs.class.getClassLoader(),
+				new Class<?>[] {repositoryClass},
+				(proxy, method, args) -> {
+					
+					Function<Object[], Object> answer = answers.get(method.getName());
+					
+					if (answer!=null) {
+						return answer.apply(args);
+					}
+					
+					switch(method.getName()) {
+						case "equals":
+							return proxy==args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "toString":
+							return repositoryClass.getSimpleName() + " stub";
+						default:
+							break;
+					}
+					
+					throw new UnsupportedOperationException(repositoryClass.getSimpleName() + "." + method.getName());
+				}));
+	}
+}
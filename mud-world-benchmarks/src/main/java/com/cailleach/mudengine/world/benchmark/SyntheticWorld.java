@@ -0,0 +1,159 @@
+package com.cailleach.mudengine.world.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.cailleach.mudengine.world.model.PlaceAttrEntity;
+import com.cailleach.mudengine.world.model.PlaceClassAttrEntity;
+import com.cailleach.mudengine.world.model.PlaceClassEntity;
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.model.PlaceExitEntity;
+import com.cailleach.mudengine.world.model.pk.PlaceAttrEntityPK;
+import com.cailleach.mudengine.world.model.pk.PlaceClassAttrEntityPK;
+import com.cailleach.mudengine.world.model.pk.PlaceExitEntityPK;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.service.converter.todto.PlaceConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Synthetic places and place classes for the benchmarks.
+ * 
+ * They're built from the mudplace-* and mudplaceclass-* fixtures used by the unit tests,
+ * grown to the number of attributes and exits being measured.
+ */
+public class SyntheticWorld {
+	
+	// From the mud-world-service test jar
+	private static final String PLACE_TEMPLATE = "/mudplace-1.json";
+	private static final String PLACE_CLASS_TEMPLATE = "/mudplaceclass-%s.json";
+	
+	public static final String PLACE_CLASS = "TEST";
+	public static final String OTHER_PLACE_CLASS = "TESTBLDG";
+	
+	/**
+	 * Same as PlaceExit.DIRECTIONS
+	 */
+	public static final List<String> DIRECTIONS = List.of("EAST", "NORTH", "UP", "DOWN", "SOUTH", "WEST");
+	
+	private static ObjectMapper jsonMapper = new ObjectMapper();
+	
+	private SyntheticWorld() { }
+	
+	/**
+	 * Place class grown to attrCount attributes.
+	 * 
+	 * @param template - fixture used as template (TEST or TESTBLDG)
+	 * @param attrCount - number of attributes
+	 * @param attrPrefix - prefix of the generated attributes
+	 */
+	public static PlaceClassEntity placeClass(String template, int attrCount, String attrPrefix) {
+		
+		PlaceClassEntity placeClass = load(String.format(PLACE_CLASS_TEMPLATE, template), PlaceClassEntity.class);
+		
+		for(int i=placeClass.getAttrs().size();i<attrCount;i++) {
+			
+			PlaceClassAttrEntityPK pk = new PlaceClassAttrEntityPK();
+			pk.setClassCode(placeClass.getCode());
+			pk.setCode(String.format("%s%02d", attrPrefix, i));
+			
+			PlaceClassAttrEntity attr = new PlaceClassAttrEntity();
+			attr.setId(pk);
+			attr.setValue(i * 10);
+			
+			placeClass.getAttrs().add(attr);
+		}
+		
+		return placeClass;
+	}
+	
+	/**
+	 * Place of the given class, with the class attributes and exitCount exits.
+	 * Exits alternate between opened, closed and locked.
+	 */
+	public static PlaceEntity place(Long code, PlaceClassEntity placeClass, int exitCount) {
+		
+		PlaceEntity place = load(PLACE_TEMPLATE, PlaceEntity.class);
+		
+		place.setCode(code);
+		place.setPlaceClass(placeClass);
+		
+		Set<PlaceAttrEntity> attrs = new HashSet<>();
+		
+		placeClass.getAttrs().forEach(d -> {
+			
+			PlaceAttrEntityPK pk = new PlaceAttrEntityPK();
+			pk.setPlaceCode(code);
+			pk.setCode(d.getCode());
+			
+			PlaceAttrEntity attr = new PlaceAttrEntity();
+			attr.setId(pk);
+			attr.setValue(d.getValue());
+			
+			attrs.add(attr);
+		});
+		
+		place.setAttrs(attrs);
+		
+		Set<PlaceExitEntity> exits = new HashSet<>();
+		
+		for(int i=0;i<Math.min(exitCount, DIRECTIONS.size());i++) {
+			
+			PlaceExitEntityPK pk = new PlaceExitEntityPK();
+			pk.setPlaceCode(code);
+			pk.setDirection(DIRECTIONS.get(i));
+			
+			PlaceExitEntity exit = new PlaceExitEntity();
+			exit.setPk(pk);
+			exit.setTargetPlaceCode(code + i + 1);
+			exit.setVisible(true);
+			exit.setOpened(i % 3 == 0);
+			exit.setLockable(i % 3 == 2);
+			exit.setLocked(i % 3 == 2);
+			
+			exits.add(exit);
+		}
+		
+		place.setExits(exits);
+		
+		return place;
+	}
+	
+	/**
+	 * Update request for the place: every exit toggled and every attribute changed.
+	 * 
+	 * @param place - place to be updated
+	 * @param keptAttrs - how many of the place attributes are kept in the request, the remaining
+	 * are replaced by new ones
+	 */
+	public static Place updateRequest(PlaceEntity place, int keptAttrs) {
+		
+		Place request = PlaceConverter.convert(place);
+		
+		request.getExits().values().forEach(d -> d.setOpened(!d.isOpened()));
+		
+		List<String> attrCodes = request.getAttrs().keySet().stream().sorted().toList();
+		
+		for(int i=keptAttrs;i<attrCodes.size();i++) {
+			
+			request.getAttrs().remove(attrCodes.get(i));
+			request.getAttrs().put("NEW" + attrCodes.get(i), i);
+		}
+		
+		request.getAttrs().replaceAll((k, v) -> v + 1);
+		
+		return request;
+	}
+	
+	private static <T> T load(String resource, Class<T> clazz) {
+		
+		try (InputStream in = SyntheticWorld.class.getResourceAsStream(resource)) {
+			return jsonMapper.readValue(in, clazz);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -5,6 +5,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.rest.dto.PlaceClassLineage;
 
 @RequestMapping("/place/class")
 public interface PlaceClassEndpoint {
@@ -12,4 +13,23 @@ public interface PlaceClassEndpoint {
 	@GetMapping(value="/{placeClass}")
 	PlaceClass getPlaceClass(@PathVariable("placeClass") String placeClass);
 
-}
\ No newline at end of file
+	/**
+	 * Returns the whole ancestry of a place class (following parentClassCode)
+	 * and the attributes it ends up with once the inherited ones are merged in.
+	 * 
+	 * @param placeClass - code of the place class
+	 * @return
+	 */
+	@GetMapping(value="/{placeClass}/lineage")
+	PlaceClassLineage getPlaceClassLineage(@PathVariable("placeClass") String placeClass);
+	
+	/**
+	 * Check if a place class is, or descends from, another place class.
+	 * 
+	 * @param placeClass - code of the place class being checked
+	 * @param ancestorClass - code of the supposed ancestor
+	 * @return
+	 */
+	@GetMapping(value="/{placeClass}/isa/{ancestorClass}")
+	boolean isA(@PathVariable("placeClass") String placeClass, @PathVariable("ancestorClass") String ancestorClass);
+}
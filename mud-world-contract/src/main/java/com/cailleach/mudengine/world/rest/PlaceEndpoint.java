@@ -1,8 +1,13 @@
 package com.cailleach.mudengine.world.rest;
 
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -11,6 +16,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamage;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamageResult;
+import com.cailleach.mudengine.world.rest.dto.PlaceNeighbourhood;
+import com.cailleach.mudengine.world.rest.dto.PlacePath;
 
 @RequestMapping("/place")
 public interface PlaceEndpoint {
@@ -39,6 +48,60 @@ public interface PlaceEndpoint {
 	@GetMapping(value="/{placeId}")
 	Place getPlace(@PathVariable("placeId") Long placeId);
 
+	/**
+	 * Returns several places at once, in the order requested.
+	 * Places not found are left out of the response.
+	 * 
+	 * The places are written to the response as they are loaded, so large lists
+	 * aren't held in memory as a whole.  Asking for more than place.bulk.max-ids
+	 * places at once is rejected as a bad request.
+	 * 
+	 * @param placeIds - unique IDs of the places being searched
+	 * @return
+	 */
+	@GetMapping()
+	Stream<Place> getPlaces(@RequestParam("ids") List<Long> placeIds);
+	
+	/**
+	 * Same as {@link #getPlaces(List)}, for lists of IDs too long to fit in the URL.
+	 * 
+	 * @param placeIds - unique IDs of the places being searched
+	 * @return
+	 */
+	@PostMapping(value="/bulk")
+	Stream<Place> getPlacesInBulk(@RequestBody List<Long> placeIds);
+
+	/**
+	 * Returns all places within a number of exits from a place, with their distance to it.
+	 * 
+	 * All exits count, whether opened, closed or locked.  The depth is capped
+	 * (place.neighbourhood.max-depth) and so is the number of places returned
+	 * (place.neighbourhood.max-size); the response tells if any place was left out.
+	 * 
+	 * @param placeId - place at the center of the neighbourhood
+	 * @param depth - maximum number of exits between the place and its neighbours
+	 * @param withPlaces - whether to return the whole places or only their codes
+	 * @return
+	 */
+	@GetMapping(value="/{placeId}/neighbourhood")
+	PlaceNeighbourhood getNeighbourhood(@PathVariable("placeId") Long placeId, @RequestParam("depth") int depth, 
+			@RequestParam(name="withPlaces", defaultValue="false") boolean withPlaces);
+
+	/**
+	 * Returns the shortest way between two places, following their exits.
+	 * 
+	 * Only opened and unlocked exits are taken.  When throughClosedExits is set,
+	 * closed exits are taken too, as long as they aren't locked.
+	 * 
+	 * @param placeId - place where the path starts
+	 * @param targetPlaceId - place to be reached
+	 * @param throughClosedExits - whether the closed (but unlocked) exits can be opened on the way
+	 * @return the path found, or NOT_FOUND if the target place can't be reached
+	 */
+	@GetMapping(value="/{placeId}/path/{targetPlaceId}")
+	ResponseEntity<PlacePath> getPath(@PathVariable("placeId") Long placeId, @PathVariable("targetPlaceId") Long targetPlaceId, 
+			@RequestParam(name="throughClosedExits", defaultValue="false") boolean throughClosedExits);
+
 	/**
 	 * Update an existing place.
 	 * 
@@ -53,6 +116,35 @@ public interface PlaceEndpoint {
 	@PostMapping(value="/{placeId}")
 	Place updatePlace(@PathVariable("placeId") Long placeId, @RequestBody Place requestPlace);
 	
+	/**
+	 * Add deltas to the attributes of a place, as in {"HP": -25}.
+	 * 
+	 * Each delta is added in the database, so concurrent calls add up instead of
+	 * overwriting each other.  Only attributes the place already has can be changed:
+	 * any other one fails the call, with none of the deltas applied.
+	 * As in a full update, the HP is capped to the MAXHP and a place whose HP is
+	 * exhausted is destroyed.
+	 * 
+	 * @param placeId - place being changed
+	 * @param attrDeltas - attribute code x value to be added (negative to subtract)
+	 * @return the place as changed
+	 */
+	@PatchMapping(value="/{placeId}/attrs")
+	Place updatePlaceAttrs(@PathVariable("placeId") Long placeId, @RequestBody Map<String, Integer> attrDeltas);
+	
+	/**
+	 * Change the HP of many places at once, as in an area attack.
+	 * 
+	 * All the changes are applied in one transaction.  Places whose HP is exhausted
+	 * are destroyed as in {@link #destroyPlace(Long)}.  Places not found, or without an HP
+	 * attribute, are left untouched and reported as skipped.
+	 * 
+	 * @param damages - HP change of each place (several changes of a place are added up)
+	 * @return the places damaged, destroyed and skipped
+	 */
+	@PostMapping(value="/damage")
+	PlaceDamageResult damagePlaces(@RequestBody List<PlaceDamage> damages);
+	
 	/**
 	 * Destroys a place.
 	 * 
@@ -0,0 +1,43 @@
+package com.cailleach.mudengine.world.rest;
+
+import java.io.InputStream;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.cailleach.mudengine.world.rest.dto.WorldImportResult;
+
+@RequestMapping("/world")
+public interface WorldEndpoint {
+	
+	String NDJSON = "application/x-ndjson";
+	
+	/**
+	 * Export the whole world as newline delimited JSON, one {@link com.cailleach.mudengine.world.rest.dto.WorldRecord} 
+	 * per line: all place classes first, then all places (with their attributes and exits).
+	 * 
+	 * The export is written as the places are read, a chunk at a time.
+	 * 
+	 * @return
+	 */
+	@GetMapping(value="/export", produces=NDJSON)
+	ResponseEntity<StreamingResponseBody> exportWorld();
+	
+	/**
+	 * Import a world in the same format of the export.
+	 * 
+	 * Imported places get new codes, and their exits are linked accordingly.  Exits leading
+	 * to places not in the import keep their target, so an area can be linked to the current world.
+	 * Place classes already in database are kept as they are.
+	 * 
+	 * Everything is imported in one single transaction, with no notifications sent.
+	 * 
+	 * @param worldStream - the world records, one per line
+	 * @return how many records were imported
+	 */
+	@PostMapping(value="/import", consumes=NDJSON)
+	WorldImportResult importWorld(InputStream worldStream);
+}
@@ -21,6 +21,12 @@ public class Place {
 	
 	private Map<String, Integer> attrs;
 	
+	/**
+	 * Version of the place this state was read from.
+	 * When sent back in an update, the update is refused if the place changed meanwhile.
+	 */
+	private Integer version;
+	
 	public Place() {
 		this.attrs = new HashMap<>();
 		this.exits = new HashMap<>();
@@ -0,0 +1,30 @@
+package com.cailleach.mudengine.world.rest.dto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class PlaceClassLineage {
+
+	private String placeClassCode;
+	
+	/**
+	 * All ancestors of this place class, nearest parent first.
+	 */
+	private List<String> ancestors;
+	
+	/**
+	 * Attributes of the place class merged with the ones inherited from
+	 * its ancestors (the nearest definition wins).
+	 */
+	private Map<String, Integer> effectiveAttrs;
+	
+	public PlaceClassLineage() {
+		this.ancestors = new ArrayList<>();
+		this.effectiveAttrs = new HashMap<>();
+	}
+}
@@ -0,0 +1,17 @@
+package com.cailleach.mudengine.world.rest.dto;
+
+import lombok.Data;
+
+/**
+ * HP change of one place in a batch of damage
+ */
+@Data
+public class PlaceDamage {
+	
+	private Long placeCode;
+	
+	/**
+	 * Added to the place HP (negative for damage)
+	 */
+	private int hpDelta;
+}
@@ -0,0 +1,30 @@
+package com.cailleach.mudengine.world.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class PlaceDamageResult {
+	
+	/**
+	 * Places whose HP changed
+	 */
+	private List<Long> damagedPlaceCodes = new ArrayList<>();
+	
+	/**
+	 * Places left untouched: not found, or without an HP attribute (even if they have a MAXHP)
+	 */
+	private List<Long> skippedPlaceCodes = new ArrayList<>();
+	
+	/**
+	 * Places exhausted, that changed to their demised place class
+	 */
+	private List<Long> demisedPlaceCodes = new ArrayList<>();
+	
+	/**
+	 * Places exhausted, removed as they had no demised place class
+	 */
+	private List<Long> removedPlaceCodes = new ArrayList<>();
+}
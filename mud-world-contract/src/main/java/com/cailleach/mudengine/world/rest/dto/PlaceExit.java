@@ -1,6 +1,7 @@
 package com.cailleach.mudengine.world.rest.dto;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import lombok.Data;
@@ -22,6 +23,13 @@ public class PlaceExit {
 
 	private Long targetPlaceCode;
 	
+	/**
+	 * The standard directions, each one followed by its opposite in reverse order.
+	 */
+	public static List<String> getDirections() {
+		return Collections.unmodifiableList(DIRECTIONS);
+	}
+	
 	public static String getOpposedDirection(String direction) {
 		
 		int size = PlaceExit.DIRECTIONS.size(); 
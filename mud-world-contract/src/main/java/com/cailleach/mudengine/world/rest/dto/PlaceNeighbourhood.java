@@ -0,0 +1,47 @@
+package com.cailleach.mudengine.world.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class PlaceNeighbourhood {
+	
+	private Long placeCode;
+	
+	/**
+	 * Number of exits actually walked from the place (the requested depth, up to the allowed maximum)
+	 */
+	private int depth;
+	
+	/**
+	 * Whether places were left out because the maximum number of results was reached
+	 */
+	private boolean truncated;
+	
+	/**
+	 * All places reached, the nearest first (the place itself at distance zero)
+	 */
+	private List<Neighbour> places;
+	
+	public PlaceNeighbourhood() {
+		this.places = new ArrayList<>();
+	}
+	
+	@Data
+	public static class Neighbour {
+		
+		private Long placeCode;
+		
+		/**
+		 * Minimum number of exits between the place and this neighbour
+		 */
+		private int distance;
+		
+		/**
+		 * The whole place, only if requested
+		 */
+		private Place place;
+	}
+}
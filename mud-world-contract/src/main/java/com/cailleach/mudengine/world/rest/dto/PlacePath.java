@@ -0,0 +1,35 @@
+package com.cailleach.mudengine.world.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class PlacePath {
+	
+	private Long fromPlaceCode;
+	
+	private Long toPlaceCode;
+	
+	/**
+	 * Exits to be taken, in order, to go from one place to the other.
+	 * Empty if both places are the same.
+	 */
+	private List<Step> steps;
+	
+	public PlacePath() {
+		this.steps = new ArrayList<>();
+	}
+	
+	@Data
+	public static class Step {
+		
+		private String direction;
+		
+		/**
+		 * Place reached after taking the exit
+		 */
+		private Long placeCode;
+	}
+}
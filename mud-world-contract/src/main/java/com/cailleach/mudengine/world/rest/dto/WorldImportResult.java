@@ -0,0 +1,20 @@
+package com.cailleach.mudengine.world.rest.dto;
+
+import lombok.Data;
+
+@Data
+public class WorldImportResult {
+	
+	/**
+	 * Place classes read (those already in database are kept as they are)
+	 */
+	private long placeClasses;
+	
+	private long places;
+	
+	private long attrs;
+	
+	private long exits;
+	
+	private long elapsedMillis;
+}
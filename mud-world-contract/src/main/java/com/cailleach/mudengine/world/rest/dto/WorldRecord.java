@@ -0,0 +1,14 @@
+package com.cailleach.mudengine.world.rest.dto;
+
+import lombok.Data;
+
+/**
+ * One line of a world export/import: either a place class or a place.
+ */
+@Data
+public class WorldRecord {
+	
+	private PlaceClass placeClass;
+	
+	private Place place;
+}
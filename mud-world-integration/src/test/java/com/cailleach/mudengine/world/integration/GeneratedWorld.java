@@ -0,0 +1,159 @@
+package com.cailleach.mudengine.world.integration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.rest.dto.PlaceExit;
+import com.cailleach.mudengine.world.rest.dto.WorldRecord;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+/**
+ * World used by the integration tests.
+ * 
+ * The places form a square grid, each one linked to its neighbours to the north, south,
+ * east and west, which leaves up and down free for new places.  It's written as NDJSON,
+ * to be loaded through the world import.
+ * 
+ * Grid places have no demised class.  Two more classes are there for places to be created:
+ * one demised into the other, which has no HP.
+ */
+public class GeneratedWorld {
+	
+	public static final String PLACE_CLASS = "PLAIN";
+	public static final String DEMISING_PLACE_CLASS = "TOWER";
+	public static final String DEMISED_PLACE_CLASS = "RUIN";
+	
+	public static final String HP_ATTR = "HP";
+	public static final String MAXHP_ATTR = "MAXHP";
+	public static final Integer MAXHP_VALUE = 100;
+	
+	private static final String DESTROY_SCRIPT = "99-world_destroy.sql";
+	private static final String CREATE_SCRIPT = "02-world_create.sql";
+	
+	private GeneratedWorld() { }
+	
+	/**
+	 * Drop all world tables (if they exist) and create them again, empty.
+	 * 
+	 * @param scripts - folder with the devops/db scripts
+	 */
+	public static void createSchema(String url, String username, String password, Path scripts) throws SQLException {
+		
+		try (Connection connection = DriverManager.getConnection(url, username, password)) {
+			
+			// Nothing to drop the first time
+			ScriptUtils.executeSqlScript(connection, 
+					new EncodedResource(new FileSystemResource(scripts.resolve(DESTROY_SCRIPT))), 
+					true, true, 
+					ScriptUtils.DEFAULT_COMMENT_PREFIX, ScriptUtils.DEFAULT_STATEMENT_SEPARATOR, 
+					ScriptUtils.DEFAULT_BLOCK_COMMENT_START_DELIMITER, ScriptUtils.DEFAULT_BLOCK_COMMENT_END_DELIMITER);
+			
+			ScriptUtils.executeSqlScript(connection, 
+					new EncodedResource(new FileSystemResource(scripts.resolve(CREATE_SCRIPT))));
+		}
+	}
+	
+	/**
+	 * Grid with (at least) size places, as NDJSON world records
+	 */
+	public static byte[] build(int size) throws IOException {
+		
+		int side = (int) Math.ceil(Math.sqrt(size));
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		try (SequenceWriter writer = new ObjectMapper()
+				.setSerializationInclusion(JsonInclude.Include.NON_NULL)
+				.writer()
+				.withRootValueSeparator("\n")
+				.writeValues(out)) {
+			
+			writer.write(placeClass(PLACE_CLASS, "Plain", Map.of(HP_ATTR, MAXHP_VALUE, MAXHP_ATTR, MAXHP_VALUE), null));
+			writer.write(placeClass(DEMISED_PLACE_CLASS, "Ruin", Map.of(), null));
+			writer.write(placeClass(DEMISING_PLACE_CLASS, "Tower", Map.of(HP_ATTR, MAXHP_VALUE, MAXHP_ATTR, MAXHP_VALUE), DEMISED_PLACE_CLASS));
+			
+			for(int y=0;y<side;y++) {
+				for(int x=0;x<side;x++) {
+					
+					WorldRecord placeRecord = new WorldRecord();
+					placeRecord.setPlace(place(side, x, y));
+					
+					writer.write(placeRecord);
+				}
+			}
+		}
+		
+		return out.toByteArray();
+	}
+	
+	private static WorldRecord placeClass(String code, String name, Map<String, Integer> attrs, String demisedCode) {
+		
+		PlaceClass placeClass = new PlaceClass();
+		placeClass.setPlaceClassCode(code);
+		placeClass.setName(name);
+		placeClass.setDescription("A " + name.toLowerCase());
+		placeClass.getAttrs().putAll(attrs);
+		placeClass.setDemisePlaceClassCode(demisedCode);
+		
+		WorldRecord classRecord = new WorldRecord();
+		classRecord.setPlaceClass(placeClass);
+		
+		return classRecord;
+	}
+	
+	private static Place place(int side, int x, int y) {
+		
+		Place place = new Place();
+		place.setCode(code(side, x, y));
+		place.setClassCode(PLACE_CLASS);
+		place.setAttrs(Map.of(HP_ATTR, MAXHP_VALUE, MAXHP_ATTR, MAXHP_VALUE));
+		
+		if (y > 0) {
+			place.getExits().put("NORTH", exit(code(side, x, y - 1)));
+		}
+		
+		if (y < side - 1) {
+			place.getExits().put("SOUTH", exit(code(side, x, y + 1)));
+		}
+		
+		if (x > 0) {
+			place.getExits().put("WEST", exit(code(side, x - 1, y)));
+		}
+		
+		if (x < side - 1) {
+			place.getExits().put("EAST", exit(code(side, x + 1, y)));
+		}
+		
+		return place;
+	}
+	
+	private static PlaceExit exit(Long targetPlaceCode) {
+		
+		PlaceExit exit = new PlaceExit();
+		exit.setOpened(true);
+		exit.setVisible(true);
+		exit.setTargetPlaceCode(targetPlaceCode);
+		
+		return exit;
+	}
+	
+	/**
+	 * Code of the place in the import (the import gives it a new one)
+	 */
+	private static Long code(int side, int x, int y) {
+		return (long) y * side + x + 1;
+	}
+}
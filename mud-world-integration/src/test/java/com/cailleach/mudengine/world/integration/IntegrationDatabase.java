@@ -0,0 +1,78 @@
+package com.cailleach.mudengine.world.integration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Database of the integration tests.
+ * 
+ * Unless one is given by the it.db.* system properties, an embedded Postgres is started
+ * (once per JVM, stopped on exit) and prepared as devops/db/01-world_install.sql says.
+ * The it.db.* system properties then point to it, as the app user.
+ */
+public class IntegrationDatabase {
+	
+	private static final Logger log = LoggerFactory.getLogger(IntegrationDatabase.class);
+	
+	private static final String INSTALL_SCRIPT = "01-world_install.sql";
+	
+	private static final String APP_USERNAME = "mudengine_world_app";
+	private static final String APP_PASSWORD = "mudengine_world_app";
+	
+	private static EmbeddedPostgres embedded;
+	
+	private IntegrationDatabase() { }
+	
+	/**
+	 * Start the embedded database, if no other one was given and it isn't started yet
+	 */
+	public static synchronized void start() throws IOException, SQLException {
+		
+		String url = System.getProperty("it.db.url");
+		
+		if ((embedded!=null) || ((url!=null) && !url.isBlank())) {
+			return;
+		}
+		
+		embedded = EmbeddedPostgres.start();
+		
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			
+			try {
+				embedded.close();
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}));
+		
+		// Roles and schema are created by the superuser, as on a real install
+		try (Connection connection = embedded.getPostgresDatabase().getConnection()) {
+			
+			ScriptUtils.executeSqlScript(connection,
+					new FileSystemResource(scripts().resolve(INSTALL_SCRIPT)));
+		}
+		
+		System.setProperty("it.db.url", "jdbc:postgresql://localhost:" + embedded.getPort() + "/postgres");
+		System.setProperty("it.db.username", APP_USERNAME);
+		System.setProperty("it.db.password", APP_PASSWORD);
+		
+		log.info("embedded database started: {}", System.getProperty("it.db.url"));
+	}
+	
+	/**
+	 * Folder with the devops/db scripts
+	 */
+	public static Path scripts() {
+		return Path.of(System.getProperty("it.db.scripts"));
+	}
+}
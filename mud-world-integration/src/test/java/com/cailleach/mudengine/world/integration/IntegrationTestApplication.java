@@ -0,0 +1,26 @@
+package com.cailleach.mudengine.world.integration;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Services, repositories and notification aspect as in MudWorldApplication,
+ * without the REST layer and without scheduling (the outbox relay never runs).
+ */
+@SpringBootApplication(scanBasePackages="com.cailleach.mudengine.world.service")
+@EntityScan("com.cailleach.mudengine.world.model")
+@EnableJpaRepositories("com.cailleach.mudengine.world.repository")
+@EnableAspectJAutoProxy
+public class IntegrationTestApplication {
+	
+	@Bean
+	public MeterRegistry meterRegistry() {
+		return new SimpleMeterRegistry();
+	}
+}
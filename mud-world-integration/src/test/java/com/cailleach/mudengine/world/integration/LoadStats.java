@@ -0,0 +1,62 @@
+package com.cailleach.mudengine.world.integration;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of a burst of concurrent calls of one operation.
+ * 
+ * Latency is taken from the moment each call is submitted, so the time spent waiting
+ * for a thread (or a connection) counts as it would for a request.
+ */
+public class LoadStats {
+	
+	private final String operation;
+	
+	private final String threads;
+	
+	private final long[] nanos;
+	
+	private long elapsedNanos;
+	
+	public LoadStats(String operation, String threads, int calls) {
+		
+		this.operation = operation;
+		this.threads = threads;
+		this.nanos = new long[calls];
+	}
+	
+	/**
+	 * Latency of the n-th call.
+	 * Each call has its own slot, so calls may record concurrently.
+	 */
+	public void record(int call, long callNanos) {
+		nanos[call] = callNanos;
+	}
+	
+	public void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+	
+	public double getCallsPerSecond() {
+		return nanos.length / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+	}
+	
+	public double getPercentileMillis(double percentile) {
+		
+		long[] sorted = Arrays.copyOf(nanos, nanos.length);
+		Arrays.sort(sorted);
+		
+		int index = Math.max(0, (int) Math.ceil(percentile * nanos.length) - 1);
+		
+		return sorted[index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	@Override
+	public String toString() {
+		
+		return String.format("%s on %s threads: %d calls in %d ms, %.0f calls/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+				operation, threads, nanos.length, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getCallsPerSecond(),
+				getPercentileMillis(0.50), getPercentileMillis(0.99), getPercentileMillis(1.0));
+	}
+}
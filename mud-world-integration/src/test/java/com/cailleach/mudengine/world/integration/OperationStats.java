@@ -0,0 +1,120 @@
+package com.cailleach.mudengine.world.integration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+
+import com.cailleach.mudengine.world.model.PlaceEntity;
+
+/**
+ * Latency and SQL statements of the calls of one operation.
+ * 
+ * Statements are the ones prepared by Hibernate during the call (a JDBC batch counts once),
+ * so a lazy association or a per-row query shows up as a count growing with the data.
+ * Places loaded are the place entities Hibernate built during the call (loaded or fetched),
+ * so a place read more than once, or a neighbour read whole, shows up there.
+ */
+public class OperationStats {
+	
+	private final String operation;
+	
+	private final Statistics statistics;
+	
+	private final long[] nanos;
+	
+	private final long[] statements;
+	
+	private final long[] placesLoaded;
+	
+	private int calls;
+	
+	public OperationStats(String operation, Statistics statistics, int iterations) {
+		
+		this.operation = operation;
+		this.statistics = statistics;
+		this.nanos = new long[iterations];
+		this.statements = new long[iterations];
+		this.placesLoaded = new long[iterations];
+	}
+	
+	/**
+	 * Run and measure one call of the operation
+	 */
+	public <T> T measure(ThrowingSupplier<T> call) throws Exception {
+		
+		statistics.clear();
+		
+		long start = System.nanoTime();
+		
+		T result = call.get();
+		
+		nanos[calls] = System.nanoTime() - start;
+		statements[calls] = statistics.getPrepareStatementCount();
+		
+		EntityStatistics placeStatistics = statistics.getEntityStatistics(PlaceEntity.class.getName());
+		placesLoaded[calls] = placeStatistics.getLoadCount() + placeStatistics.getFetchCount();
+		
+		calls++;
+		
+		return result;
+	}
+	
+	public long getMaxStatements() {
+		return Arrays.stream(statements, 0, calls).max().orElse(0);
+	}
+	
+	public long getMaxPlacesLoaded() {
+		return Arrays.stream(placesLoaded, 0, calls).max().orElse(0);
+	}
+	
+	public double getPercentileMillis(double percentile) {
+		
+		long[] sorted = Arrays.copyOf(nanos, calls);
+		Arrays.sort(sorted);
+		
+		int index = Math.max(0, (int) Math.ceil(percentile * calls) - 1);
+		
+		return sorted[index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	/**
+	 * Fail if any call went over the statements budget, or the p50/p99 latencies over theirs
+	 */
+	public void assertWithin(long maxStatements, double p50Millis, double p99Millis) {
+		
+		assertTrue(getMaxStatements() <= maxStatements, 
+				() -> String.format("%s: %d statements, budget is %d", operation, getMaxStatements(), maxStatements));
+		
+		assertTrue(getPercentileMillis(0.50) <= p50Millis, 
+				() -> String.format("%s: p50 %.2f ms, budget is %.2f ms", operation, getPercentileMillis(0.50), p50Millis));
+		
+		assertTrue(getPercentileMillis(0.99) <= p99Millis, 
+				() -> String.format("%s: p99 %.2f ms, budget is %.2f ms", operation, getPercentileMillis(0.99), p99Millis));
+	}
+	
+	/**
+	 * Fail if any call loaded more places than expected
+	 */
+	public void assertPlacesLoaded(long maxPlaces) {
+		
+		assertTrue(getMaxPlacesLoaded() <= maxPlaces, 
+				() -> String.format("%s: %d places loaded, expected %d", operation, getMaxPlacesLoaded(), maxPlaces));
+	}
+	
+	@Override
+	public String toString() {
+		
+		return String.format("%s: %d calls, max %d statements, max %d places loaded, p50 %.2f ms, p99 %.2f ms", 
+				operation, calls, getMaxStatements(), getMaxPlacesLoaded(), getPercentileMillis(0.50), getPercentileMillis(0.99));
+	}
+	
+	@FunctionalInterface
+	public interface ThrowingSupplier<T> {
+		
+		T get() throws Exception;
+	}
+}
@@ -0,0 +1,204 @@
+package com.cailleach.mudengine.world.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+import com.cailleach.mudengine.world.repository.NotificationOutboxRepository;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamage;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamageResult;
+import com.cailleach.mudengine.world.service.PlaceDamageService;
+import com.cailleach.mudengine.world.service.PlaceService;
+import com.cailleach.mudengine.world.service.WorldTransferService;
+
+/**
+ * Batches of damage over a generated world, running the Postgres statements of
+ * PlaceDamageServiceImpl (lock, version bump and capped HP update) for real.
+ */
+class PlaceDamageIntegrationTests {
+	
+	private static final int WORLD_SIZE = 100;
+	
+	private static ConfigurableApplicationContext context;
+	
+	private static PlaceDamageService damageService;
+	
+	private static PlaceService service;
+	
+	private static PlaceRepository placeRepository;
+	
+	private static NotificationOutboxRepository outboxRepository;
+	
+	/**
+	 * Generated places not used by any test yet
+	 */
+	private static Iterator<Long> freeCodes;
+	
+	@BeforeAll
+	public static void setup() throws Exception {
+		
+		IntegrationDatabase.start();
+		
+		GeneratedWorld.createSchema(
+				System.getProperty("it.db.url"),
+				System.getProperty("it.db.username"),
+				System.getProperty("it.db.password"),
+				IntegrationDatabase.scripts());
+		
+		context = new SpringApplicationBuilder(IntegrationTestApplication.class).run();
+		
+		damageService = context.getBean(PlaceDamageService.class);
+		service = context.getBean(PlaceService.class);
+		placeRepository = context.getBean(PlaceRepository.class);
+		outboxRepository = context.getBean(NotificationOutboxRepository.class);
+		
+		context.getBean(WorldTransferService.class)
+			.importWorld(new ByteArrayInputStream(GeneratedWorld.build(WORLD_SIZE)));
+		
+		freeCodes = new ArrayList<>(placeRepository.findAllCodes()).iterator();
+	}
+	
+	@AfterAll
+	public static void tearDown() {
+		
+		if (context!=null) {
+			context.close();
+		}
+	}
+	
+	@Test
+	void testDamage() {
+		
+		Long damagedCode = freeCodes.next();
+		Long healedCode = freeCodes.next();
+		
+		Integer damagedVersion = version(damagedCode);
+		
+		PlaceDamageResult result = damageService.damagePlaces(List.of(
+				damage(damagedCode, -30),
+				damage(healedCode, -10),
+				damage(damagedCode, 5),
+				// Healed beyond MAXHP
+				damage(healedCode, 50)
+				));
+		
+		assertEquals(List.of(damagedCode, healedCode), result.getDamagedPlaceCodes());
+		assertTrue(result.getSkippedPlaceCodes().isEmpty());
+		assertTrue(result.getDemisedPlaceCodes().isEmpty());
+		assertTrue(result.getRemovedPlaceCodes().isEmpty());
+		
+		// Deltas of the same place are added up, and HP capped to MAXHP
+		assertEquals(GeneratedWorld.MAXHP_VALUE - 25, hp(damagedCode));
+		assertEquals(GeneratedWorld.MAXHP_VALUE, hp(healedCode));
+		
+		// So full updates read before the damage fail on save
+		assertEquals(damagedVersion + 1, version(damagedCode));
+	}
+	
+	@Test
+	void testExhaustedRemoved() {
+		
+		Long removedCode = freeCodes.next();
+		
+		PlaceDamageResult result = damageService.damagePlaces(List.of(
+				damage(removedCode, -GeneratedWorld.MAXHP_VALUE)));
+		
+		assertEquals(List.of(removedCode), result.getDamagedPlaceCodes());
+		assertEquals(List.of(removedCode), result.getRemovedPlaceCodes());
+		
+		assertFalse(placeRepository.findById(removedCode).isPresent());
+		
+		assertEquals(List.of(EnumNotificationEvent.PLACE_DESTROY.name()), events(removedCode));
+	}
+	
+	@Test
+	void testExhaustedDemised() {
+		
+		Long demisingCode = service.createPlace(GeneratedWorld.DEMISING_PLACE_CLASS, "DOWN", freeCodes.next()).getCode();
+		
+		PlaceDamageResult result = damageService.damagePlaces(List.of(
+				damage(demisingCode, -GeneratedWorld.MAXHP_VALUE - 10)));
+		
+		assertEquals(List.of(demisingCode), result.getDamagedPlaceCodes());
+		assertEquals(List.of(demisingCode), result.getDemisedPlaceCodes());
+		assertTrue(result.getRemovedPlaceCodes().isEmpty());
+		
+		Place demised = service.getPlace(demisingCode);
+		
+		assertEquals(GeneratedWorld.DEMISED_PLACE_CLASS, demised.getPlaceClass().getPlaceClassCode());
+		
+		// The demised class has no HP
+		assertFalse(demised.getAttrs().containsKey(GeneratedWorld.HP_ATTR));
+		
+		assertTrue(events(demisingCode).contains(EnumNotificationEvent.PLACE_CLASS_CHANGE.name()));
+	}
+	
+	@Test
+	void testPlacesWithoutHPSkipped() {
+		
+		Long damagedCode = freeCodes.next();
+		Long withoutHPCode = service.createPlace(GeneratedWorld.DEMISED_PLACE_CLASS, "DOWN", freeCodes.next()).getCode();
+		Long unknownCode = -1L;
+		
+		Integer withoutHPVersion = version(withoutHPCode);
+		
+		PlaceDamageResult result = damageService.damagePlaces(List.of(
+				damage(damagedCode, -10),
+				damage(withoutHPCode, -GeneratedWorld.MAXHP_VALUE),
+				damage(unknownCode, -10)));
+		
+		assertEquals(List.of(damagedCode), result.getDamagedPlaceCodes());
+		assertEquals(List.of(unknownCode, withoutHPCode), result.getSkippedPlaceCodes());
+		assertTrue(result.getRemovedPlaceCodes().isEmpty());
+		
+		// Left as it was
+		assertTrue(placeRepository.findById(withoutHPCode).isPresent());
+		assertEquals(GeneratedWorld.MAXHP_VALUE - 10, hp(damagedCode));
+		
+		// Locked along with the others, so its version is bumped all the same
+		assertEquals(withoutHPVersion + 1, version(withoutHPCode));
+	}
+	
+	private static PlaceDamage damage(Long placeCode, int hpDelta) {
+		
+		PlaceDamage damage = new PlaceDamage();
+		damage.setPlaceCode(placeCode);
+		damage.setHpDelta(hpDelta);
+		
+		return damage;
+	}
+	
+	private static Integer hp(Long placeCode) {
+		return service.getPlace(placeCode).getAttrs().get(GeneratedWorld.HP_ATTR);
+	}
+	
+	private static Integer version(Long placeCode) {
+		return placeRepository.findById(placeCode).orElseThrow().getVersion();
+	}
+	
+	/**
+	 * Events written to the outbox for the place
+	 */
+	private static List<String> events(Long placeCode) {
+		
+		return StreamSupport.stream(outboxRepository.findAll().spliterator(), false)
+				.filter(d -> d.getEntityId().equals(placeCode))
+				.map(d -> d.getEvent())
+				.toList();
+	}
+}
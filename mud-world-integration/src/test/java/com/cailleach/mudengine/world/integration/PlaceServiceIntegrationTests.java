@@ -0,0 +1,390 @@
+package com.cailleach.mudengine.world.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.model.PlaceExitEntity;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.WorldImportResult;
+import com.cailleach.mudengine.world.service.PlaceService;
+import com.cailleach.mudengine.world.service.WorldTransferService;
+import com.cailleach.mudengine.world.service.converter.todb.PlaceSnapshotConverter;
+import com.cailleach.mudengine.world.service.cache.PlaceCache;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Statements and latency budgets of the place service over a generated world.
+ * 
+ * Budgets are per call, with the place cache cold: a call going over its statements budget
+ * most likely means a new N+1 (statements growing with exits, attributes or places).
+ * Latency budgets are loose, and only catch gross regressions.
+ * 
+ * Budgets were set from runs on the embedded database (IntegrationDatabase, Postgres 16) over a world
+ * of 10000 places, 200 calls each after a warm up of all operations: statements are the exact counts
+ * of those runs, latencies about twice the p50/p99 measured.
+ */
+class PlaceServiceIntegrationTests {
+	
+	private static final Logger log = LoggerFactory.getLogger(PlaceServiceIntegrationTests.class);
+	
+	// Place with its class, exits and attributes, then the exit names
+	// (measured: p50 4.8 ms, p99 13.6 ms)
+	private static final long GET_PLACE_MAX_STATEMENTS = 2;
+	private static final double GET_PLACE_P50_MILLIS = 10;
+	private static final double GET_PLACE_P99_MILLIS = 30;
+	
+	// Place read for update, changed attributes (one batch), version bump, then the exit names
+	// (measured: p50 8.6 ms, p99 27.6 ms)
+	private static final long UPDATE_PLACE_MAX_STATEMENTS = 4;
+	private static final double UPDATE_PLACE_P50_MILLIS = 15;
+	private static final double UPDATE_PLACE_P99_MILLIS = 50;
+	
+	// Target place read, place class checked, sequences, then the new place, attributes, exits
+	// and notifications inserted (one batch each), version bump and exit names
+	// (one statement more when a block of place codes is taken from the sequence)
+	// (measured: p50 7.5 ms, p99 14.7 ms)
+	private static final long CREATE_PLACE_MAX_STATEMENTS = 10;
+	private static final double CREATE_PLACE_P50_MILLIS = 15;
+	private static final double CREATE_PLACE_P99_MILLIS = 30;
+	
+	// Place read, then its attributes, exits and itself deleted (one batch each)
+	// (measured: p50 15.4 ms, p99 23.6 ms)
+	private static final long DESTROY_PLACE_MAX_STATEMENTS = 4;
+	private static final double DESTROY_PLACE_P50_MILLIS = 30;
+	private static final double DESTROY_PLACE_P99_MILLIS = 50;
+	
+	/**
+	 * Enough calls of each operation for the JIT to compile their paths before they're measured
+	 */
+	private static final int WARMUP_CALLS = 300;
+	
+	/**
+	 * Slices of places measured (the next one is for warm up)
+	 */
+	private static final int MEASURED_SLICES = 5;
+	
+	private static final long RANDOM_SEED = 42L;
+	
+	private static final int WORLD_SIZE = Integer.getInteger("it.world.size", 10000);
+	
+	private static final int ITERATIONS = Integer.getInteger("it.iterations", 200);
+	
+	private static ConfigurableApplicationContext context;
+	
+	private static PlaceService service;
+	
+	private static PlaceCache placeCache;
+	
+	private static PlaceRepository placeRepository;
+	
+	private static TransactionTemplate transactionTemplate;
+	
+	private static Statistics statistics;
+	
+	/**
+	 * Codes of the generated places, in random order.
+	 * Each test takes its own slice, so no place is changed by two tests.
+	 */
+	private static List<Long> placeCodes;
+	
+	@BeforeAll
+	public static void setup() throws Exception {
+		
+		// Tables must exist before the context starts (place classes and world graph are loaded at startup)
+		IntegrationDatabase.start();
+		
+		GeneratedWorld.createSchema(
+				System.getProperty("it.db.url"), 
+				System.getProperty("it.db.username"), 
+				System.getProperty("it.db.password"), 
+				IntegrationDatabase.scripts());
+		
+		context = new SpringApplicationBuilder(IntegrationTestApplication.class).run();
+		
+		service = context.getBean(PlaceService.class);
+		placeCache = context.getBean(PlaceCache.class);
+		placeRepository = context.getBean(PlaceRepository.class);
+		transactionTemplate = context.getBean(TransactionTemplate.class);
+		statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+		
+		WorldImportResult imported = context.getBean(WorldTransferService.class)
+				.importWorld(new ByteArrayInputStream(GeneratedWorld.build(WORLD_SIZE)));
+		
+		log.info("generated world: {} places, {} exits in {} ms", 
+				imported.getPlaces(), imported.getExits(), imported.getElapsedMillis());
+		
+		placeCodes = new ArrayList<>(placeRepository.findAllCodes());
+		Collections.shuffle(placeCodes, new Random(RANDOM_SEED));
+		
+		if (placeCodes.size() < MEASURED_SLICES * ITERATIONS + WARMUP_CALLS) {
+			throw new IllegalStateException("it.world.size too small for " + ITERATIONS + " iterations");
+		}
+		
+		// Connection pool, Hibernate and JIT warm up, on places no test uses
+		for(Long curCode: slice(MEASURED_SLICES)) {
+			
+			service.getPlace(curCode);
+			service.updatePlace(curCode, damaged(service.getPlace(curCode), 1));
+			service.destroyPlace(service.createPlace(GeneratedWorld.PLACE_CLASS, "DOWN", curCode).getCode());
+		}
+	}
+	
+	@AfterAll
+	public static void tearDown() {
+		
+		if (context!=null) {
+			context.close();
+		}
+	}
+	
+	@Test
+	void testGetPlace() throws Exception {
+		
+		OperationStats stats = new OperationStats("getPlace", statistics, ITERATIONS);
+		
+		for(Long curCode: slice(0)) {
+			
+			Place place = stats.measure(() -> service.getPlace(curCode));
+			
+			assertEquals(curCode, place.getCode());
+		}
+		
+		log.info("{}", stats);
+		
+		stats.assertWithin(GET_PLACE_MAX_STATEMENTS, GET_PLACE_P50_MILLIS, GET_PLACE_P99_MILLIS);
+		
+		// Exit names come from one projection query: no neighbour is loaded, whatever its exits
+		stats.assertPlacesLoaded(1);
+	}
+	
+	@Test
+	void testUpdatePlace() throws Exception {
+		
+		OperationStats stats = new OperationStats("updatePlace", statistics, ITERATIONS);
+		
+		int i = 0;
+		
+		for(Long curCode: slice(1)) {
+			
+			Place before = service.getPlace(curCode);
+			Place request = damaged(before, 1 + (i++ % 10));
+			
+			// Only the update itself is measured
+			placeCache.invalidate(curCode);
+			
+			Place place = stats.measure(() -> service.updatePlace(curCode, request));
+			
+			assertEquals(request.getAttrs().get(GeneratedWorld.HP_ATTR), place.getAttrs().get(GeneratedWorld.HP_ATTR));
+			
+			// The version moves even if only attributes changed
+			assertEquals(before.getVersion() + 1, place.getVersion());
+		}
+		
+		log.info("{}", stats);
+		
+		stats.assertWithin(UPDATE_PLACE_MAX_STATEMENTS, UPDATE_PLACE_P50_MILLIS, UPDATE_PLACE_P99_MILLIS);
+		
+		// Notifications are diffed against the snapshot taken on load: the place isn't read again to save it
+		stats.assertPlacesLoaded(1);
+	}
+	
+	@Test
+	void testCreateAndDestroyPlace() throws Exception {
+		
+		OperationStats createStats = new OperationStats("createPlace", statistics, ITERATIONS);
+		OperationStats destroyStats = new OperationStats("destroyPlace", statistics, ITERATIONS);
+		
+		List<Long> createdCodes = new ArrayList<>();
+		
+		// Grid places have no exit up or down
+		for(Long curCode: slice(2)) {
+			
+			Place place = createStats.measure(() -> service.createPlace(GeneratedWorld.PLACE_CLASS, "DOWN", curCode));
+			
+			assertEquals(curCode, place.getExits().get("DOWN").getTargetPlaceCode());
+			
+			createdCodes.add(place.getCode());
+		}
+		
+		for(Long curCode: createdCodes) {
+			
+			destroyStats.measure(() -> {
+				
+				service.destroyPlace(curCode);
+				return null;
+			});
+		}
+		
+		log.info("{}", createStats);
+		log.info("{}", destroyStats);
+		
+		assertFalse(placeRepository.findAllById(createdCodes).iterator().hasNext());
+		
+		createStats.assertWithin(CREATE_PLACE_MAX_STATEMENTS, CREATE_PLACE_P50_MILLIS, CREATE_PLACE_P99_MILLIS);
+		
+		// Only the target place is read: the new one is persisted once, with its rows, and never merged
+		createStats.assertPlacesLoaded(1);
+		
+		destroyStats.assertWithin(DESTROY_PLACE_MAX_STATEMENTS, DESTROY_PLACE_P50_MILLIS, DESTROY_PLACE_P99_MILLIS);
+	}
+	
+	@Test
+	void testExitNamesAgainstPerExitReads() throws Exception {
+		
+		OperationStats projectedStats = new OperationStats("getPlace, exit names projected", statistics, ITERATIONS);
+		OperationStats perExitStats = new OperationStats("getPlace, exit targets read one by one", statistics, ITERATIONS);
+		
+		int i = 0;
+		
+		for(Long curCode: slice(3)) {
+			
+			// Each path goes first every other place, so neither always finds the rows in the database cache
+			if (i++ % 2 == 0) {
+				
+				perExitStats.measure(() -> exitNamesPerExit(curCode));
+				projectedStats.measure(() -> service.getPlace(curCode));
+			} else {
+				
+				projectedStats.measure(() -> service.getPlace(curCode));
+				perExitStats.measure(() -> exitNamesPerExit(curCode));
+			}
+		}
+		
+		log.info("{}", projectedStats);
+		log.info("{}", perExitStats);
+		
+		// Grid places have 2 to 4 exits: the per exit reads load each of their targets
+		assertTrue(projectedStats.getMaxStatements() < perExitStats.getMaxStatements(), 
+				() -> projectedStats + " / " + perExitStats);
+		assertTrue(projectedStats.getMaxPlacesLoaded() < perExitStats.getMaxPlacesLoaded(), 
+				() -> projectedStats + " / " + perExitStats);
+	}
+	
+	@Test
+	void testSaveAgainstDatabaseBeforeState() throws Exception {
+		
+		OperationStats snapshotStats = new OperationStats("save, before state from snapshot", statistics, ITERATIONS);
+		OperationStats databaseStats = new OperationStats("save, before state read again", statistics, ITERATIONS);
+		
+		int i = 0;
+		
+		for(Long curCode: slice(4)) {
+			
+			// Each path goes first every other place, so neither always finds the rows in the database cache
+			if (i++ % 2 == 0) {
+				
+				databaseStats.measure(() -> damageAndSave(curCode, false));
+				snapshotStats.measure(() -> damageAndSave(curCode, true));
+			} else {
+				
+				snapshotStats.measure(() -> damageAndSave(curCode, true));
+				databaseStats.measure(() -> damageAndSave(curCode, false));
+			}
+		}
+		
+		log.info("{}", snapshotStats);
+		log.info("{}", databaseStats);
+		
+		// Without the snapshot, NotificationAspect detaches the place and reads it again
+		assertTrue(snapshotStats.getMaxStatements() < databaseStats.getMaxStatements(), 
+				() -> snapshotStats + " / " + databaseStats);
+		assertTrue(snapshotStats.getMaxPlacesLoaded() < databaseStats.getMaxPlacesLoaded(), 
+				() -> snapshotStats + " / " + databaseStats);
+	}
+	
+	/**
+	 * The place read for update and saved with one HP less, as updatePlace does, with or without
+	 * the snapshot of the place as loaded (without it, the state before the save is read again).
+	 */
+	private static PlaceEntity damageAndSave(Long code, boolean withSnapshot) {
+		
+		return transactionTemplate.execute(status -> {
+			
+			PlaceEntity place = placeRepository.findForUpdateByCode(code).orElseThrow();
+			
+			if (withSnapshot) {
+				place.setLoadedState(PlaceSnapshotConverter.snapshot(place));
+			}
+			
+			place.getAttrs().stream()
+				.filter(d -> d.getCode().equals(GeneratedWorld.HP_ATTR))
+				.forEach(d -> d.setValue(d.getValue() - 1));
+			
+			return placeRepository.save(place);
+		});
+	}
+	
+	/**
+	 * Exit names as getPlace used to resolve them: the place, then each exit target read whole
+	 * (findById), each in its own transaction, to take its class name.  The place class is lazy
+	 * now, so it's read in that transaction too (it used to be eager).
+	 */
+	private static Map<String, String> exitNamesPerExit(Long code) {
+		
+		PlaceEntity place = placeRepository.findViewByCode(code).orElseThrow();
+		
+		Map<String, String> exitNames = new HashMap<>();
+		
+		for(PlaceExitEntity curExit: place.getExits()) {
+			
+			exitNames.put(curExit.getDirection(), transactionTemplate.execute(status -> 
+					placeRepository.findById(curExit.getTargetPlaceCode())
+						.map(d -> d.getPlaceClass().getName())
+						.orElse(null)));
+		}
+		
+		return exitNames;
+	}
+	
+	/**
+	 * Places of the n-th slice (the last one, MEASURED_SLICES, is for warm up)
+	 */
+	private static List<Long> slice(int n) {
+		
+		int size = (n < MEASURED_SLICES) ? ITERATIONS : WARMUP_CALLS;
+		
+		return placeCodes.subList(n * ITERATIONS, n * ITERATIONS + size);
+	}
+	
+	/**
+	 * Update request for the place, with its HP lowered.
+	 * A new object, so the cached place isn't changed.
+	 */
+	private static Place damaged(Place place, int damage) {
+		
+		Place request = new Place();
+		request.setCode(place.getCode());
+		request.setClassCode(place.getClassCode());
+		request.setName(place.getName());
+		request.setDescription(place.getDescription());
+		request.setExits(new HashMap<>(place.getExits()));
+		request.setAttrs(new HashMap<>(place.getAttrs()));
+		
+		request.getAttrs().put(GeneratedWorld.HP_ATTR, GeneratedWorld.MAXHP_VALUE - damage);
+		
+		return request;
+	}
+}
@@ -0,0 +1,262 @@
+package com.cailleach.mudengine.world.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.service.PlaceService;
+import com.cailleach.mudengine.world.service.WorldTransferService;
+
+/**
+ * getPlace and updatePlace under a burst of concurrent calls, on platform threads and on virtual threads.
+ * 
+ * All calls of a burst are submitted at once.  On platform threads they share a pool as big as
+ * Tomcat's (server.tomcat.threads.max), so calls beyond it wait for a thread as requests do; on
+ * virtual threads each call gets its own.  Both go through the same connection pool.
+ * 
+ * Nothing is asserted but the calls' results: throughput and latencies of both modes are logged
+ * side by side once all tests ran.  The virtual thread runs are skipped before Java 21.
+ * 
+ * Only the platform side has been run so far (Java 17): the comparison, and so the benefit of the
+ * virtual-threads profile, is still to be measured on a Java 21 JVM.
+ * 
+ * Only run with the integration profile (tag "load").
+ */
+@Tag("load")
+class PlaceServiceLoadTests {
+	
+	private static final Logger log = LoggerFactory.getLogger(PlaceServiceLoadTests.class);
+	
+	/**
+	 * Spring Boot default of server.tomcat.threads.max
+	 */
+	private static final int TOMCAT_MAX_THREADS = 200;
+	
+	private static final int WARMUP_CALLS = 20;
+	
+	private static final int DAMAGE = 1;
+	
+	private static final long RANDOM_SEED = 42L;
+	
+	private static final int WORLD_SIZE = Integer.getInteger("it.world.size", 10000);
+	
+	private static final int CALLS = Integer.getInteger("it.load.calls", 2000);
+	
+	private static final List<LoadStats> results = Collections.synchronizedList(new ArrayList<>());
+	
+	private static ConfigurableApplicationContext context;
+	
+	private static PlaceService service;
+	
+	/**
+	 * Codes of the generated places, in random order.
+	 * Each test takes its own slice, so every run starts with its places out of the cache.
+	 */
+	private static List<Long> placeCodes;
+	
+	@BeforeAll
+	public static void setup() throws Exception {
+		
+		IntegrationDatabase.start();
+		
+		GeneratedWorld.createSchema(
+				System.getProperty("it.db.url"),
+				System.getProperty("it.db.username"),
+				System.getProperty("it.db.password"),
+				IntegrationDatabase.scripts());
+		
+		context = new SpringApplicationBuilder(IntegrationTestApplication.class).run();
+		
+		service = context.getBean(PlaceService.class);
+		
+		context.getBean(WorldTransferService.class)
+			.importWorld(new ByteArrayInputStream(GeneratedWorld.build(WORLD_SIZE)));
+		
+		placeCodes = new ArrayList<>(context.getBean(PlaceRepository.class).findAllCodes());
+		Collections.shuffle(placeCodes, new Random(RANDOM_SEED));
+		
+		if (placeCodes.size() < 4 * CALLS + WARMUP_CALLS) {
+			throw new IllegalStateException("it.world.size too small for " + CALLS + " calls");
+		}
+		
+		for(Long curCode: slice(4)) {
+			
+			service.getPlace(curCode);
+			service.updatePlace(curCode, damaged(service.getPlace(curCode)));
+		}
+	}
+	
+	@AfterAll
+	public static void tearDown() {
+		
+		results.forEach(d -> log.info("{}", d));
+		
+		if (context!=null) {
+			context.close();
+		}
+	}
+	
+	@Test
+	void testGetPlaceOnPlatformThreads() throws Exception {
+		
+		run("getPlace", "platform", Executors.newFixedThreadPool(TOMCAT_MAX_THREADS), slice(0), service::getPlace);
+	}
+	
+	@Test
+	void testGetPlaceOnVirtualThreads() throws Exception {
+		
+		ExecutorService executor = virtualThreads();
+		
+		assumeTrue(executor!=null, "virtual threads need Java 21");
+		
+		run("getPlace", "virtual", executor, slice(1), service::getPlace);
+	}
+	
+	@Test
+	void testUpdatePlaceOnPlatformThreads() throws Exception {
+		
+		runUpdates("platform", Executors.newFixedThreadPool(TOMCAT_MAX_THREADS), slice(2));
+	}
+	
+	@Test
+	void testUpdatePlaceOnVirtualThreads() throws Exception {
+		
+		ExecutorService executor = virtualThreads();
+		
+		assumeTrue(executor!=null, "virtual threads need Java 21");
+		
+		runUpdates("virtual", executor, slice(3));
+	}
+	
+	private static void runUpdates(String threads, ExecutorService executor, List<Long> codes) throws Exception {
+		
+		// Requests are built beforehand, only the updates are measured
+		Map<Long, Place> requests = new HashMap<>();
+		
+		service.getPlaces(codes).forEach(d -> requests.put(d.getCode(), damaged(d)));
+		
+		List<Place> places = run("updatePlace", threads, executor, codes, d -> service.updatePlace(d, requests.get(d)));
+		
+		for(Place curPlace: places) {
+			assertEquals(GeneratedWorld.MAXHP_VALUE - DAMAGE, curPlace.getAttrs().get(GeneratedWorld.HP_ATTR));
+		}
+	}
+	
+	/**
+	 * Submit one call per place at once and wait for all of them
+	 * 
+	 * @return results of the calls, in the order of the places
+	 */
+	private static List<Place> run(String operation, String threads, ExecutorService executor,
+			List<Long> codes, Function<Long, Place> call) throws Exception {
+		
+		LoadStats stats = new LoadStats(operation, threads, codes.size());
+		
+		List<Future<Place>> calls = new ArrayList<>(codes.size());
+		List<Place> places = new ArrayList<>(codes.size());
+		
+		try {
+			
+			long start = System.nanoTime();
+			
+			for(int i=0;i<codes.size();i++) {
+				
+				final int curCall = i;
+				final Long curCode = codes.get(i);
+				final long submitted = System.nanoTime();
+				
+				calls.add(executor.submit(() -> {
+					
+					Place place = call.apply(curCode);
+					
+					stats.record(curCall, System.nanoTime() - submitted);
+					
+					return place;
+				}));
+			}
+			
+			for(Future<Place> curCall: calls) {
+				places.add(curCall.get());
+			}
+			
+			stats.setElapsedNanos(System.nanoTime() - start);
+		
+		} finally {
+			executor.shutdown();
+		}
+		
+		for(int i=0;i<codes.size();i++) {
+			assertEquals(codes.get(i), places.get(i).getCode());
+		}
+		
+		log.info("{}", stats);
+		
+		results.add(stats);
+		
+		return places;
+	}
+	
+	/**
+	 * One new virtual thread per task, or null before Java 21
+	 * (the project is built for Java 17, so it's looked up by reflection)
+	 */
+	private static ExecutorService virtualThreads() {
+		
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(ReflectiveOperationException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Places of the n-th slice (slice 4 is for warm up)
+	 */
+	private static List<Long> slice(int n) {
+		
+		int size = (n < 4) ? CALLS : WARMUP_CALLS;
+		
+		return placeCodes.subList(n * CALLS, n * CALLS + size);
+	}
+	
+	/**
+	 * Update request for the place, with its HP lowered.
+	 * A new object, so the cached place isn't changed.
+	 */
+	private static Place damaged(Place place) {
+		
+		Place request = new Place();
+		request.setCode(place.getCode());
+		request.setClassCode(place.getClassCode());
+		request.setName(place.getName());
+		request.setDescription(place.getDescription());
+		request.setExits(new HashMap<>(place.getExits()));
+		request.setAttrs(new HashMap<>(place.getAttrs()));
+		
+		request.getAttrs().put(GeneratedWorld.HP_ATTR, GeneratedWorld.MAXHP_VALUE - DAMAGE);
+		
+		return request;
+	}
+}
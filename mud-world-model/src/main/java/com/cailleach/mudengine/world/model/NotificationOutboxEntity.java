@@ -0,0 +1,42 @@
+package com.cailleach.mudengine.world.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.Data;
+
+/**
+ * One notification waiting to be relayed to the place topic.
+ * 
+ * Written in the same transaction as the place change that originated it,
+ * and removed once the notification is sent.
+ */
+@Entity
+@Table(name="MUD_NOTIFICATION_OUTBOX")
+@SequenceGenerator(name = "mud_notification_outbox_seq", sequenceName="mud_notification_outbox_seq", allocationSize=50)
+@Data
+public class NotificationOutboxEntity {
+
+	@Id
+	@GeneratedValue(generator="mud_notification_outbox_seq", strategy=GenerationType.SEQUENCE)
+	private Long code;
+	
+	@Column(name="ENTITY_ID", nullable = false)
+	private Long entityId;
+	
+	@Column(name="EVENT", length = 30, nullable = false)
+	private String event;
+	
+	/**
+	 * The notification itself, in the same serialized form sent to the topic.
+	 */
+	@Column(name="PAYLOAD", nullable = false)
+	private byte[] payload;
+	
+	@Column(name="AUTH_TOKEN", length = 1000)
+	private String authToken;
+	
+	@Column(name="CREATED_AT", nullable = false)
+	private LocalDateTime createdAt;
+}
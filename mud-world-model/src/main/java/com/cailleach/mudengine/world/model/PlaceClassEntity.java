@@ -6,11 +6,20 @@ import java.util.Set;
 import jakarta.persistence.*;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 @Entity
 @Table(name="MUD_PLACE_CLASS")
+@NamedEntityGraph(name=PlaceClassEntity.CATALOG_GRAPH, attributeNodes=@NamedAttributeNode("attrs"))
 @Data
+@EqualsAndHashCode(of="code")
 public class PlaceClassEntity {
+	
+	/**
+	 * Place class with its attributes, as kept in the catalog
+	 */
+	public static final String CATALOG_GRAPH = "PlaceClassEntity.catalog";
 
 	@Id
 	@Column(name="CODE", length = 20)
@@ -28,7 +37,8 @@ public class PlaceClassEntity {
 	@Column(name="WEIGHT_CAPACITY")
 	private Integer weightCapacity;
 
-	@OneToMany(mappedBy="id.classCode", fetch=FetchType.EAGER, cascade=CascadeType.ALL, orphanRemoval=true)
+	@OneToMany(mappedBy="id.classCode", fetch=FetchType.LAZY, cascade=CascadeType.ALL, orphanRemoval=true)
+	@ToString.Exclude
 	private Set<PlaceClassAttrEntity> attrs = new HashSet<>();
 	
 	@Column(name="PARENT_CLASS_CODE", length = 20)
@@ -2,14 +2,51 @@ package com.cailleach.mudengine.world.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
 import java.util.*;
 
+/**
+ * Place, with its exits and attributes.
+ * 
+ * Associations are lazy: each use case loads what it needs in one query through
+ * one of the fetch plans below (see PlaceRepository).  Exit labels only need names,
+ * read through a projection, and the world graph only reads codes and exit rows.
+ * They're left out of equals, hashCode and toString, so neither ever loads them.
+ */
 @Entity
 @Table(name="MUD_PLACE")
-@SequenceGenerator(name = "mud_place_seq", sequenceName="mud_place_seq", allocationSize=1)
+@NamedEntityGraph(name=PlaceEntity.VIEW_GRAPH, attributeNodes= {
+		@NamedAttributeNode("exits"),
+		@NamedAttributeNode("attrs")
+})
+@NamedEntityGraph(name=PlaceEntity.UPDATE_GRAPH, attributeNodes= {
+		@NamedAttributeNode("placeClass"),
+		@NamedAttributeNode("exits"),
+		@NamedAttributeNode("attrs")
+})
+@SequenceGenerator(name = "mud_place_seq", sequenceName="mud_place_seq", allocationSize=PlaceEntity.CODE_ALLOCATION_SIZE)
 @Data
+@EqualsAndHashCode(of="code")
 public class PlaceEntity {
 	
+	/**
+	 * Place codes taken at once from MUD_PLACE_SEQ (pooled optimizer).
+	 * Must match the sequence increment.
+	 */
+	public static final int CODE_ALLOCATION_SIZE = 50;
+	
+	/**
+	 * Place to be shown: exits and attributes (the place class is taken from the catalog)
+	 */
+	public static final String VIEW_GRAPH = "PlaceEntity.view";
+	
+	/**
+	 * Place to be changed: exits, attributes and place class, as needed by the notifications
+	 */
+	public static final String UPDATE_GRAPH = "PlaceEntity.update";
+	
 	@Id
 	@GeneratedValue(generator="mud_place_seq", strategy=GenerationType.SEQUENCE)
 	private Long code;
@@ -20,16 +57,35 @@ public class PlaceEntity {
 	@Column(length = 500)
 	private String description;
 
-	@ManyToOne
+	/**
+	 * Bumped on every change of the place, including changes to its exits and attributes only
+	 * (places to be changed are read with an optimistic force increment lock, see PlaceUpdateRepository)
+	 */
+	@Version
+	@Column(name="VERSION")
+	private Integer version;
+
+	@ManyToOne(fetch=FetchType.LAZY)
+	@ToString.Exclude
 	@JoinColumn(name="CLASS_CODE", referencedColumnName="CODE", nullable = false)
 	private PlaceClassEntity placeClass;
 	
-	@OneToMany(mappedBy="pk.placeCode", fetch=FetchType.EAGER, cascade=CascadeType.ALL, orphanRemoval=true)
+	@OneToMany(mappedBy="pk.placeCode", fetch=FetchType.LAZY, cascade=CascadeType.ALL, orphanRemoval=true)
+	@ToString.Exclude
 	private Set<PlaceExitEntity> exits;
 	
-	@OneToMany(mappedBy="id.placeCode", fetch=FetchType.EAGER, cascade=CascadeType.ALL, orphanRemoval=true)
+	@OneToMany(mappedBy="id.placeCode", fetch=FetchType.LAZY, cascade=CascadeType.ALL, orphanRemoval=true)
+	@ToString.Exclude
 	private Set<PlaceAttrEntity> attrs;
 	
+	/**
+	 * Detached copy of this place as it was when loaded for a change.
+	 * Used to compare before and after states on save without reading the place again.
+	 */
+	@Transient
+	@ToString.Exclude
+	private PlaceEntity loadedState;
+	
 	
 	public PlaceEntity() {
 		this.exits = new HashSet<>();
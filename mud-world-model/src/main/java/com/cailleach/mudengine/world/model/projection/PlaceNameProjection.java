@@ -0,0 +1,14 @@
+package com.cailleach.mudengine.world.model.projection;
+
+/**
+ * Name-only view of a place, used to label exits without loading
+ * the whole neighbouring place graph.
+ */
+public interface PlaceNameProjection {
+
+	Long getCode();
+	
+	String getName();
+	
+	String getClassName();
+}
@@ -0,0 +1,29 @@
+package com.cailleach.mudengine.world.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.cailleach.mudengine.world.model.NotificationOutboxEntity;
+
+import jakarta.persistence.LockModeType;
+
+public interface NotificationOutboxRepository extends CrudRepository<NotificationOutboxEntity, Long> {
+
+	/**
+	 * Oldest pending notifications, locked until the end of the current transaction
+	 * so only one relay at a time works on them.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	List<NotificationOutboxEntity> findByOrderByCodeAsc(Pageable pageable);
+	
+	@Modifying
+	@Query("delete from NotificationOutboxEntity o where o.code in :codes")
+	int deleteByCodeIn(@Param("codes") Collection<Long> codes);
+}
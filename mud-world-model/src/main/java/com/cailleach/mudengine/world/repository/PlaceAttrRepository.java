@@ -0,0 +1,27 @@
+package com.cailleach.mudengine.world.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.cailleach.mudengine.world.model.PlaceAttrEntity;
+import com.cailleach.mudengine.world.model.pk.PlaceAttrEntityPK;
+
+public interface PlaceAttrRepository extends CrudRepository<PlaceAttrEntity, PlaceAttrEntityPK> {
+	
+	/**
+	 * Add a delta to an attribute of a place in one single statement, without reading it.
+	 * 
+	 * @return the number of attributes changed: zero if the place doesn't have the attribute
+	 */
+	@Modifying
+	@Query("update PlaceAttrEntity a set a.value = a.value + :delta "
+			+ "where a.id.placeCode = :placeCode and a.id.code = :code")
+	int addToValue(@Param("placeCode") Long placeCode, @Param("code") String code, @Param("delta") Integer delta);
+	
+	List<PlaceAttrEntity> findByIdPlaceCodeAndIdCodeIn(Long placeCode, Collection<String> codes);
+}
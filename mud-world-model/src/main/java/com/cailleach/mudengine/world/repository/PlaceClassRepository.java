@@ -1,9 +1,22 @@
 package com.cailleach.mudengine.world.repository;
 
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.repository.CrudRepository;
 
 import com.cailleach.mudengine.world.model.PlaceClassEntity;
 
 public interface PlaceClassRepository extends CrudRepository<PlaceClassEntity, String> {
 
+	/**
+	 * Place classes with their attributes (the whole catalog)
+	 */
+	@Override
+	@EntityGraph(PlaceClassEntity.CATALOG_GRAPH)
+	Iterable<PlaceClassEntity> findAll();
+	
+	@Override
+	@EntityGraph(PlaceClassEntity.CATALOG_GRAPH)
+	Optional<PlaceClassEntity> findById(String code);
 }
@@ -1,17 +1,61 @@
 package com.cailleach.mudengine.world.repository;
 
 
-import org.springframework.data.repository.CrudRepository;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.model.projection.PlaceNameProjection;
 
-public interface PlaceRepository extends CrudRepository<PlaceEntity, Long> {
+public interface PlaceRepository extends CrudRepository<PlaceEntity, Long>, PlaceUpdateRepository {
 
 	/**
 	 * Just to AOP pointcut to be able to grab this
 	 */
 	@Override
 	<S extends PlaceEntity> S save(S entity);
+	
+	/**
+	 * Place to be shown, with its exits and attributes
+	 */
+	@EntityGraph(PlaceEntity.VIEW_GRAPH)
+	Optional<PlaceEntity> findViewByCode(Long code);
+	
+	/**
+	 * Places to be shown, with their exits and attributes, in one single query
+	 */
+	@EntityGraph(PlaceEntity.VIEW_GRAPH)
+	List<PlaceEntity> findViewByCodeIn(Collection<Long> codes);
+	
+	/**
+	 * Bump the version of a place without loading it.  Changes made through bulk statements
+	 * must do it, so updates of the place read before them conflict instead of undoing them.
+	 * 
+	 * @return number of places changed (zero if the place doesn't exist)
+	 */
+	@Modifying
+	@Query("update PlaceEntity p set p.version = p.version + 1 where p.code = :code")
+	int incrementVersion(@Param("code") Long code);
 
+	/**
+	 * Retrieve only the names of the given places (and of their place classes)
+	 * in one single query.  Used to label exits without loading each target place.
+	 */
+	@Query("select p.code as code, p.name as name, c.name as className "
+			+ "from PlaceEntity p join p.placeClass c "
+			+ "where p.code in :codes")
+	List<PlaceNameProjection> findNamesByCodeIn(@Param("codes") Collection<Long> codes);
+	
+	/**
+	 * Codes of all existing places, without loading them.
+	 */
+	@Query("select p.code from PlaceEntity p")
+	List<Long> findAllCodes();
 }
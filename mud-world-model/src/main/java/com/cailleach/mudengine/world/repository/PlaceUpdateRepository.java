@@ -0,0 +1,28 @@
+package com.cailleach.mudengine.world.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import com.cailleach.mudengine.world.model.PlaceEntity;
+
+/**
+ * Places read to be changed.  Implemented by hand: a lock given to the query would also
+ * apply to the exits and attributes fetched along with them (see {@link PlaceUpdateRepositoryImpl}).
+ */
+public interface PlaceUpdateRepository {
+	
+	/**
+	 * Place to be changed, with its exits, attributes and place class.
+	 * 
+	 * Its version is bumped when the transaction commits, even if only exits or attributes
+	 * changed: concurrent changes to the same place conflict instead of overwriting each other.
+	 * Must be called within a transaction.
+	 */
+	Optional<PlaceEntity> findForUpdateByCode(Long code);
+
+	/**
+	 * Places to be changed at once, as {@link #findForUpdateByCode(Long)}
+	 */
+	List<PlaceEntity> findForUpdateByCodeIn(Collection<Long> codes);
+}
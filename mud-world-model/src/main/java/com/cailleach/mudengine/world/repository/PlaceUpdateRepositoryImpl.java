@@ -0,0 +1,46 @@
+package com.cailleach.mudengine.world.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import com.cailleach.mudengine.world.model.PlaceEntity;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * The places are read with their update graph, and only then locked one by one.
+ * 
+ * A lock given to the query (@Lock) is applied by Hibernate to every entity it loads, exits and
+ * attributes included, and OPTIMISTIC_FORCE_INCREMENT fails on them as they have no version.
+ * Locking the places already loaded doesn't take any statement: their versions are bumped on commit.
+ */
+public class PlaceUpdateRepositoryImpl implements PlaceUpdateRepository {
+	
+	private static final String FETCH_GRAPH_HINT = "jakarta.persistence.fetchgraph";
+	
+	@PersistenceContext
+	private EntityManager em;
+	
+	@Override
+	public Optional<PlaceEntity> findForUpdateByCode(Long code) {
+		return findForUpdateByCodeIn(List.of(code)).stream().findFirst();
+	}
+	
+	@Override
+	public List<PlaceEntity> findForUpdateByCodeIn(Collection<Long> codes) {
+		
+		List<PlaceEntity> places = em.createQuery("select p from PlaceEntity p where p.code in :codes", PlaceEntity.class)
+				.setParameter("codes", codes)
+				.setHint(FETCH_GRAPH_HINT, em.getEntityGraph(PlaceEntity.UPDATE_GRAPH))
+				.getResultList();
+		
+		for(PlaceEntity curPlace: places) {
+			em.lock(curPlace, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+		}
+		
+		return places;
+	}
+}
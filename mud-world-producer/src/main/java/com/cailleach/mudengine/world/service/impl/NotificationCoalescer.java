@@ -0,0 +1,294 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Folds rapidly toggled exit notifications down to their net change.
+ * 
+ * When enabled (place.coalesce.window-ms greater than zero), exit open/close/lock/unlock
+ * notifications of a place are held for the window, starting from the first one.  When it
+ * expires, the notifications of each (place, direction) are folded: only the last open/close
+ * and the last lock/unlock are kept, and dropped altogether if the exit is back where it
+ * started (i.e. an open followed by a close).
+ * 
+ * Any other notification of the place releases its held notifications first (cancelling the
+ * window), so the order of events of a place is kept.  Suppressed notifications are counted in
+ * place.notifications.suppressed, by event.
+ * 
+ * On shutdown the windows still open are cancelled and their notifications sent right away.
+ */
+@Component
+public class NotificationCoalescer {
+	
+	private static final Logger log = LoggerFactory.getLogger(NotificationCoalescer.class);
+	
+	public static final String SUPPRESSED_METRIC = "place.notifications.suppressed";
+	
+	private static final Set<EnumNotificationEvent> OPENING_EVENTS = 
+			Set.of(EnumNotificationEvent.PLACE_EXIT_OPEN, EnumNotificationEvent.PLACE_EXIT_CLOSE);
+	
+	private static final Set<EnumNotificationEvent> LOCKING_EVENTS = 
+			Set.of(EnumNotificationEvent.PLACE_EXIT_LOCK, EnumNotificationEvent.PLACE_EXIT_UNLOCK);
+	
+	private final NotificationPublisher publisher;
+	
+	private final MeterRegistry meterRegistry;
+	
+	private final long windowMs;
+	
+	/**
+	 * Runs both the window expirations and the publishing of released notifications,
+	 * in the order they were released.
+	 */
+	private final ScheduledThreadPoolExecutor executor;
+	
+	private final Map<Long, HeldPlace> held = new HashMap<>();
+	
+	public NotificationCoalescer(NotificationPublisher publisher, MeterRegistry meterRegistry,
+			@Value("${place.coalesce.window-ms:0}") long windowMs) {
+		
+		this.publisher = publisher;
+		this.meterRegistry = meterRegistry;
+		this.windowMs = windowMs;
+		
+		this.executor = (windowMs > 0) ?
+				new ScheduledThreadPoolExecutor(1, r -> {
+					Thread t = new Thread(r, "notification-coalescer");
+					t.setDaemon(true);
+					return t;
+				}) :
+				null;
+		
+		if (executor!=null) {
+			
+			// Windows are cancelled when released early, and never waited for on shutdown
+			executor.setRemoveOnCancelPolicy(true);
+			executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		}
+	}
+	
+	public boolean isEnabled() {
+		return executor!=null;
+	}
+	
+	/**
+	 * Hand the notifications over to be published once folded.
+	 * They're published asynchronously, any failure is logged.
+	 * 
+	 * @param notifications - notifications to be sent
+	 */
+	public void submit(List<OutgoingNotification> notifications) {
+		
+		synchronized(held) {
+			
+			List<OutgoingNotification> released = new ArrayList<>();
+			
+			notifications.forEach(d -> {
+				
+				Long placeId = d.getNotification().getEntityId();
+				
+				if (isExitToggle(d.getNotification())) {
+					
+					held.computeIfAbsent(placeId, this::openWindow).notifications.add(d);
+					
+				} else {
+					
+					// Whatever was held for this place goes first
+					released.addAll(release(held.remove(placeId)));
+					released.add(d);
+				}
+			});
+			
+			publishLater(released);
+		}
+	}
+	
+	/**
+	 * Fold exit toggles down to their net change, per (place, direction).
+	 * Other notifications are kept as they are.
+	 * 
+	 * @param notifications - notifications in the order they happened
+	 * @return notifications to be sent, in order
+	 */
+	public List<OutgoingNotification> fold(List<OutgoingNotification> notifications) {
+		
+		if ((notifications==null) || (notifications.isEmpty())) {
+			return List.of();
+		}
+		
+		// First and last toggle of each exit
+		Map<ToggleKey, int[]> toggles = new LinkedHashMap<>();
+		
+		for(int i=0;i<notifications.size();i++) {
+			
+			NotificationMessage curNotification = notifications.get(i).getNotification();
+			
+			if (isExitToggle(curNotification)) {
+				
+				final int pos = i;
+				
+				toggles.computeIfAbsent(ToggleKey.of(curNotification), k -> new int[] {pos, pos})[1] = pos;
+			}
+		}
+		
+		List<OutgoingNotification> folded = new ArrayList<>(notifications.size());
+		
+		for(int i=0;i<notifications.size();i++) {
+			
+			OutgoingNotification curNotification = notifications.get(i);
+			
+			if (!isExitToggle(curNotification.getNotification())) {
+				
+				folded.add(curNotification);
+				
+			} else {
+				
+				int[] range = toggles.get(ToggleKey.of(curNotification.getNotification()));
+				
+				// Toggles always alternate, so a last event equal to the first one is the net change;
+				// otherwise the exit is back to where it started
+				boolean netChange = (i==range[1]) && 
+						(notifications.get(range[0]).getNotification().getEvent()==curNotification.getNotification().getEvent());
+				
+				if (netChange) {
+					folded.add(curNotification);
+				} else {
+					meterRegistry.counter(SUPPRESSED_METRIC, "event", curNotification.getNotification().getEvent().name())
+						.increment();
+				}
+			}
+		}
+		
+		return folded;
+	}
+	
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		
+		if (executor!=null) {
+			
+			List<OutgoingNotification> released = new ArrayList<>();
+			
+			synchronized(held) {
+				
+				// Cancel the open windows, their notifications go after the ones already released
+				held.values().forEach(d -> released.addAll(release(d)));
+				held.clear();
+				
+				executor.shutdown();
+			}
+			
+			// Only the publishing of released notifications is left in the executor
+			executor.awaitTermination(5000, TimeUnit.MILLISECONDS);
+			
+			if (!released.isEmpty()) {
+				publisher.publish(released);
+			}
+		}
+	}
+	
+	/**
+	 * Start the window of a place, released when it expires
+	 */
+	private HeldPlace openWindow(Long placeId) {
+		
+		HeldPlace heldPlace = new HeldPlace();
+		
+		heldPlace.window = executor.schedule(() -> releaseWindow(placeId, heldPlace), windowMs, TimeUnit.MILLISECONDS);
+		
+		return heldPlace;
+	}
+	
+	private void releaseWindow(Long placeId, HeldPlace heldPlace) {
+		
+		synchronized(held) {
+			
+			// Unless the place was released meanwhile (and maybe held again, in a new window)
+			if (held.remove(placeId, heldPlace)) {
+				publishLater(fold(heldPlace.notifications));
+			}
+		}
+	}
+	
+	/**
+	 * Cancel the window of a held place and fold its notifications
+	 */
+	private List<OutgoingNotification> release(HeldPlace heldPlace) {
+		
+		if (heldPlace==null) {
+			return List.of();
+		}
+		
+		heldPlace.window.cancel(false);
+		
+		return fold(heldPlace.notifications);
+	}
+	
+	/**
+	 * Must be called holding the lock, so released notifications keep their order.
+	 */
+	private void publishLater(List<OutgoingNotification> released) {
+		
+		if (!released.isEmpty()) {
+			
+			executor.execute(() -> {
+				
+				try {
+					publisher.publish(released);
+				} catch(RuntimeException e) {
+					log.error("Failed to send {} notifications to the place topic", released.size(), e);
+				}
+			});
+		}
+	}
+	
+	private static boolean isExitToggle(NotificationMessage notification) {
+		
+		return (OPENING_EVENTS.contains(notification.getEvent()) || LOCKING_EVENTS.contains(notification.getEvent())) &&
+				(notification.getArgs()!=null) && (notification.getArgs().length > 0);
+	}
+	
+	/**
+	 * Notifications held for a place and the expiration of its window.
+	 * Only used holding the lock.
+	 */
+	private static class HeldPlace {
+		
+		private final List<OutgoingNotification> notifications = new ArrayList<>();
+		
+		private ScheduledFuture<?> window;
+	}
+	
+	/**
+	 * Exit toggles are folded by place, direction and what's being toggled.
+	 */
+	private record ToggleKey(Long placeId, String direction, boolean locking) {
+		
+		static ToggleKey of(NotificationMessage notification) {
+			
+			return new ToggleKey(
+					notification.getEntityId(), 
+					notification.getArgs()[0], 
+					LOCKING_EVENTS.contains(notification.getEvent()));
+		}
+	}
+}
@@ -0,0 +1,556 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Sends notifications from worker threads, so the request that made the change
+ * doesn't wait for the broker.
+ * 
+ * When enabled (place.dispatch.async), each batch of notifications is put in a bounded queue
+ * and sent by one of place.dispatch.workers threads.  Batches are assigned to workers by the place
+ * they're about, so the notifications of a place are still sent in order.  Workers send each batch
+ * right away and wait for the broker, folded by the coalescer when it's enabled (as the outbox relay
+ * does): a batch only leaves the queue once sent, not handed over to the linger or coalescing
+ * windows.  A batch that fails to be sent is logged and lost.  When the queue of a worker is full,
+ * place.dispatch.overflow decides:
+ * 
+ * - BLOCK: the caller waits for room in the queue (backpressure up to the request);
+ * - DROP_OLDEST: the oldest batch waiting is dropped;
+ * - SPILL: the batch is written to place.dispatch.spill-dir.  From then on every batch goes there,
+ *   until the queues are empty and the spilled ones are sent back in order.  A spilled batch is only
+ *   removed once sent, so it survives failures and restarts, and is sent again later (at least once).
+ * 
+ * Workers run on virtual threads when spring.threads.virtual.enabled is set and the JVM has them
+ * (Java 21 on, as Spring Boot decides for its own executors), on platform threads otherwise.
+ * 
+ * On shutdown the queues are drained for up to place.dispatch.shutdown-timeout-ms; whatever is left
+ * is spilled (SPILL) or reported as lost.
+ * 
+ * Notifications queued or being sent are exposed in place.notifications.queue.depth and the age
+ * of the oldest queued batch in place.notifications.queue.lag.  Dropped and spilled notifications are counted
+ * in place.notifications.dropped and place.notifications.spilled.
+ */
+@Component
+public class NotificationDispatcher {
+	
+	private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+	
+	public static final String QUEUE_DEPTH_METRIC = "place.notifications.queue.depth";
+	public static final String QUEUE_LAG_METRIC = "place.notifications.queue.lag";
+	public static final String DROPPED_METRIC = "place.notifications.dropped";
+	public static final String SPILLED_METRIC = "place.notifications.spilled";
+	
+	private static final long POLL_MS = 100;
+	
+	private static final String SPILL_SUFFIX = ".spill";
+	
+	private static final String WORKER_PREFIX = "notification-dispatch-";
+	
+	public enum OverflowPolicy { BLOCK, DROP_OLDEST, SPILL }
+	
+	private final NotificationPublisher publisher;
+	
+	private final NotificationCoalescer coalescer;
+	
+	private final MeterRegistry meterRegistry;
+	
+	private final OverflowPolicy overflow;
+	
+	private final Path spillDir;
+	
+	private final long shutdownTimeoutMs;
+	
+	private final List<BlockingQueue<QueuedBatch>> queues = new ArrayList<>();
+	
+	private final List<Thread> workers = new ArrayList<>();
+	
+	private final AtomicInteger queuedNotifications = new AtomicInteger();
+	
+	/**
+	 * Guards the spill: whether batches go to the queues or to disk
+	 */
+	private final ReentrantLock spillLock = new ReentrantLock();
+	
+	private final AtomicLong spillSequence = new AtomicLong();
+	
+	private int spilledBatches;
+	
+	private final ScheduledExecutorService spillDrainer;
+	
+	private volatile boolean closing;
+	
+	public NotificationDispatcher(NotificationPublisher publisher, NotificationCoalescer coalescer, MeterRegistry meterRegistry,
+			@Value("${place.dispatch.async:false}") boolean async,
+			@Value("${place.dispatch.workers:2}") int workerCount,
+			@Value("${place.dispatch.queue-capacity:10000}") int queueCapacity,
+			@Value("${place.dispatch.overflow:BLOCK}") OverflowPolicy overflow,
+			@Value("${place.dispatch.spill-dir:${java.io.tmpdir}/mud-world-notifications}") Path spillDir,
+			@Value("${place.dispatch.shutdown-timeout-ms:10000}") long shutdownTimeoutMs,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+		
+		this.publisher = publisher;
+		this.coalescer = coalescer;
+		this.meterRegistry = meterRegistry;
+		this.overflow = overflow;
+		this.spillDir = spillDir;
+		this.shutdownTimeoutMs = shutdownTimeoutMs;
+		
+		this.spillDrainer = (async && (overflow==OverflowPolicy.SPILL)) ?
+				Executors.newSingleThreadScheduledExecutor(r -> {
+					Thread t = new Thread(r, "notification-spill");
+					t.setDaemon(true);
+					return t;
+				}) :
+				null;
+		
+		if (async) {
+			
+			int workerCapacity = Math.max(1, queueCapacity / Math.max(1, workerCount));
+			
+			ThreadFactory workerFactory = workerFactory(virtualThreads);
+			
+			for(int i=0;i<Math.max(1, workerCount);i++) {
+				
+				BlockingQueue<QueuedBatch> queue = new ArrayBlockingQueue<>(workerCapacity);
+				
+				Thread worker = workerFactory.newThread(() -> work(queue));
+				
+				queues.add(queue);
+				workers.add(worker);
+			}
+			
+			Gauge.builder(QUEUE_DEPTH_METRIC, queuedNotifications, AtomicInteger::get)
+				.register(meterRegistry);
+			
+			TimeGauge.builder(QUEUE_LAG_METRIC, this, TimeUnit.NANOSECONDS, NotificationDispatcher::oldestQueuedNanos)
+				.register(meterRegistry);
+			
+			if (spillDrainer!=null) {
+				
+				// Batches spilled before a restart are sent first
+				openSpill();
+				
+				spillDrainer.scheduleWithFixedDelay(this::drainSpill, POLL_MS, POLL_MS, TimeUnit.MILLISECONDS);
+			}
+			
+			workers.forEach(Thread::start);
+		}
+	}
+	
+	public boolean isEnabled() {
+		return !workers.isEmpty();
+	}
+	
+	/**
+	 * Hand the notifications over to be sent by a worker.
+	 * Send failures are logged, not thrown to the caller.
+	 * 
+	 * @param notifications - notifications of one change, in order
+	 */
+	public void submit(List<OutgoingNotification> notifications) {
+		
+		if (notifications.isEmpty()) {
+			return;
+		}
+		
+		if (closing) {
+			
+			// Too late to be queued
+			deliverOrLog(notifications);
+			return;
+		}
+		
+		QueuedBatch batch = new QueuedBatch(notifications, System.nanoTime());
+		BlockingQueue<QueuedBatch> queue = queueOf(notifications);
+		
+		switch(overflow) {
+			
+			case BLOCK -> enqueueBlocking(queue, batch);
+			case DROP_OLDEST -> enqueueDroppingOldest(queue, batch);
+			case SPILL -> enqueueOrSpill(queue, batch);
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		
+		if (!isEnabled()) {
+			return;
+		}
+		
+		closing = true;
+		
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+		
+		for(Thread curWorker: workers) {
+			curWorker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+		}
+		
+		if (spillDrainer!=null) {
+			spillDrainer.shutdown();
+			spillDrainer.awaitTermination(POLL_MS, TimeUnit.MILLISECONDS);
+		}
+		
+		// Whatever the workers couldn't send in time
+		List<QueuedBatch> left = new ArrayList<>();
+		
+		workers.forEach(Thread::interrupt);
+		queues.forEach(d -> d.drainTo(left));
+		
+		if (!left.isEmpty()) {
+			
+			if (overflow==OverflowPolicy.SPILL) {
+				spillLeftovers(left);
+			} else {
+				log.error("{} notification batches not sent before shutdown", left.size());
+			}
+		}
+	}
+	
+	/**
+	 * Virtual threads only if enabled and the JVM has them; platform daemon threads otherwise
+	 */
+	private static ThreadFactory workerFactory(boolean virtualThreads) {
+		
+		if (virtualThreads && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+			return new VirtualThreadTaskExecutor(WORKER_PREFIX).getVirtualThreadFactory();
+		}
+		
+		CustomizableThreadFactory platformFactory = new CustomizableThreadFactory(WORKER_PREFIX);
+		platformFactory.setDaemon(true);
+		
+		return platformFactory;
+	}
+	
+	private void work(BlockingQueue<QueuedBatch> queue) {
+		
+		while (!closing || !queue.isEmpty()) {
+			
+			QueuedBatch batch;
+			
+			try {
+				batch = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			
+			if (batch!=null) {
+				
+				try {
+					deliverOrLog(batch.notifications());
+				} finally {
+					// Only once sent, so the spill isn't sent back while a batch queued ahead of it is still going out
+					queuedNotifications.addAndGet(-batch.notifications().size());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Send the notifications right away, folded if the coalescer is enabled.
+	 * Any failure is thrown back.
+	 */
+	private void deliver(List<OutgoingNotification> notifications) {
+		publisher.send(coalescer.isEnabled() ? coalescer.fold(notifications) : notifications);
+	}
+	
+	private void deliverOrLog(List<OutgoingNotification> notifications) {
+		
+		try {
+			deliver(notifications);
+		} catch(RuntimeException e) {
+			log.error("Failed to send {} notifications to the place topic", notifications.size(), e);
+		}
+	}
+	
+	/**
+	 * Batches are assigned by the place of their first notification (the changed place)
+	 */
+	private BlockingQueue<QueuedBatch> queueOf(List<OutgoingNotification> notifications) {
+		
+		Long placeId = notifications.get(0).getNotification().getEntityId();
+		
+		return queues.get(Math.floorMod(Objects.hashCode(placeId), queues.size()));
+	}
+	
+	private void enqueueBlocking(BlockingQueue<QueuedBatch> queue, QueuedBatch batch) {
+		
+		try {
+			
+			queuedNotifications.addAndGet(batch.notifications().size());
+			
+			queue.put(batch);
+		
+		} catch(InterruptedException e) {
+			
+			Thread.currentThread().interrupt();
+			
+			// Not queued, sent by the caller itself
+			queuedNotifications.addAndGet(-batch.notifications().size());
+			
+			deliverOrLog(batch.notifications());
+		}
+	}
+	
+	private void enqueueDroppingOldest(BlockingQueue<QueuedBatch> queue, QueuedBatch batch) {
+		
+		queuedNotifications.addAndGet(batch.notifications().size());
+		
+		while (!queue.offer(batch)) {
+			
+			QueuedBatch dropped = queue.poll();
+			
+			if (dropped!=null) {
+				
+				queuedNotifications.addAndGet(-dropped.notifications().size());
+				
+				meterRegistry.counter(DROPPED_METRIC).increment(dropped.notifications().size());
+			}
+		}
+	}
+	
+	private void enqueueOrSpill(BlockingQueue<QueuedBatch> queue, QueuedBatch batch) {
+		
+		spillLock.lock();
+		
+		try {
+			
+			// Once spilling, everything goes to the spill until it's sent, so nothing overtakes it
+			if ((spilledBatches==0) && queue.offer(batch)) {
+				queuedNotifications.addAndGet(batch.notifications().size());
+			} else {
+				spill(batch.notifications());
+			}
+		
+		} finally {
+			spillLock.unlock();
+		}
+	}
+	
+	private void spill(List<OutgoingNotification> notifications) {
+		
+		spillLock.lock();
+		
+		try {
+			
+			Path spillFile = nextSpillName();
+			Path tempFile = spillDir.resolve(spillFile.getFileName() + ".tmp");
+			
+			try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tempFile))) {
+				
+				out.writeInt(notifications.size());
+				
+				for(OutgoingNotification curNotification: notifications) {
+					
+					byte[] payload = NotificationOutbox.serialize(curNotification.getNotification());
+					
+					out.writeBoolean(curNotification.getAuthToken()!=null);
+					
+					if (curNotification.getAuthToken()!=null) {
+						out.writeUTF(curNotification.getAuthToken());
+					}
+					
+					out.writeInt(payload.length);
+					out.write(payload);
+				}
+			}
+			
+			// Only whole batches are seen by the drainer (and after a restart)
+			Files.move(tempFile, spillFile, StandardCopyOption.ATOMIC_MOVE);
+			
+			spilledBatches++;
+			
+			meterRegistry.counter(SPILLED_METRIC).increment(notifications.size());
+		
+		} catch(IOException e) {
+			
+			log.error("Failed to spill {} notifications, sending them right away", notifications.size(), e);
+			
+			deliverOrLog(notifications);
+		
+		} finally {
+			spillLock.unlock();
+		}
+	}
+	
+	/**
+	 * Spill the batches left in the queues on shutdown.
+	 * Batches already spilled were submitted after them, so they're moved behind.
+	 */
+	private void spillLeftovers(List<QueuedBatch> left) {
+		
+		spillLock.lock();
+		
+		try {
+			
+			List<Path> spilledBefore = listSpillFiles();
+			
+			left.forEach(d -> spill(d.notifications()));
+			
+			for(Path curFile: spilledBefore) {
+				Files.move(curFile, nextSpillName(), StandardCopyOption.ATOMIC_MOVE);
+			}
+		
+		} catch(IOException e) {
+			log.error("Failed to keep the order of the spilled notifications", e);
+		} finally {
+			spillLock.unlock();
+		}
+	}
+	
+	/**
+	 * Send the spilled batches back, in order, once the queues are empty and no batch is
+	 * being sent (those were submitted before the spill started).
+	 * A batch is deleted only once sent: one that fails is kept, and it and the ones after it
+	 * are sent again on the next run.
+	 */
+	private void drainSpill() {
+		
+		try {
+			
+			Path spillFile;
+			
+			while (!closing && (queuedNotifications.get()==0) && ((spillFile = nextSpillFile())!=null)) {
+				
+				deliver(readSpillFile(spillFile));
+				
+				spillLock.lock();
+				
+				try {
+					Files.delete(spillFile);
+					spilledBatches--;
+				} finally {
+					spillLock.unlock();
+				}
+			}
+		
+		} catch(IOException | RuntimeException e) {
+			log.error("Failed to send spilled notifications, will try again", e);
+		}
+	}
+	
+	private void openSpill() {
+		
+		try {
+			
+			Files.createDirectories(spillDir);
+			
+			try (Stream<Path> files = Files.list(spillDir)) {
+				
+				List<Long> sequences = files
+						.map(d -> d.getFileName().toString())
+						.filter(d -> d.endsWith(SPILL_SUFFIX))
+						.map(d -> Long.valueOf(d.substring(0, d.length() - SPILL_SUFFIX.length())))
+						.toList();
+				
+				spilledBatches = sequences.size();
+				spillSequence.set(sequences.stream().mapToLong(Long::longValue).max().orElse(0));
+			}
+			
+			if (spilledBatches > 0) {
+				log.info("{} spilled notification batches found in {}", spilledBatches, spillDir);
+			}
+		
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private Path nextSpillFile() throws IOException {
+		
+		spillLock.lock();
+		
+		try {
+			return listSpillFiles().stream().findFirst().orElse(null);
+		} finally {
+			spillLock.unlock();
+		}
+	}
+	
+	/**
+	 * Spilled batches, oldest first
+	 */
+	private List<Path> listSpillFiles() throws IOException {
+		
+		try (Stream<Path> files = Files.list(spillDir)) {
+			
+			return files
+					.filter(d -> d.getFileName().toString().endsWith(SPILL_SUFFIX))
+					.sorted()
+					.toList();
+		}
+	}
+	
+	private Path nextSpillName() {
+		return spillDir.resolve(String.format("%019d%s", spillSequence.incrementAndGet(), SPILL_SUFFIX));
+	}
+	
+	private static List<OutgoingNotification> readSpillFile(Path spillFile) throws IOException {
+		
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(spillFile))) {
+			
+			int count = in.readInt();
+			
+			List<OutgoingNotification> notifications = new ArrayList<>(count);
+			
+			for(int i=0;i<count;i++) {
+				
+				String authToken = in.readBoolean() ? in.readUTF() : null;
+				
+				byte[] payload = new byte[in.readInt()];
+				in.readFully(payload);
+				
+				notifications.add(new OutgoingNotification(NotificationOutbox.deserialize(payload), authToken));
+			}
+			
+			return notifications;
+		}
+	}
+	
+	private double oldestQueuedNanos() {
+		
+		long now = System.nanoTime();
+		
+		return queues.stream()
+				.map(BlockingQueue::peek)
+				.filter(Objects::nonNull)
+				.mapToLong(d -> now - d.enqueuedNanos())
+				.max()
+				.orElse(0);
+	}
+	
+	private record QueuedBatch(List<OutgoingNotification> notifications, long enqueuedNanos) {}
+}
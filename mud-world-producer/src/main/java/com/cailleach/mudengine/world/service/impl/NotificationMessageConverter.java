@@ -0,0 +1,272 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+import org.springframework.stereotype.Component;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumEntity;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+
+/**
+ * Converts the notifications sent to the place topic.
+ * 
+ * With place.publish.format JAVA (the default) notifications go as serialized objects, as they always did.
+ * With BINARY they go as a BytesMessage in a compact encoding, flagged by the notificationFormat and
+ * notificationFormatVersion headers: consumers pick the decoding from the headers, so they can be
+ * upgraded before the producer switches and both formats can be read during the rollout.
+ * 
+ * Binary encoding, version 1 (DataOutput, big endian):
+ * 
+ * - version (byte)
+ * - presence flags (byte), one bit per field below, in order
+ * - entity (byte, ordinal)
+ * - entityId (long)
+ * - event (byte, ordinal)
+ * - messageKey (byte): 1-based index in MESSAGE_KEYS, or 0 followed by the key (UTF)
+ * - args: count (unsigned short), then each one as a presence flag (boolean) and UTF
+ * - targetEntity (byte, ordinal)
+ * - targetEntityId (long)
+ * - worldName (UTF)
+ * 
+ * Enums travel as ordinals and known keys as indexes, so reordering the enums or MESSAGE_KEYS
+ * needs a new version; new keys are only appended.
+ * 
+ * Anything other than a notification is left to SimpleMessageConverter (the JmsTemplate default).
+ */
+@Component
+public class NotificationMessageConverter implements MessageConverter {
+	
+	public static final String FORMAT_HEADER = "notificationFormat";
+	public static final String FORMAT_VERSION_HEADER = "notificationFormatVersion";
+	
+	public static final String BINARY_FORMAT = "binary";
+	public static final int BINARY_VERSION = 1;
+	
+	/**
+	 * Message keys sent as an index.  Append only.
+	 */
+	static final List<String> MESSAGE_KEYS = List.of(
+			NotificationService.PLACE_DESTROY_MSG,
+			NotificationService.PLACE_CLASS_CHANGE_MSG,
+			NotificationService.PLACE_EXIT_CREATE_MSG,
+			NotificationService.PLACE_EXIT_OPEN_MSG,
+			NotificationService.PLACE_EXIT_CLOSE_MSG,
+			NotificationService.PLACE_EXIT_LOCK_MSG,
+			NotificationService.PLACE_EXIT_UNLOCK_MSG
+			);
+	
+	private static final int HAS_ENTITY = 1;
+	private static final int HAS_ENTITY_ID = 1 << 1;
+	private static final int HAS_EVENT = 1 << 2;
+	private static final int HAS_MESSAGE_KEY = 1 << 3;
+	private static final int HAS_ARGS = 1 << 4;
+	private static final int HAS_TARGET_ENTITY = 1 << 5;
+	private static final int HAS_TARGET_ENTITY_ID = 1 << 6;
+	private static final int HAS_WORLD_NAME = 1 << 7;
+	
+	private static final EnumEntity[] ENTITIES = EnumEntity.values();
+	private static final EnumNotificationEvent[] EVENTS = EnumNotificationEvent.values();
+	
+	public enum WireFormat { JAVA, BINARY }
+	
+	private final WireFormat format;
+	
+	private final MessageConverter delegate = new SimpleMessageConverter();
+	
+	public NotificationMessageConverter(@Value("${place.publish.format:JAVA}") WireFormat format) {
+		this.format = format;
+	}
+	
+	@Override
+	public Message toMessage(Object object, Session session) throws JMSException {
+		
+		if ((format==WireFormat.BINARY) && (object instanceof NotificationMessage notification)) {
+			
+			BytesMessage message = session.createBytesMessage();
+			message.writeBytes(encode(notification));
+			
+			message.setStringProperty(FORMAT_HEADER, BINARY_FORMAT);
+			message.setIntProperty(FORMAT_VERSION_HEADER, BINARY_VERSION);
+			
+			return message;
+		}
+		
+		return delegate.toMessage(object, session);
+	}
+	
+	@Override
+	public Object fromMessage(Message message) throws JMSException {
+		
+		if (BINARY_FORMAT.equals(message.getStringProperty(FORMAT_HEADER))) {
+			
+			if (!(message instanceof BytesMessage bytesMessage)) {
+				throw new MessageConversionException("Binary notification expected in a BytesMessage");
+			}
+			
+			byte[] payload = new byte[(int) bytesMessage.getBodyLength()];
+			bytesMessage.readBytes(payload);
+			
+			return decode(payload);
+		}
+		
+		return delegate.fromMessage(message);
+	}
+	
+	public static byte[] encode(NotificationMessage notification) {
+		
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+		
+		try (DataOutputStream out = new DataOutputStream(buffer)) {
+			
+			int flags =
+					flag(notification.getEntity(), HAS_ENTITY)
+					| flag(notification.getEntityId(), HAS_ENTITY_ID)
+					| flag(notification.getEvent(), HAS_EVENT)
+					| flag(notification.getMessageKey(), HAS_MESSAGE_KEY)
+					| flag(notification.getArgs(), HAS_ARGS)
+					| flag(notification.getTargetEntity(), HAS_TARGET_ENTITY)
+					| flag(notification.getTargetEntityId(), HAS_TARGET_ENTITY_ID)
+					| flag(notification.getWorldName(), HAS_WORLD_NAME);
+			
+			out.writeByte(BINARY_VERSION);
+			out.writeByte(flags);
+			
+			if (notification.getEntity()!=null) {
+				out.writeByte(notification.getEntity().ordinal());
+			}
+			
+			if (notification.getEntityId()!=null) {
+				out.writeLong(notification.getEntityId());
+			}
+			
+			if (notification.getEvent()!=null) {
+				out.writeByte(notification.getEvent().ordinal());
+			}
+			
+			if (notification.getMessageKey()!=null) {
+				
+				int keyIndex = MESSAGE_KEYS.indexOf(notification.getMessageKey());
+				
+				out.writeByte(keyIndex + 1);
+				
+				if (keyIndex < 0) {
+					out.writeUTF(notification.getMessageKey());
+				}
+			}
+			
+			if (notification.getArgs()!=null) {
+				
+				out.writeShort(notification.getArgs().length);
+				
+				for(String curArg: notification.getArgs()) {
+					
+					out.writeBoolean(curArg!=null);
+					
+					if (curArg!=null) {
+						out.writeUTF(curArg);
+					}
+				}
+			}
+			
+			if (notification.getTargetEntity()!=null) {
+				out.writeByte(notification.getTargetEntity().ordinal());
+			}
+			
+			if (notification.getTargetEntityId()!=null) {
+				out.writeLong(notification.getTargetEntityId());
+			}
+			
+			if (notification.getWorldName()!=null) {
+				out.writeUTF(notification.getWorldName());
+			}
+		
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		return buffer.toByteArray();
+	}
+	
+	public static NotificationMessage decode(byte[] payload) {
+		
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+			
+			int version = in.readUnsignedByte();
+			
+			if (version!=BINARY_VERSION) {
+				throw new MessageConversionException("Unsupported notification format version " + version);
+			}
+			
+			int flags = in.readUnsignedByte();
+			
+			NotificationMessage notification = new NotificationMessage();
+			
+			if ((flags & HAS_ENTITY)!=0) {
+				notification.setEntity(ENTITIES[in.readUnsignedByte()]);
+			}
+			
+			if ((flags & HAS_ENTITY_ID)!=0) {
+				notification.setEntityId(in.readLong());
+			}
+			
+			if ((flags & HAS_EVENT)!=0) {
+				notification.setEvent(EVENTS[in.readUnsignedByte()]);
+			}
+			
+			if ((flags & HAS_MESSAGE_KEY)!=0) {
+				
+				int keyIndex = in.readUnsignedByte();
+				
+				notification.setMessageKey((keyIndex > 0) ? MESSAGE_KEYS.get(keyIndex - 1) : in.readUTF());
+			}
+			
+			if ((flags & HAS_ARGS)!=0) {
+				
+				String[] args = new String[in.readUnsignedShort()];
+				
+				for(int i=0;i<args.length;i++) {
+					args[i] = in.readBoolean() ? in.readUTF() : null;
+				}
+				
+				notification.setArgs(args);
+			}
+			
+			if ((flags & HAS_TARGET_ENTITY)!=0) {
+				notification.setTargetEntity(ENTITIES[in.readUnsignedByte()]);
+			}
+			
+			if ((flags & HAS_TARGET_ENTITY_ID)!=0) {
+				notification.setTargetEntityId(in.readLong());
+			}
+			
+			if ((flags & HAS_WORLD_NAME)!=0) {
+				notification.setWorldName(in.readUTF());
+			}
+			
+			return notification;
+		
+		} catch(IOException | IndexOutOfBoundsException e) {
+			throw new MessageConversionException("Malformed binary notification", e);
+		}
+	}
+	
+	private static int flag(Object value, int flag) {
+		return (value!=null) ? flag : 0;
+	}
+}
@@ -0,0 +1,122 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.world.model.NotificationOutboxEntity;
+import com.cailleach.mudengine.world.repository.NotificationOutboxRepository;
+
+/**
+ * Transactional outbox for place notifications.
+ * 
+ * When enabled (place.outbox.enabled), notifications aren't sent straight to the place topic.
+ * They're stored in MUD_NOTIFICATION_OUTBOX, in the same transaction as the place change,
+ * and later relayed to the topic by {@link NotificationOutboxRelay}.
+ */
+@Component
+public class NotificationOutbox {
+	
+	private static final ObjectInputFilter PAYLOAD_FILTER = ObjectInputFilter.Config.createFilter(
+			"com.cailleach.mudengine.**;java.lang.*;java.util.*;java.time.*;!*");
+	
+	private final NotificationOutboxRepository repository;
+	
+	private final boolean enabled;
+	
+	public NotificationOutbox(NotificationOutboxRepository repository, 
+			@Value("${place.outbox.enabled:false}") boolean enabled) {
+		
+		this.repository = repository;
+		this.enabled = enabled;
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Store the notifications to be relayed later.
+	 * Must be called inside the transaction of the change being notified.
+	 * 
+	 * @param notifications - notifications to be sent
+	 * @param authToken - credentials of the caller, sent along with the notifications
+	 */
+	public void enqueue(List<NotificationMessage> notifications, String authToken) {
+		
+		LocalDateTime now = LocalDateTime.now();
+		
+		repository.saveAll(
+			notifications.stream()
+				.map(d -> {
+					
+					NotificationOutboxEntity entry = new NotificationOutboxEntity();
+					
+					entry.setEntityId(d.getEntityId());
+					entry.setEvent(d.getEvent().name());
+					entry.setPayload(serialize(d));
+					entry.setAuthToken(authToken);
+					entry.setCreatedAt(now);
+					
+					return entry;
+				})
+				.toList()
+			);
+	}
+	
+	/**
+	 * Oldest pending notifications, in the order they were stored.
+	 * They're locked until the end of the current transaction.
+	 */
+	public List<NotificationOutboxEntity> lockNextBatch(int batchSize) {
+		return repository.findByOrderByCodeAsc(PageRequest.of(0, batchSize));
+	}
+	
+	public void remove(List<NotificationOutboxEntity> entries) {
+		
+		if (!entries.isEmpty()) {
+			repository.deleteByCodeIn(
+					entries.stream().map(NotificationOutboxEntity::getCode).toList()
+					);
+		}
+	}
+	
+	public static byte[] serialize(NotificationMessage notification) {
+		
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		
+		try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+			out.writeObject(notification);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		return buffer.toByteArray();
+	}
+	
+	public static NotificationMessage deserialize(byte[] payload) {
+		
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+			
+			in.setObjectInputFilter(PAYLOAD_FILTER);
+			
+			return (NotificationMessage)in.readObject();
+			
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		} catch(ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.world.model.NotificationOutboxEntity;
+
+/**
+ * Drains the notification outbox to the place topic.
+ * 
+ * Notifications are relayed in batches, in the order they were stored, so all
+ * notifications of a given entity reach the topic in order.  Each batch is locked,
+ * sent and removed in one transaction: if anything fails the batch stays in the
+ * outbox and is sent again on the next run (at-least-once delivery).
+ * 
+ * With the coalescer enabled, exit toggles are folded within each batch instead of
+ * being held for a window.
+ */
+@Component
+@ConditionalOnProperty(name = "place.outbox.enabled", havingValue = "true")
+public class NotificationOutboxRelay {
+	
+	private final NotificationOutbox outbox;
+	
+	private final NotificationPublisher publisher;
+	
+	private final NotificationCoalescer coalescer;
+	
+	private final TransactionTemplate transactionTemplate;
+	
+	private final int batchSize;
+	
+	public NotificationOutboxRelay(NotificationOutbox outbox, NotificationPublisher publisher, 
+			NotificationCoalescer coalescer, TransactionTemplate transactionTemplate, 
+			@Value("${place.outbox.batch-size:100}") int batchSize) {
+		
+		this.outbox = outbox;
+		this.publisher = publisher;
+		this.coalescer = coalescer;
+		this.transactionTemplate = transactionTemplate;
+		this.batchSize = batchSize;
+	}
+
+	@Scheduled(fixedDelayString = "${place.outbox.poll-interval-ms:500}")
+	public void relay() {
+		
+		Integer relayed;
+		
+		// Keep going while full batches are found
+		do {
+			relayed = transactionTemplate.execute(status -> relayBatch());
+		} while ((relayed!=null) && (relayed==batchSize));
+	}
+	
+	private int relayBatch() {
+		
+		List<NotificationOutboxEntity> entries = outbox.lockNextBatch(batchSize);
+		
+		List<OutgoingNotification> notifications = entries.stream()
+				.map(d -> new OutgoingNotification(
+						NotificationOutbox.deserialize(d.getPayload()), 
+						d.getAuthToken()))
+				.toList();
+		
+		// Exit toggles are folded within each batch
+		publisher.send(coalescer.isEnabled() ? coalescer.fold(notifications) : notifications);
+		
+		outbox.remove(entries);
+		
+		return entries.size();
+	}
+}
@@ -0,0 +1,274 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.activemq.command.ActiveMQTopic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+
+import com.cailleach.mudengine.common.utils.CommonConstants;
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+
+/**
+ * Sends notifications to the place topic in batches.
+ * 
+ * All notifications of a batch go through one session and one producer, and are committed
+ * together instead of taking a full JmsTemplate round trip each.  Batches never exceed
+ * place.publish.max-batch-size.  The sessions are transacted by a template of the publisher's
+ * own (on the application's connection factory and QoS settings), so every other JMS send of
+ * the application keeps its own session mode.
+ * 
+ * With place.publish.linger-ms, notifications are held for up to that long so bursts coming
+ * from several changes are sent in the same batch.  Held notifications are sent in the order
+ * they were published.
+ * 
+ * Notifications are converted by the place topic converter (NotificationMessageConverter, unless
+ * another MessageConverter is provided), not by the JmsTemplate's.
+ * 
+ * The send of each notification (conversion included) is timed in place.notifications.send, by event.
+ * 
+ * Held notifications are guarded by a lock instead of a monitor, as a full batch is sent while
+ * holding it: a virtual thread blocked on the broker inside a synchronized block would pin its
+ * carrier thread.
+ */
+@Component
+public class NotificationPublisher {
+	
+	private static final Logger log = LoggerFactory.getLogger(NotificationPublisher.class);
+	
+	public static final String SEND_METRIC = "place.notifications.send";
+	
+	private final JmsTemplate jmsTemplate;
+	
+	private final MessageConverter messageConverter;
+	
+	private final MeterRegistry meterRegistry;
+	
+	private final ActiveMQTopic placeTopic;
+	
+	private final int maxBatchSize;
+	
+	private final long lingerMs;
+	
+	private final ScheduledExecutorService lingerExecutor;
+	
+	private final List<OutgoingNotification> pending = new ArrayList<>();
+	
+	private final ReentrantLock pendingLock = new ReentrantLock();
+	
+	private ScheduledFuture<?> pendingFlush;
+	
+	public NotificationPublisher(JmsTemplate jmsTemplate, MessageConverter messageConverter, MeterRegistry meterRegistry,
+			@Value("${place.topic:disabled}") String placeTopicName,
+			@Value("${place.publish.max-batch-size:100}") int maxBatchSize,
+			@Value("${place.publish.linger-ms:0}") long lingerMs) {
+		
+		this.jmsTemplate = transactedTemplate(jmsTemplate);
+		this.messageConverter = messageConverter;
+		this.meterRegistry = meterRegistry;
+		this.placeTopic = new ActiveMQTopic(placeTopicName);
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.lingerMs = lingerMs;
+		
+		this.lingerExecutor = (lingerMs > 0) ?
+				Executors.newSingleThreadScheduledExecutor(r -> {
+					Thread t = new Thread(r, "notification-linger");
+					t.setDaemon(true);
+					return t;
+				}) :
+				null;
+	}
+
+	/**
+	 * Publish the notifications to the place topic.
+	 * 
+	 * Without linger they're sent right away.  Otherwise they're sent once a full batch is
+	 * pending or the linger time expires, whichever comes first; send failures are then logged
+	 * instead of thrown to the caller.
+	 * 
+	 * @param notifications - notifications to be sent
+	 * @param authToken - credentials to be sent along with the notifications (optional)
+	 */
+	public void publish(List<NotificationMessage> notifications, String authToken) {
+		
+		publish(
+			notifications.stream()
+				.map(d -> new OutgoingNotification(d, authToken))
+				.toList()
+			);
+	}
+	
+	/**
+	 * Publish the notifications to the place topic, each one with its own credentials.
+	 * 
+	 * @param outgoing - notifications to be sent, in order
+	 */
+	public void publish(List<OutgoingNotification> outgoing) {
+		
+		if (lingerExecutor==null) {
+			
+			send(outgoing);
+			
+		} else {
+			
+			pendingLock.lock();
+			
+			try {
+				
+				pending.addAll(outgoing);
+				
+				if (pending.size() >= maxBatchSize) {
+					flushPending();
+				} else if (pendingFlush==null) {
+					pendingFlush = lingerExecutor.schedule(this::flush, lingerMs, TimeUnit.MILLISECONDS);
+				}
+				
+			} finally {
+				pendingLock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Send the notifications to the place topic right away, in batches.
+	 * Any failure is thrown back to the caller.
+	 * 
+	 * @param notifications - notifications to be sent, in order
+	 */
+	public void send(List<OutgoingNotification> notifications) {
+		
+		for(int start=0;start<notifications.size();start+=maxBatchSize) {
+			
+			sendBatch(
+				notifications.subList(start, Math.min(start + maxBatchSize, notifications.size()))
+				);
+		}
+	}
+	
+	/**
+	 * Send any held notifications right away.
+	 */
+	public void flush() {
+		
+		pendingLock.lock();
+		
+		try {
+			flushPending();
+		} finally {
+			pendingLock.unlock();
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		
+		if (lingerExecutor!=null) {
+			
+			lingerExecutor.shutdownNow();
+			
+			// Don't lose what's still held
+			flush();
+		}
+	}
+	
+	private void flushPending() {
+		
+		if (pendingFlush!=null) {
+			pendingFlush.cancel(false);
+			pendingFlush = null;
+		}
+		
+		if (pending.isEmpty()) {
+			return;
+		}
+		
+		List<OutgoingNotification> batch = new ArrayList<>(pending);
+		pending.clear();
+		
+		try {
+			send(batch);
+		} catch(JmsException e) {
+			log.error("Failed to send {} notifications to the place topic", batch.size(), e);
+		}
+	}
+	
+	/**
+	 * Same as the given template, but with transacted sessions
+	 */
+	private static JmsTemplate transactedTemplate(JmsTemplate jmsTemplate) {
+		
+		JmsTemplate transactedTemplate = new JmsTemplate(jmsTemplate.getConnectionFactory());
+		
+		transactedTemplate.setSessionTransacted(true);
+		transactedTemplate.setExplicitQosEnabled(jmsTemplate.isExplicitQosEnabled());
+		transactedTemplate.setDeliveryMode(jmsTemplate.getDeliveryMode());
+		transactedTemplate.setPriority(jmsTemplate.getPriority());
+		transactedTemplate.setTimeToLive(jmsTemplate.getTimeToLive());
+		
+		return transactedTemplate;
+	}
+	
+	private void sendBatch(List<OutgoingNotification> batch) {
+		
+		jmsTemplate.execute(session -> {
+			
+			MessageProducer producer = session.createProducer(placeTopic);
+			
+			try {
+				
+				for(OutgoingNotification curNotification: batch) {
+					
+					NotificationMessage placeNotification = curNotification.getNotification();
+					
+					Timer.Sample sendSample = Timer.start(meterRegistry);
+					
+					Message message = messageConverter.toMessage(placeNotification, session);
+					
+					if (curNotification.getAuthToken()!=null) {
+						message.setObjectProperty(CommonConstants.AUTH_TOKEN_HEADER, curNotification.getAuthToken());
+					}
+					
+					if (jmsTemplate.isExplicitQosEnabled()) {
+						producer.send(message, jmsTemplate.getDeliveryMode(), jmsTemplate.getPriority(), jmsTemplate.getTimeToLive());
+					} else {
+						producer.send(message);
+					}
+					
+					sendSample.stop(meterRegistry.timer(SEND_METRIC, "event", placeNotification.getEvent().name()));
+					
+					log.info("world: {}, entityId: {}, event: {}",
+							placeNotification.getWorldName(),
+							placeNotification.getEntityId(),
+							placeNotification.getEvent()
+							);
+				}
+				
+				// Whole batch in one commit
+				session.commit();
+				
+			} finally {
+				JmsUtils.closeMessageProducer(producer);
+			}
+			
+			return null;
+		});
+	}
+}
@@ -3,16 +3,13 @@ package com.cailleach.mudengine.world.service.impl;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.activemq.command.ActiveMQTopic;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jms.core.JmsTemplate;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.cailleach.mudengine.common.security.Session;
-import com.cailleach.mudengine.common.utils.CommonConstants;
 import com.cailleach.mudengine.common.utils.NotificationMessage;
 import com.cailleach.mudengine.common.utils.NotificationMessage.EnumEntity;
 import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
@@ -20,12 +17,15 @@ import com.cailleach.mudengine.world.model.PlaceEntity;
 import com.cailleach.mudengine.world.model.PlaceExitEntity;
 import com.cailleach.mudengine.world.rest.dto.PlaceExit;
 
-import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.MeterRegistry;
 
+/**
+ * Notifications dispatched are counted in place.notifications.dispatched, by event.
+ */
 @Component
 public class NotificationService {
 	
-	private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
+	public static final String DISPATCHED_METRIC = "place.notifications.dispatched";
 	
 	public static final String PLACE_DESTROY_MSG = "place.destroy";
 	public static final String PLACE_CLASS_CHANGE_MSG = "place.class.change";
@@ -37,20 +37,23 @@ public class NotificationService {
 	public static final String PLACE_EXIT_UNLOCK_MSG = "place.exit.unlock";
 
 	
-	private JmsTemplate jmsTemplate;
+	private NotificationPublisher publisher;
 	
-	@Value("${place.topic:disabled}")
-	private String placeTopicName;
+	private NotificationOutbox outbox;
 	
-	private ActiveMQTopic placeTopic;
+	private NotificationCoalescer coalescer;
 	
-	public NotificationService(JmsTemplate jmsTemplate) {
-		this.jmsTemplate = jmsTemplate;
-	}
-
-	@PostConstruct
-	public void setup() {
-		placeTopic = new ActiveMQTopic(placeTopicName);
+	private NotificationDispatcher dispatcher;
+	
+	private MeterRegistry meterRegistry;
+	
+	public NotificationService(NotificationPublisher publisher, NotificationOutbox outbox, NotificationCoalescer coalescer,
+			NotificationDispatcher dispatcher, MeterRegistry meterRegistry) {
+		this.publisher = publisher;
+		this.outbox = outbox;
+		this.coalescer = coalescer;
+		this.dispatcher = dispatcher;
+		this.meterRegistry = meterRegistry;
 	}
 	
 	public List<NotificationMessage> handlePlaceDestroy(PlaceEntity destroyedPlace) {
@@ -95,31 +98,71 @@ public class NotificationService {
 		return notifications;
 	}
 	
+	/**
+	 * Dispatch the notifications of a place change.
+	 * 
+	 * If the outbox is enabled, the notifications are stored in it (within the current transaction)
+	 * to be relayed later.  Otherwise they're sent to the place topic once the current transaction
+	 * commits, or right away if there's no transaction (going through the coalescer first, if enabled).
+	 * With the async dispatcher enabled they're handed over to its workers instead of being sent
+	 * by the caller.
+	 * 
+	 * @param notifications - notifications to be sent
+	 */
 	public void dispatchNotifications(List<NotificationMessage> notifications) {
 		
-		notifications.stream()
-		.forEach(placeNotification -> {
+		if (notifications.isEmpty()) {
+			return;
+		}
+		
+		notifications.forEach(d -> 
+			meterRegistry.counter(DISPATCHED_METRIC, "event", d.getEvent().name()).increment()
+			);
+		
+		String authToken = getAuthToken();
+		
+		if (outbox.isEnabled()) {
 			
-			// Send the notification
-			jmsTemplate.convertAndSend(placeTopic, placeNotification, m -> {
-				
-				if (SecurityContextHolder.getContext().getAuthentication()!=null) {
+			outbox.enqueue(notifications, authToken);
+			
+		} else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
 				
-					m.setObjectProperty(CommonConstants.AUTH_TOKEN_HEADER, 
-							SecurityContextHolder.getContext().getAuthentication().getCredentials());
+				@Override
+				public void afterCommit() {
+					deliver(notifications, authToken);
 				}
-				
-				return m;
 			});
 			
-			log.info("world: {}, entityId: {}, event: {}",
-					placeNotification.getWorldName(),
-					placeNotification.getEntityId(),
-					placeNotification.getEvent()
-					);
-
-		});
+		} else {
+			
+			deliver(notifications, authToken);
+		}
+	}
+	
+	private void deliver(List<NotificationMessage> notifications, String authToken) {
 		
+		if (dispatcher.isEnabled()) {
+			
+			dispatcher.submit(
+				notifications.stream()
+					.map(d -> new OutgoingNotification(d, authToken))
+					.toList()
+				);
+			
+		} else if (coalescer.isEnabled()) {
+			
+			coalescer.submit(
+				notifications.stream()
+					.map(d -> new OutgoingNotification(d, authToken))
+					.toList()
+				);
+			
+		} else {
+			
+			publisher.publish(notifications, authToken);
+		}
 	}
 	
 	/**
@@ -317,6 +360,15 @@ public class NotificationService {
 
 	
 
+	private String getAuthToken() {
+		
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		
+		return (authentication!=null) && (authentication.getCredentials()!=null) ?
+				authentication.getCredentials().toString() :
+				null;
+	}
+
 	private String getWorldName() {
 
 		try {
@@ -0,0 +1,17 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+
+import lombok.Value;
+
+/**
+ * A notification ready to be sent to the place topic, along with the credentials
+ * of the caller that originated it.
+ */
+@Value
+public class OutgoingNotification {
+
+	private NotificationMessage notification;
+	
+	private String authToken;
+}
@@ -0,0 +1,211 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationCoalescerTests {
+	
+	private static final String NORTH = "NORTH";
+	private static final String SOUTH = "SOUTH";
+	
+	private static final long WINDOW_MS = 50L;
+	private static final long LONG_WINDOW_MS = 60_000L;
+	private static final long RESTART_WINDOW_MS = 800L;
+	
+	@Mock
+	private NotificationPublisher mockPublisher;
+	
+	private SimpleMeterRegistry meterRegistry;
+	
+	@BeforeEach
+	public void setup() {
+		meterRegistry = new SimpleMeterRegistry();
+	}
+	
+	@Test
+	void testFoldCancelsToggles() {
+		
+		NotificationCoalescer coalescer = new NotificationCoalescer(mockPublisher, meterRegistry, 0L);
+		
+		List<OutgoingNotification> folded = coalescer.fold(List.of(
+				buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_OPEN),
+				buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_CLOSE),
+				buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_LOCK),
+				buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_UNLOCK)
+				));
+		
+		// Exit is back where it started
+		assertTrue(folded.isEmpty());
+		
+		assertEquals(1.0, suppressed(EnumNotificationEvent.PLACE_EXIT_OPEN));
+		assertEquals(1.0, suppressed(EnumNotificationEvent.PLACE_EXIT_CLOSE));
+		assertEquals(1.0, suppressed(EnumNotificationEvent.PLACE_EXIT_LOCK));
+		assertEquals(1.0, suppressed(EnumNotificationEvent.PLACE_EXIT_UNLOCK));
+	}
+	
+	@Test
+	void testFoldKeepsNetChange() {
+		
+		NotificationCoalescer coalescer = new NotificationCoalescer(mockPublisher, meterRegistry, 0L);
+		
+		OutgoingNotification classChange = buildNotification(PlaceTestData.READ_PLACE_ID, EnumNotificationEvent.PLACE_CLASS_CHANGE);
+		OutgoingNotification lastClose = buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_CLOSE);
+		OutgoingNotification lock = buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_LOCK);
+		OutgoingNotification otherExit = buildExitNotification(PlaceTestData.READ_PLACE_ID, SOUTH, EnumNotificationEvent.PLACE_EXIT_OPEN);
+		OutgoingNotification otherPlace = buildExitNotification(PlaceTestData.TARGET_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_OPEN);
+		
+		List<OutgoingNotification> folded = coalescer.fold(List.of(
+				buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_CLOSE),
+				classChange,
+				buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_OPEN),
+				otherExit,
+				lastClose,
+				lock,
+				otherPlace
+				));
+		
+		// Net change of each exit, in the order it was reached; other notifications untouched
+		assertEquals(List.of(classChange, otherExit, lastClose, lock, otherPlace), folded);
+		
+		assertEquals(1.0, suppressed(EnumNotificationEvent.PLACE_EXIT_OPEN));
+		assertEquals(1.0, suppressed(EnumNotificationEvent.PLACE_EXIT_CLOSE));
+	}
+	
+	@Test
+	void testWindowReleasesNetChange() throws InterruptedException {
+		
+		NotificationCoalescer coalescer = new NotificationCoalescer(mockPublisher, meterRegistry, WINDOW_MS);
+		
+		OutgoingNotification lastOpen = buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_OPEN);
+		
+		try {
+			
+			// Player spamming the door, one request each
+			coalescer.submit(List.of(buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_OPEN)));
+			coalescer.submit(List.of(buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_CLOSE)));
+			coalescer.submit(List.of(lastOpen));
+			
+			verify(mockPublisher, timeout(5000)).publish(List.of(lastOpen));
+			
+			assertEquals(1.0, suppressed(EnumNotificationEvent.PLACE_EXIT_OPEN));
+			assertEquals(1.0, suppressed(EnumNotificationEvent.PLACE_EXIT_CLOSE));
+			
+		} finally {
+			coalescer.shutdown();
+		}
+	}
+	
+	@Test
+	void testOtherEventReleasesHeld() throws InterruptedException {
+		
+		NotificationCoalescer coalescer = new NotificationCoalescer(mockPublisher, meterRegistry, LONG_WINDOW_MS);
+		
+		OutgoingNotification close = buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_CLOSE);
+		OutgoingNotification destroy = buildNotification(PlaceTestData.READ_PLACE_ID, EnumNotificationEvent.PLACE_DESTROY);
+		
+		try {
+			
+			coalescer.submit(List.of(close));
+			coalescer.submit(List.of(destroy));
+			
+			// The close isn't held past the destroy
+			verify(mockPublisher, timeout(5000)).publish(List.of(close, destroy));
+			
+		} finally {
+			coalescer.shutdown();
+		}
+	}
+	
+	@Test
+	void testReleasedWindowDoesntCutNextOne() throws InterruptedException {
+		
+		NotificationCoalescer coalescer = new NotificationCoalescer(mockPublisher, meterRegistry, RESTART_WINDOW_MS);
+		
+		OutgoingNotification close = buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_CLOSE);
+		OutgoingNotification destroy = buildNotification(PlaceTestData.READ_PLACE_ID, EnumNotificationEvent.PLACE_DESTROY);
+		OutgoingNotification open = buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_OPEN);
+		
+		try {
+			
+			// First window released early by the destroy, a second one starts later
+			coalescer.submit(List.of(close));
+			coalescer.submit(List.of(destroy));
+			
+			Thread.sleep(RESTART_WINDOW_MS / 2);
+			
+			coalescer.submit(List.of(open));
+			
+			// Past the end of the first window, within the second one
+			Thread.sleep(RESTART_WINDOW_MS * 3 / 4);
+			
+			verify(mockPublisher, never()).publish(List.of(open));
+			
+			verify(mockPublisher, timeout(5000)).publish(List.of(open));
+			
+		} finally {
+			coalescer.shutdown();
+		}
+	}
+	
+	@Test
+	void testShutdownReleasesHeld() throws InterruptedException {
+		
+		NotificationCoalescer coalescer = new NotificationCoalescer(mockPublisher, meterRegistry, LONG_WINDOW_MS);
+		
+		OutgoingNotification lock = buildExitNotification(PlaceTestData.READ_PLACE_ID, NORTH, EnumNotificationEvent.PLACE_EXIT_LOCK);
+		
+		coalescer.submit(List.of(lock));
+		
+		verify(mockPublisher, never()).publish(ArgumentMatchers.anyList());
+		
+		coalescer.shutdown();
+		
+		verify(mockPublisher).publish(List.of(lock));
+	}
+	
+	private double suppressed(EnumNotificationEvent event) {
+		
+		return meterRegistry.counter(NotificationCoalescer.SUPPRESSED_METRIC, "event", event.name()).count();
+	}
+	
+	private static OutgoingNotification buildNotification(Long placeId, EnumNotificationEvent event) {
+		
+		return new OutgoingNotification(
+				NotificationMessage.builder()
+					.entity(NotificationMessage.EnumEntity.PLACE)
+					.entityId(placeId)
+					.event(event)
+				.build(),
+				null);
+	}
+	
+	private static OutgoingNotification buildExitNotification(Long placeId, String direction, EnumNotificationEvent event) {
+		
+		return new OutgoingNotification(
+				NotificationMessage.builder()
+					.entity(NotificationMessage.EnumEntity.PLACE)
+					.entityId(placeId)
+					.event(event)
+					.args(new String[] {direction})
+				.build(),
+				null);
+	}
+}
@@ -0,0 +1,435 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jms.UncategorizedJmsException;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+import com.cailleach.mudengine.world.service.impl.NotificationDispatcher.OverflowPolicy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDispatcherTests {
+	
+	private static final long SHUTDOWN_TIMEOUT_MS = 5000L;
+	
+	@Mock
+	private NotificationPublisher mockPublisher;
+	
+	@Mock
+	private NotificationCoalescer mockCoalescer;
+	
+	@TempDir
+	private Path spillDir;
+	
+	private SimpleMeterRegistry meterRegistry;
+	
+	/**
+	 * Places of the batches sent, in order
+	 */
+	private List<Long> published;
+	
+	/**
+	 * Released to let the publisher return
+	 */
+	private CountDownLatch release;
+	
+	/**
+	 * Counted down once the publisher was called for the first time
+	 */
+	private CountDownLatch sending;
+	
+	@BeforeEach
+	public void setup() {
+		
+		meterRegistry = new SimpleMeterRegistry();
+		published = new CopyOnWriteArrayList<>();
+		release = new CountDownLatch(1);
+		sending = new CountDownLatch(1);
+	}
+	
+	@Test
+	void testDisabledByDefault() throws Exception {
+		
+		NotificationDispatcher dispatcher = buildDispatcher(false, 2, OverflowPolicy.BLOCK, SHUTDOWN_TIMEOUT_MS);
+		
+		assertFalse(dispatcher.isEnabled());
+		
+		dispatcher.shutdown();
+	}
+	
+	@Test
+	void testSendOffCallerThread() throws Exception {
+		
+		List<String> threads = new CopyOnWriteArrayList<>();
+		
+		doAnswer(i -> threads.add(Thread.currentThread().getName()))
+			.when(mockPublisher).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+		
+		NotificationDispatcher dispatcher = buildDispatcher(true, 2, OverflowPolicy.BLOCK, SHUTDOWN_TIMEOUT_MS);
+		
+		try {
+			
+			assertTrue(dispatcher.isEnabled());
+			
+			dispatcher.submit(buildNotifications(PlaceTestData.READ_PLACE_ID));
+			
+			verify(mockPublisher, timeout(5000)).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+			
+			assertTrue(threads.get(0).startsWith("notification-dispatch-"));
+		
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+	
+	@Test
+	void testVirtualWorkersWhenEnabled() throws Exception {
+		
+		List<Thread> threads = new CopyOnWriteArrayList<>();
+		
+		doAnswer(i -> threads.add(Thread.currentThread()))
+			.when(mockPublisher).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+		
+		NotificationDispatcher dispatcher = new NotificationDispatcher(mockPublisher, mockCoalescer, meterRegistry,
+				true, 1, 2, OverflowPolicy.BLOCK, spillDir, SHUTDOWN_TIMEOUT_MS, true);
+		
+		try {
+			
+			dispatcher.submit(buildNotifications(PlaceTestData.READ_PLACE_ID));
+			
+			verify(mockPublisher, timeout(5000)).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+			
+			// Before Java 21 the setting is ignored, as Spring Boot does
+			assertEquals(Runtime.version().feature() >= 21, isVirtual(threads.get(0)));
+			assertTrue(threads.get(0).getName().startsWith("notification-dispatch-"));
+		
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+	
+	@Test
+	void testDropOldest() throws Exception {
+		
+		holdPublisher();
+		
+		NotificationDispatcher dispatcher = buildDispatcher(true, 1, OverflowPolicy.DROP_OLDEST, SHUTDOWN_TIMEOUT_MS);
+		
+		try {
+			
+			// First batch held by the worker, second one waiting and dropped by the third
+			dispatcher.submit(buildNotifications(1L));
+			assertTrue(sending.await(5, TimeUnit.SECONDS));
+			
+			dispatcher.submit(buildNotifications(2L));
+			dispatcher.submit(buildNotifications(3L));
+			
+			assertEquals(1.0, meterRegistry.counter(NotificationDispatcher.DROPPED_METRIC).count());
+			
+			release.countDown();
+			
+			verify(mockPublisher, timeout(5000).times(2)).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+			
+			assertEquals(List.of(1L, 3L), published);
+		
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+	
+	@Test
+	void testSpillKeepsOrder() throws Exception {
+		
+		holdPublisher();
+		
+		NotificationDispatcher dispatcher = buildDispatcher(true, 1, OverflowPolicy.SPILL, SHUTDOWN_TIMEOUT_MS);
+		
+		try {
+			
+			dispatcher.submit(buildNotifications(1L));
+			assertTrue(sending.await(5, TimeUnit.SECONDS));
+			
+			// Queue full from the second batch on: the next ones are spilled,
+			// the last one even though there's room in the queue again
+			dispatcher.submit(buildNotifications(2L));
+			dispatcher.submit(buildNotifications(3L));
+			dispatcher.submit(buildNotifications(4L));
+			
+			assertEquals(2.0, meterRegistry.counter(NotificationDispatcher.SPILLED_METRIC).count());
+			assertEquals(2, countSpillFiles());
+			
+			release.countDown();
+			
+			verify(mockPublisher, timeout(5000).times(4)).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+			
+			assertEquals(List.of(1L, 2L, 3L, 4L), published);
+		
+		} finally {
+			dispatcher.shutdown();
+		}
+		
+		assertEquals(0, countSpillFiles());
+	}
+	
+	@Test
+	void testSpillWaitsForBatchBeingSent() throws Exception {
+		
+		BlockingQueue<Long> started = new LinkedBlockingQueue<>();
+		Semaphore finish = new Semaphore(0);
+		
+		doAnswer(i -> {
+			
+			List<OutgoingNotification> notifications = i.getArgument(0);
+			
+			started.add(notifications.get(0).getNotification().getEntityId());
+			
+			finish.tryAcquire(5, TimeUnit.SECONDS);
+			
+			return null;
+		
+		}).when(mockPublisher).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+		
+		NotificationDispatcher dispatcher = buildDispatcher(true, 1, OverflowPolicy.SPILL, SHUTDOWN_TIMEOUT_MS);
+		
+		try {
+			
+			dispatcher.submit(buildNotifications(1L));
+			assertEquals(1L, started.poll(5, TimeUnit.SECONDS));
+			
+			dispatcher.submit(buildNotifications(2L));
+			dispatcher.submit(buildNotifications(3L));
+			
+			// The queue is empty while the second batch is sent: the spilled one still waits for it
+			finish.release();
+			assertEquals(2L, started.poll(5, TimeUnit.SECONDS));
+			
+			assertNull(started.poll(500, TimeUnit.MILLISECONDS));
+			
+			finish.release(2);
+			assertEquals(3L, started.poll(5, TimeUnit.SECONDS));
+		
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+	
+	@Test
+	void testShutdownDrainsQueue() throws Exception {
+		
+		NotificationDispatcher dispatcher = buildDispatcher(true, 1, OverflowPolicy.BLOCK, SHUTDOWN_TIMEOUT_MS);
+		
+		for(long i=1;i<=5;i++) {
+			dispatcher.submit(buildNotifications(i));
+		}
+		
+		dispatcher.shutdown();
+		
+		verify(mockPublisher, times(5)).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+		
+		// Too late to be queued, sent by the caller
+		dispatcher.submit(buildNotifications(6L));
+		
+		verify(mockPublisher, times(6)).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+	}
+	
+	@Test
+	void testSpillSurvivesRestart() throws Exception {
+		
+		holdPublisher();
+		
+		NotificationDispatcher dispatcher = buildDispatcher(true, 1, OverflowPolicy.SPILL, 100L);
+		
+		dispatcher.submit(buildNotifications(1L));
+		assertTrue(sending.await(5, TimeUnit.SECONDS));
+		
+		dispatcher.submit(buildNotifications(2L));
+		dispatcher.submit(buildNotifications(3L));
+		
+		// The first batch is still being sent: the queued one is spilled ahead of the third one
+		dispatcher.shutdown();
+		
+		assertEquals(2, countSpillFiles());
+		
+		release.countDown();
+		
+		NotificationDispatcher restarted = buildDispatcher(true, 1, OverflowPolicy.SPILL, SHUTDOWN_TIMEOUT_MS);
+		
+		try {
+			
+			verify(mockPublisher, timeout(5000).times(3)).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+			
+			assertEquals(List.of(1L, 2L, 3L), published);
+		
+		} finally {
+			restarted.shutdown();
+		}
+		
+		assertEquals(0, countSpillFiles());
+		verify(mockCoalescer, never()).submit(ArgumentMatchers.any());
+	}
+	
+	@Test
+	void testFoldedAndSentByWorker() throws Exception {
+		
+		List<OutgoingNotification> folded = buildNotifications(2L);
+		
+		when(mockCoalescer.isEnabled()).thenReturn(true);
+		when(mockCoalescer.fold(ArgumentMatchers.any())).thenReturn(folded);
+		
+		NotificationDispatcher dispatcher = buildDispatcher(true, 2, OverflowPolicy.BLOCK, SHUTDOWN_TIMEOUT_MS);
+		
+		try {
+			
+			dispatcher.submit(buildNotifications(1L));
+			
+			// Sent by the worker itself, not handed over to the coalescing windows
+			verify(mockPublisher, timeout(5000)).send(folded);
+			
+			verify(mockCoalescer, never()).submit(ArgumentMatchers.any());
+			verify(mockPublisher, never()).publish(ArgumentMatchers.<List<OutgoingNotification>>any());
+		
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+	
+	@Test
+	void testSpillKeptWhenSendFails() throws Exception {
+		
+		AtomicBoolean failed = new AtomicBoolean();
+		
+		doAnswer(i -> {
+			
+			List<OutgoingNotification> notifications = i.getArgument(0);
+			Long placeId = notifications.get(0).getNotification().getEntityId();
+			
+			// The spilled batch fails the first time
+			if ((placeId==3L) && failed.compareAndSet(false, true)) {
+				throw new UncategorizedJmsException("broker down");
+			}
+			
+			published.add(placeId);
+			sending.countDown();
+			
+			release.await(5, TimeUnit.SECONDS);
+			
+			return null;
+		
+		}).when(mockPublisher).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+		
+		NotificationDispatcher dispatcher = buildDispatcher(true, 1, OverflowPolicy.SPILL, SHUTDOWN_TIMEOUT_MS);
+		
+		try {
+			
+			dispatcher.submit(buildNotifications(1L));
+			assertTrue(sending.await(5, TimeUnit.SECONDS));
+			
+			// Second batch queued, third one spilled
+			dispatcher.submit(buildNotifications(2L));
+			dispatcher.submit(buildNotifications(3L));
+			
+			release.countDown();
+			
+			// The spilled batch is read again from disk after the failure
+			verify(mockPublisher, timeout(5000).times(4)).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+			
+			assertEquals(List.of(1L, 2L, 3L), published);
+		
+		} finally {
+			dispatcher.shutdown();
+		}
+		
+		assertEquals(0, countSpillFiles());
+	}
+	
+	private NotificationDispatcher buildDispatcher(boolean async, int queueCapacity, OverflowPolicy overflow, long shutdownTimeoutMs) {
+		
+		return new NotificationDispatcher(mockPublisher, mockCoalescer, meterRegistry,
+				async, 1, queueCapacity, overflow, spillDir, shutdownTimeoutMs, false);
+	}
+	
+	/**
+	 * Thread.isVirtual only exists from Java 21 on (the build targets 17)
+	 */
+	private static boolean isVirtual(Thread thread) throws Exception {
+		
+		if (Runtime.version().feature() < 21) {
+			return false;
+		}
+		
+		return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+	}
+	
+	/**
+	 * The publisher records the place of each batch and holds until released
+	 * (or interrupted, as on a shutdown timeout)
+	 */
+	private void holdPublisher() {
+		
+		doAnswer(i -> {
+			
+			List<OutgoingNotification> notifications = i.getArgument(0);
+			
+			published.add(notifications.get(0).getNotification().getEntityId());
+			sending.countDown();
+			
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			return null;
+		
+		}).when(mockPublisher).send(ArgumentMatchers.<List<OutgoingNotification>>any());
+	}
+	
+	private long countSpillFiles() throws Exception {
+		
+		try (Stream<Path> files = Files.list(spillDir)) {
+			return files.count();
+		}
+	}
+	
+	private static List<OutgoingNotification> buildNotifications(Long placeId) {
+		
+		return List.of(new OutgoingNotification(
+				NotificationMessage.builder()
+					.entity(NotificationMessage.EnumEntity.PLACE)
+					.entityId(placeId)
+					.event(EnumNotificationEvent.PLACE_CLASS_CHANGE)
+				.build(),
+				null));
+	}
+}
@@ -0,0 +1,167 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jms.support.converter.MessageConversionException;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+import com.cailleach.mudengine.world.service.impl.NotificationMessageConverter.WireFormat;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.ObjectMessage;
+import jakarta.jms.Session;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationMessageConverterTests {
+	
+	private static final String WORLD_NAME = "aforgotten";
+	private static final String DIRECTION = "NORTH";
+	
+	@Mock
+	private Session mockSession;
+	
+	@Mock
+	private BytesMessage mockBytesMessage;
+	
+	@Mock
+	private ObjectMessage mockObjectMessage;
+	
+	@Test
+	void testBinaryRoundTrip() {
+		
+		NotificationMessage notification = buildNotification(NotificationService.PLACE_EXIT_OPEN_MSG);
+		
+		byte[] payload = NotificationMessageConverter.encode(notification);
+		
+		assertEqualNotifications(notification, NotificationMessageConverter.decode(payload));
+		
+		// Far smaller than the serialized object
+		assertTrue(payload.length * 5 < NotificationOutbox.serialize(notification).length);
+	}
+	
+	@Test
+	void testBodySizes() {
+		
+		NotificationMessage notification = buildNotification(NotificationService.PLACE_EXIT_OPEN_MSG);
+		
+		// Version and flags (2), entity, entityId and event (10), known key (1), one arg (2 + 1 + 7),
+		// target entity and id (9), world name (12): fixed widths, whatever the codes
+		assertEquals(44, NotificationMessageConverter.encode(notification).length);
+		
+		// Body of the ObjectMessage sent with the JAVA format
+		assertEquals(815, NotificationOutbox.serialize(notification).length);
+	}
+	
+	@Test
+	void testBinaryKeepsUnknownKeysAndNulls() {
+		
+		NotificationMessage notification = buildNotification("place.custom.key");
+		notification.setArgs(new String[] {DIRECTION, null});
+		notification.setTargetEntity(null);
+		notification.setTargetEntityId(null);
+		
+		NotificationMessage decoded = NotificationMessageConverter.decode(NotificationMessageConverter.encode(notification));
+		
+		assertEqualNotifications(notification, decoded);
+		assertNull(decoded.getTargetEntity());
+		assertNull(decoded.getTargetEntityId());
+	}
+	
+	@Test
+	void testBinaryRejectsOtherVersions() {
+		
+		byte[] payload = NotificationMessageConverter.encode(buildNotification(NotificationService.PLACE_DESTROY_MSG));
+		payload[0] = (byte) (NotificationMessageConverter.BINARY_VERSION + 1);
+		
+		assertThrows(MessageConversionException.class, () -> NotificationMessageConverter.decode(payload));
+	}
+	
+	@Test
+	void testBinaryMessage() throws Exception {
+		
+		NotificationMessageConverter converter = new NotificationMessageConverter(WireFormat.BINARY);
+		NotificationMessage notification = buildNotification(NotificationService.PLACE_EXIT_OPEN_MSG);
+		
+		when(mockSession.createBytesMessage()).thenReturn(mockBytesMessage);
+		
+		assertSame(mockBytesMessage, converter.toMessage(notification, mockSession));
+		
+		ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+		
+		verify(mockBytesMessage).writeBytes(payload.capture());
+		verify(mockBytesMessage).setStringProperty(NotificationMessageConverter.FORMAT_HEADER, NotificationMessageConverter.BINARY_FORMAT);
+		verify(mockBytesMessage).setIntProperty(NotificationMessageConverter.FORMAT_VERSION_HEADER, NotificationMessageConverter.BINARY_VERSION);
+		
+		// Read back as a consumer would, picking the format by the header
+		when(mockBytesMessage.getStringProperty(NotificationMessageConverter.FORMAT_HEADER)).thenReturn(NotificationMessageConverter.BINARY_FORMAT);
+		when(mockBytesMessage.getBodyLength()).thenReturn((long) payload.getValue().length);
+		when(mockBytesMessage.readBytes(ArgumentMatchers.any(byte[].class))).thenAnswer(i -> {
+			
+			byte[] body = i.getArgument(0);
+			System.arraycopy(payload.getValue(), 0, body, 0, body.length);
+			
+			return body.length;
+		});
+		
+		assertEqualNotifications(notification, (NotificationMessage) new NotificationMessageConverter(WireFormat.JAVA).fromMessage(mockBytesMessage));
+	}
+	
+	@Test
+	void testJavaMessage() throws Exception {
+		
+		NotificationMessageConverter converter = new NotificationMessageConverter(WireFormat.JAVA);
+		NotificationMessage notification = buildNotification(NotificationService.PLACE_EXIT_OPEN_MSG);
+		
+		when(mockSession.createObjectMessage(notification)).thenReturn(mockObjectMessage);
+		
+		assertSame(mockObjectMessage, converter.toMessage(notification, mockSession));
+		
+		verify(mockSession, never()).createBytesMessage();
+		
+		// No format header: the message is left to the default conversion
+		when(mockObjectMessage.getObject()).thenReturn(notification);
+		
+		assertSame(notification, new NotificationMessageConverter(WireFormat.BINARY).fromMessage(mockObjectMessage));
+	}
+	
+	private static void assertEqualNotifications(NotificationMessage expected, NotificationMessage actual) {
+		
+		assertEquals(expected.getEntity(), actual.getEntity());
+		assertEquals(expected.getEntityId(), actual.getEntityId());
+		assertEquals(expected.getEvent(), actual.getEvent());
+		assertEquals(expected.getMessageKey(), actual.getMessageKey());
+		assertArrayEquals(expected.getArgs(), actual.getArgs());
+		assertEquals(expected.getTargetEntity(), actual.getTargetEntity());
+		assertEquals(expected.getTargetEntityId(), actual.getTargetEntityId());
+		assertEquals(expected.getWorldName(), actual.getWorldName());
+	}
+	
+	private static NotificationMessage buildNotification(String messageKey) {
+		
+		return NotificationMessage.builder()
+				.entity(NotificationMessage.EnumEntity.PLACE)
+				.entityId(PlaceTestData.READ_PLACE_ID)
+				.event(EnumNotificationEvent.PLACE_EXIT_OPEN)
+				.messageKey(messageKey)
+				.args(new String[] {DIRECTION})
+				.targetEntity(NotificationMessage.EnumEntity.PLACE)
+				.targetEntityId(PlaceTestData.TARGET_PLACE_ID)
+				.worldName(WORLD_NAME)
+			.build();
+	}
+}
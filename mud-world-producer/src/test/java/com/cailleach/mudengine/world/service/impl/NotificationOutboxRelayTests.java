@@ -0,0 +1,131 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jms.UncategorizedJmsException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+import com.cailleach.mudengine.world.model.NotificationOutboxEntity;
+import com.cailleach.mudengine.world.repository.NotificationOutboxRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationOutboxRelayTests {
+	
+	private static final int BATCH_SIZE = 3;
+	
+	@Mock
+	private NotificationOutboxRepository mockOutboxRepository;
+	
+	@Mock
+	private PlatformTransactionManager mockTransactionManager;
+	
+	@Mock
+	private NotificationPublisher mockPublisher;
+	
+	@Test
+	void testRelayInOrder() {
+		
+		List<NotificationOutboxEntity> firstBatch = List.of(
+				buildEntry(1L, PlaceTestData.READ_PLACE_ID, EnumNotificationEvent.PLACE_EXIT_CLOSE),
+				buildEntry(2L, PlaceTestData.READ_PLACE_ID, EnumNotificationEvent.PLACE_EXIT_OPEN),
+				buildEntry(3L, PlaceTestData.TARGET_PLACE_ID, EnumNotificationEvent.PLACE_CLASS_CHANGE)
+				);
+		
+		List<NotificationOutboxEntity> secondBatch = List.of(
+				buildEntry(4L, PlaceTestData.TARGET_PLACE_ID, EnumNotificationEvent.PLACE_DESTROY)
+				);
+		
+		when(mockOutboxRepository.findByOrderByCodeAsc(ArgumentMatchers.any()))
+			.thenReturn(firstBatch)
+			.thenReturn(secondBatch);
+		
+		buildRelay().relay();
+		
+		// A full batch means there may be more waiting, so keep going until a partial one
+		verify(mockOutboxRepository, times(2)).findByOrderByCodeAsc(ArgumentMatchers.any());
+		
+		// All notifications reach the topic, in the order they were stored, one send per batch
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<OutgoingNotification>> sentCaptor = ArgumentCaptor.forClass(List.class);
+		
+		verify(mockPublisher, times(2)).send(sentCaptor.capture());
+		
+		assertEquals(
+				List.of(firstBatch, secondBatch).stream()
+					.flatMap(List::stream)
+					.map(d -> NotificationOutbox.deserialize(d.getPayload()))
+					.toList(),
+				sentCaptor.getAllValues().stream()
+					.flatMap(List::stream)
+					.map(OutgoingNotification::getNotification)
+					.toList());
+		
+		// ... and then leave the outbox
+		verify(mockOutboxRepository).deleteByCodeIn(List.of(1L, 2L, 3L));
+		verify(mockOutboxRepository).deleteByCodeIn(List.of(4L));
+	}
+	
+	@Test
+	void testRelayFailureKeepsEntries() {
+		
+		when(mockOutboxRepository.findByOrderByCodeAsc(ArgumentMatchers.any()))
+			.thenReturn(List.of(buildEntry(1L, PlaceTestData.READ_PLACE_ID, EnumNotificationEvent.PLACE_DESTROY)));
+		
+		doThrow(new UncategorizedJmsException("broker down"))
+			.when(mockPublisher).send(ArgumentMatchers.any());
+		
+		NotificationOutboxRelay relay = buildRelay();
+		
+		assertThrows(UncategorizedJmsException.class, relay::relay);
+		
+		// Nothing removed, the transaction is rolled back and it will be sent again in the next run
+		verify(mockOutboxRepository, never()).deleteByCodeIn(ArgumentMatchers.any());
+		verify(mockTransactionManager).rollback(ArgumentMatchers.any());
+	}
+	
+	private NotificationOutboxRelay buildRelay() {
+		
+		return new NotificationOutboxRelay(
+				new NotificationOutbox(mockOutboxRepository, true), 
+				mockPublisher, 
+				new NotificationCoalescer(mockPublisher, new SimpleMeterRegistry(), 0L),
+				new TransactionTemplate(mockTransactionManager), BATCH_SIZE);
+	}
+	
+	private static NotificationOutboxEntity buildEntry(Long code, Long placeId, EnumNotificationEvent event) {
+		
+		NotificationMessage notification = NotificationMessage.builder()
+				.entity(NotificationMessage.EnumEntity.PLACE)
+				.entityId(placeId)
+				.event(event)
+			.build();
+		
+		NotificationOutboxEntity entry = new NotificationOutboxEntity();
+		
+		entry.setCode(code);
+		entry.setEntityId(placeId);
+		entry.setEvent(event.name());
+		entry.setPayload(NotificationOutbox.serialize(notification));
+		
+		return entry;
+	}
+}
@@ -0,0 +1,172 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import com.cailleach.mudengine.common.utils.CommonConstants;
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationPublisherTests {
+	
+	private static final String PLACE_TOPIC = "place.test";
+	private static final String AUTH_TOKEN = "token";
+	
+	private static final int MAX_BATCH_SIZE = 4;
+	private static final long LINGER_MS = 500L;
+	
+	@Mock
+	private ConnectionFactory mockConnectionFactory;
+	
+	@Mock
+	private Connection mockConnection;
+	
+	@Mock
+	private MessageConverter mockConverter;
+	
+	@Mock
+	private Session mockSession;
+	
+	@Mock
+	private MessageProducer mockProducer;
+	
+	@Mock
+	private Message mockMessage;
+	
+	/**
+	 * As the application's: sessions not transacted
+	 */
+	private JmsTemplate jmsTemplate;
+	
+	@BeforeEach
+	public void setup() throws Exception {
+		
+		jmsTemplate = new JmsTemplate(mockConnectionFactory);
+		
+		lenient().when(mockConnectionFactory.createConnection()).thenReturn(mockConnection);
+		lenient().when(mockConnection.createSession(true, Session.AUTO_ACKNOWLEDGE)).thenReturn(mockSession);
+		
+		lenient().when(mockConverter.toMessage(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(mockMessage);
+		
+		lenient().when(mockSession.createProducer(ArgumentMatchers.any(Destination.class))).thenReturn(mockProducer);
+	}
+	
+	@Test
+	void testSendInBatches() throws Exception {
+		
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		
+		NotificationPublisher publisher = new NotificationPublisher(jmsTemplate, mockConverter, meterRegistry, PLACE_TOPIC, MAX_BATCH_SIZE, 0L);
+		
+		publisher.publish(buildNotifications(10), AUTH_TOKEN);
+		
+		// 10 notifications, 3 batches: one transacted session, producer and commit each
+		verify(mockConnection, times(3)).createSession(true, Session.AUTO_ACKNOWLEDGE);
+		verify(mockSession, times(3)).createProducer(ArgumentMatchers.any(Destination.class));
+		verify(mockSession, times(3)).commit();
+		verify(mockProducer, times(3)).close();
+		
+		verify(mockProducer, times(10)).send(mockMessage);
+		verify(mockMessage, times(10)).setObjectProperty(CommonConstants.AUTH_TOKEN_HEADER, AUTH_TOKEN);
+		
+		// Each send is timed
+		assertEquals(10, meterRegistry.get(NotificationPublisher.SEND_METRIC).timers().stream()
+				.mapToLong(Timer::count)
+				.sum());
+	}
+	
+	@Test
+	void testLingerHoldsNotifications() throws Exception {
+		
+		NotificationPublisher publisher = new NotificationPublisher(jmsTemplate, mockConverter, new SimpleMeterRegistry(), PLACE_TOPIC, MAX_BATCH_SIZE, LINGER_MS);
+		
+		try {
+			
+			publisher.publish(buildNotifications(1), AUTH_TOKEN);
+			publisher.publish(buildNotifications(2), AUTH_TOKEN);
+			
+			// Both bursts go in the same batch once the linger time expires
+			// (the commit is the last step of the batch, wait for it)
+			verify(mockSession, timeout(5000)).commit();
+			verify(mockConnection).createSession(true, Session.AUTO_ACKNOWLEDGE);
+			verify(mockProducer, times(3)).send(mockMessage);
+			
+		} finally {
+			publisher.shutdown();
+		}
+	}
+	
+	@Test
+	void testLingerFullBatch() throws Exception {
+		
+		NotificationPublisher publisher = new NotificationPublisher(jmsTemplate, mockConverter, new SimpleMeterRegistry(), PLACE_TOPIC, MAX_BATCH_SIZE, 60_000L);
+		
+		try {
+			
+			publisher.publish(buildNotifications(3), AUTH_TOKEN);
+			
+			verify(mockConnectionFactory, never()).createConnection();
+			
+			// A full batch doesn't wait for the linger time
+			publisher.publish(buildNotifications(1), null);
+			
+			verify(mockSession).commit();
+			verify(mockProducer, times(4)).send(mockMessage);
+			verify(mockMessage, times(3)).setObjectProperty(CommonConstants.AUTH_TOKEN_HEADER, AUTH_TOKEN);
+			
+		} finally {
+			publisher.shutdown();
+		}
+	}
+	
+	@Test
+	void testShutdownFlushes() throws Exception {
+		
+		NotificationPublisher publisher = new NotificationPublisher(jmsTemplate, mockConverter, new SimpleMeterRegistry(), PLACE_TOPIC, MAX_BATCH_SIZE, 60_000L);
+		
+		publisher.publish(buildNotifications(2), AUTH_TOKEN);
+		
+		publisher.shutdown();
+		
+		verify(mockSession).commit();
+		verify(mockProducer, times(2)).send(mockMessage);
+	}
+	
+	private static List<NotificationMessage> buildNotifications(int count) {
+		
+		return LongStream.rangeClosed(1, count)
+				.mapToObj(d -> NotificationMessage.builder()
+						.entity(NotificationMessage.EnumEntity.PLACE)
+						.entityId(d)
+						.event(EnumNotificationEvent.PLACE_EXIT_OPEN)
+					.build())
+				.toList();
+	}
+}
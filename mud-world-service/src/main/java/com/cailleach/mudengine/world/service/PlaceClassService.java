@@ -1,9 +1,13 @@
 package com.cailleach.mudengine.world.service;
 
 import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.rest.dto.PlaceClassLineage;
 
 public interface PlaceClassService {
 
 	PlaceClass getPlaceClass(String placeClass);
 
-}
\ No newline at end of file
+	PlaceClassLineage getPlaceClassLineage(String placeClass);
+	
+	boolean isA(String placeClass, String ancestorClass);
+}
@@ -0,0 +1,11 @@
+package com.cailleach.mudengine.world.service;
+
+import java.util.List;
+
+import com.cailleach.mudengine.world.rest.dto.PlaceDamage;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamageResult;
+
+public interface PlaceDamageService {
+	
+	PlaceDamageResult damagePlaces(List<PlaceDamage> damages);
+}
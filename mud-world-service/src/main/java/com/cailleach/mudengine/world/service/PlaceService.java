@@ -1,15 +1,30 @@
 package com.cailleach.mudengine.world.service;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceNeighbourhood;
+import com.cailleach.mudengine.world.rest.dto.PlacePath;
 
 public interface PlaceService {
 
 	Place getPlace(Long placeId);
+	
+	Stream<Place> getPlaces(Collection<Long> placeIds);
 
 	Place updatePlace(Long placeId, Place requestPlace);
 
+	Place updatePlaceAttrs(Long placeId, Map<String, Integer> attrDeltas);
+
 	void destroyPlace(Long placeId);
 
 	Place createPlace(String placeClassCode, String direction, Long targetPlaceCode);
+	
+	PlaceNeighbourhood getNeighbourhood(Long placeId, int depth, boolean withPlaces);
+	
+	Optional<PlacePath> findPath(Long placeId, Long targetPlaceId, boolean throughClosedExits);
 
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.cailleach.mudengine.world.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.cailleach.mudengine.world.rest.dto.WorldImportResult;
+
+public interface WorldTransferService {
+	
+	void exportWorld(OutputStream out) throws IOException;
+	
+	WorldImportResult importWorld(InputStream in);
+}
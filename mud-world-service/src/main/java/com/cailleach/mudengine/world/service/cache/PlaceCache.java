@@ -0,0 +1,97 @@
+package com.cailleach.mudengine.world.service.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded cache of converted places, keyed by place code.
+ * 
+ * The cache is bounded by weight instead of number of entries: each place weighs
+ * one unit plus one unit per exit and per attribute, so big places take
+ * proportionally more room.
+ * Hits, misses and evictions are published to the meter registry under the
+ * "place" cache name.
+ * 
+ * The cached places are shared among all callers and must be treated as read-only.
+ */
+@Component
+public class PlaceCache {
+	
+	public static final String CACHE_NAME = "place";
+	
+	private final Cache<Long, Place> cache;
+
+	public PlaceCache(MeterRegistry meterRegistry, 
+			@Value("${place.cache.max-weight:200000}") long maxWeight) {
+		
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maxWeight)
+				.weigher(PlaceCache::weigh)
+				.recordStats()
+				.build();
+		
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+	}
+	
+	/**
+	 * Return the cached place, loading (and caching) it if absent.
+	 * Any exception thrown by the loader is propagated and nothing is cached.
+	 * 
+	 * @param placeCode - code of the place
+	 * @param loader - function that builds the place on a cache miss
+	 * @return
+	 */
+	public Place get(Long placeCode, Function<Long, Place> loader) {
+		return cache.get(placeCode, loader);
+	}
+	
+	/**
+	 * Return the places found in cache, leaving the missing ones out.
+	 */
+	public Map<Long, Place> getAllPresent(Collection<Long> placeCodes) {
+		return cache.getAllPresent(placeCodes);
+	}
+	
+	/**
+	 * Cache a place, unless a later version of it is already cached
+	 * (concurrent updates of a place may get here in any order).
+	 */
+	public void put(Place place) {
+		cache.asMap().merge(place.getCode(), place, PlaceCache::latest);
+	}
+	
+	public void invalidate(Long placeCode) {
+		cache.invalidate(placeCode);
+	}
+	
+	public void invalidateAll(Collection<Long> placeCodes) {
+		cache.invalidateAll(placeCodes);
+	}
+	
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+	
+	private static Place latest(Place cachedPlace, Place place) {
+		
+		boolean cachedIsLater = (cachedPlace.getVersion()!=null) && (place.getVersion()!=null) && 
+				(cachedPlace.getVersion() > place.getVersion());
+		
+		return cachedIsLater ? cachedPlace : place;
+	}
+	
+	private static int weigh(Long placeCode, Place place) {
+		return 1 + place.getExits().size() + place.getAttrs().size();
+	}
+}
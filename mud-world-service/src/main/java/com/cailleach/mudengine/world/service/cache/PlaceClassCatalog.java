@@ -0,0 +1,313 @@
+package com.cailleach.mudengine.world.service.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.cailleach.mudengine.world.model.PlaceClassEntity;
+import com.cailleach.mudengine.world.repository.PlaceClassRepository;
+import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.rest.dto.PlaceClassLineage;
+import com.cailleach.mudengine.world.service.converter.todto.PlaceClassConverter;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+
+/**
+ * In-memory catalog of all place classes.
+ * 
+ * Place classes are reference data: they are loaded once at startup and every
+ * lookup afterwards is served from an immutable map, without going to the database.
+ * Each entry keeps the entity, its already converted DTO, its attribute map and
+ * its inheritance data (ancestors and effective attributes), all computed at load time.
+ * 
+ * The objects held by the catalog are shared among all callers and must be treated
+ * as read-only.  Any change made to the place classes in database must be followed
+ * by a call to {@link #reload()} or {@link #invalidate(String)}.
+ * 
+ * Codes looked up and not found in database are remembered as missing until then too,
+ * so repeated lookups of an unknown class don't go to the database (nor wait for a load).
+ */
+@Component
+public class PlaceClassCatalog {
+	
+	private static final Logger log = LoggerFactory.getLogger(PlaceClassCatalog.class);
+	
+	/**
+	 * Missing codes remembered; past that they're forgotten and checked again
+	 */
+	private static final int MAX_MISSING_CODES = 1000;
+
+	private final PlaceClassRepository repository;
+	
+	private volatile Map<String, Entry> entries = Collections.emptyMap();
+	
+	/**
+	 * Codes not found in database since the last reload
+	 */
+	private volatile Set<String> missing = Collections.emptySet();
+	
+	public PlaceClassCatalog(PlaceClassRepository repository) {
+		this.repository = repository;
+	}
+	
+	@PostConstruct
+	public void warmUp() {
+		reload();
+	}
+	
+	/**
+	 * Discard the whole catalog and load all place classes again from database.
+	 */
+	public synchronized void reload() {
+		
+		Map<String, PlaceClassEntity> dbClasses = new HashMap<>();
+		
+		repository.findAll()
+			.forEach(d -> dbClasses.put(d.getCode(), d));
+		
+		entries = buildEntries(dbClasses);
+		missing = Collections.emptySet();
+		
+		log.info("place class catalog loaded: {} classes", dbClasses.size());
+	}
+	
+	/**
+	 * Reload one single place class from database.
+	 * If the place class doesn't exist anymore, it's removed from the catalog.
+	 * 
+	 * As its descendants inherit from it, the inheritance data of the whole
+	 * catalog is computed again.
+	 * 
+	 * @param placeClassCode - code of the changed place class
+	 */
+	public synchronized void invalidate(String placeClassCode) {
+		
+		Map<String, PlaceClassEntity> dbClasses = currentEntities();
+		
+		dbClasses.remove(placeClassCode);
+		
+		repository.findById(placeClassCode)
+			.ifPresent(d -> dbClasses.put(d.getCode(), d));
+		
+		entries = buildEntries(dbClasses);
+		
+		if (missing.contains(placeClassCode)) {
+			
+			Set<String> newMissing = new HashSet<>(missing);
+			newMissing.remove(placeClassCode);
+			
+			missing = Collections.unmodifiableSet(newMissing);
+		}
+	}
+	
+	/**
+	 * Look for a place class in the catalog.
+	 * 
+	 * Classes created after the catalog was loaded are read from database
+	 * on the first lookup and kept from then on.  Codes not found are kept
+	 * as missing, without looking for them again until reloaded or invalidated.
+	 * 
+	 * @param placeClassCode - code of the place class
+	 * @return the catalog entry, if the place class exists
+	 */
+	public Optional<Entry> find(String placeClassCode) {
+		
+		Entry entry = entries.get(placeClassCode);
+		
+		if ((entry==null) && !missing.contains(placeClassCode)) {
+			entry = load(placeClassCode);
+		}
+		
+		return Optional.ofNullable(entry);
+	}
+	
+	public Optional<PlaceClassEntity> findEntity(String placeClassCode) {
+		return find(placeClassCode).map(Entry::getEntity);
+	}
+	
+	public Optional<PlaceClass> findPlaceClass(String placeClassCode) {
+		return find(placeClassCode).map(Entry::getPlaceClass);
+	}
+	
+	/**
+	 * Check if a place class is, or descends from, another one.
+	 * The check is a lookup in the lineage computed at load time.
+	 * 
+	 * @param placeClassCode - place class being checked
+	 * @param ancestorClassCode - supposed ancestor
+	 * @return false if the place class doesn't exist
+	 */
+	public boolean isA(String placeClassCode, String ancestorClassCode) {
+		
+		return find(placeClassCode)
+				.map(d -> d.getLineage().contains(ancestorClassCode))
+				.orElse(false);
+	}
+	
+	private synchronized Entry load(String placeClassCode) {
+		
+		// Someone else may have loaded it while we were waiting
+		Entry entry = entries.get(placeClassCode);
+		
+		if ((entry==null) && !missing.contains(placeClassCode)) {
+			
+			Map<String, PlaceClassEntity> dbClasses = currentEntities();
+			
+			// Bring the class and any missing ancestor
+			String curCode = placeClassCode;
+			
+			while ((curCode!=null) && !dbClasses.containsKey(curCode)) {
+				
+				PlaceClassEntity dbClass = repository.findById(curCode).orElse(null);
+				
+				if (dbClass!=null) {
+					dbClasses.put(curCode, dbClass);
+					curCode = dbClass.getParentClassCode();
+				} else {
+					curCode = null;
+				}
+			}
+			
+			if (dbClasses.containsKey(placeClassCode)) {
+				
+				entries = buildEntries(dbClasses);
+				entry = entries.get(placeClassCode);
+			
+			} else {
+				addMissing(placeClassCode);
+			}
+		}
+		
+		return entry;
+	}
+	
+	private void addMissing(String placeClassCode) {
+		
+		Set<String> newMissing = (missing.size() < MAX_MISSING_CODES) ? new HashSet<>(missing) : new HashSet<>();
+		newMissing.add(placeClassCode);
+		
+		missing = Collections.unmodifiableSet(newMissing);
+	}
+	
+	private Map<String, PlaceClassEntity> currentEntities() {
+		
+		Map<String, PlaceClassEntity> dbClasses = new HashMap<>();
+		
+		entries.values().forEach(d -> dbClasses.put(d.getEntity().getCode(), d.getEntity()));
+		
+		return dbClasses;
+	}
+	
+	private static Map<String, Entry> buildEntries(Map<String, PlaceClassEntity> dbClasses) {
+		
+		Map<String, Entry> newEntries = new HashMap<>();
+		
+		dbClasses.values()
+			.forEach(d -> newEntries.put(d.getCode(), new Entry(d, buildAncestors(d, dbClasses), dbClasses)));
+		
+		return Collections.unmodifiableMap(newEntries);
+	}
+	
+	/**
+	 * Follow the parentClassCode chain of a place class.
+	 * Missing parents end the chain; cycles are reported and broken.
+	 */
+	private static List<String> buildAncestors(PlaceClassEntity dbClass, Map<String, PlaceClassEntity> dbClasses) {
+		
+		Set<String> ancestors = new LinkedHashSet<>();
+		
+		PlaceClassEntity curClass = dbClasses.get(dbClass.getParentClassCode());
+		
+		while (curClass!=null) {
+			
+			if (curClass.getCode().equals(dbClass.getCode()) || !ancestors.add(curClass.getCode())) {
+				
+				log.warn("place class {} has a cyclic ancestry at {}", dbClass.getCode(), curClass.getCode());
+				break;
+			}
+			
+			curClass = dbClasses.get(curClass.getParentClassCode());
+		}
+		
+		return List.copyOf(ancestors);
+	}
+	
+	
+	/**
+	 * One place class, with everything precomputed.
+	 */
+	@Getter
+	public static class Entry {
+		
+		private final PlaceClassEntity entity;
+		
+		private final PlaceClass placeClass;
+		
+		private final Map<String, Integer> attrs;
+		
+		/**
+		 * Ancestors of this class, nearest parent first.
+		 */
+		private final List<String> ancestors;
+		
+		/**
+		 * The class itself plus all its ancestors.
+		 */
+		private final Set<String> lineage;
+		
+		/**
+		 * Attributes of this class merged with the inherited ones.
+		 */
+		private final Map<String, Integer> effectiveAttrs;
+		
+		private final PlaceClassLineage placeClassLineage;
+		
+		Entry(PlaceClassEntity entity, List<String> ancestors, Map<String, PlaceClassEntity> dbClasses) {
+			
+			this.entity = entity;
+			
+			this.placeClass = PlaceClassConverter.convert(entity);
+			this.attrs = Collections.unmodifiableMap(this.placeClass.getAttrs());
+			
+			this.placeClass.setAttrs(this.attrs);
+			
+			this.ancestors = ancestors;
+			
+			Set<String> newLineage = new HashSet<>(ancestors);
+			newLineage.add(entity.getCode());
+			
+			this.lineage = Collections.unmodifiableSet(newLineage);
+			
+			// Farthest ancestor first, so the nearest definitions override the older ones
+			Map<String, Integer> newEffectiveAttrs = new HashMap<>();
+			
+			List<String> reversedAncestors = new ArrayList<>(ancestors);
+			Collections.reverse(reversedAncestors);
+			
+			reversedAncestors.forEach(d ->
+				dbClasses.get(d).getAttrs()
+					.forEach(e -> newEffectiveAttrs.put(e.getCode(), e.getValue()))
+			);
+			
+			newEffectiveAttrs.putAll(this.attrs);
+			
+			this.effectiveAttrs = Collections.unmodifiableMap(newEffectiveAttrs);
+			
+			this.placeClassLineage = new PlaceClassLineage();
+			this.placeClassLineage.setPlaceClassCode(entity.getCode());
+			this.placeClassLineage.setAncestors(this.ancestors);
+			this.placeClassLineage.setEffectiveAttrs(this.effectiveAttrs);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.cailleach.mudengine.world.service.converter.todb;
+
+import com.cailleach.mudengine.world.model.PlaceAttrEntity;
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.model.PlaceExitEntity;
+import com.cailleach.mudengine.world.model.pk.PlaceExitEntityPK;
+
+public class PlaceSnapshotConverter {
+
+	private PlaceSnapshotConverter() { }
+	
+	/**
+	 * Build a detached copy of a place, with copies of its exits and attributes.
+	 * The placeClass is shared, as place classes aren't changed through places.
+	 * 
+	 * @param dbPlace - place to be copied
+	 * @return
+	 */
+	public static PlaceEntity snapshot(PlaceEntity dbPlace) {
+		
+		PlaceEntity snapshot = new PlaceEntity();
+		
+		snapshot.setCode(dbPlace.getCode());
+		snapshot.setName(dbPlace.getName());
+		snapshot.setDescription(dbPlace.getDescription());
+		snapshot.setPlaceClass(dbPlace.getPlaceClass());
+		
+		dbPlace.getExits().forEach(d -> {
+			
+			PlaceExitEntity exitSnapshot = new PlaceExitEntity();
+			PlaceExitEntityPK exitSnapshotPK = new PlaceExitEntityPK();
+			
+			exitSnapshotPK.setPlaceCode(d.getPk().getPlaceCode());
+			exitSnapshotPK.setDirection(d.getPk().getDirection());
+			
+			exitSnapshot.setPk(exitSnapshotPK);
+			exitSnapshot.setOpened(d.isOpened());
+			exitSnapshot.setVisible(d.isVisible());
+			exitSnapshot.setLocked(d.isLocked());
+			exitSnapshot.setLockable(d.isLockable());
+			exitSnapshot.setTargetPlaceCode(d.getTargetPlaceCode());
+			
+			snapshot.getExits().add(exitSnapshot);
+		});
+		
+		dbPlace.getAttrs().forEach(d -> {
+			
+			PlaceAttrEntity attrSnapshot = new PlaceAttrEntity();
+			
+			attrSnapshot.setId(d.getId());
+			attrSnapshot.setValue(d.getValue());
+			
+			snapshot.getAttrs().add(attrSnapshot);
+		});
+		
+		return snapshot;
+	}
+}
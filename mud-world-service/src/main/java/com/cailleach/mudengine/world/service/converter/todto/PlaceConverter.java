@@ -1,11 +1,10 @@
 package com.cailleach.mudengine.world.service.converter.todto;
 
-import java.util.stream.Collectors;
-
 import com.cailleach.mudengine.world.model.PlaceEntity;
 import com.cailleach.mudengine.world.model.PlaceAttrEntity;
 import com.cailleach.mudengine.world.model.PlaceExitEntity;
 import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceClass;
 
 public class PlaceConverter {
 	
@@ -15,6 +14,19 @@ public class PlaceConverter {
 	
 	public static Place convert(PlaceEntity originalDbPlace) {
 		
+		return convert(originalDbPlace, 
+				originalDbPlace!=null ? PlaceClassConverter.convert(originalDbPlace.getPlaceClass()) : null);
+	}
+	
+	/**
+	 * Convert a place reusing an already converted placeClass.
+	 * 
+	 * @param originalDbPlace - database record of the place
+	 * @param placeClass - converted placeClass of this place
+	 * @return
+	 */
+	public static Place convert(PlaceEntity originalDbPlace, PlaceClass placeClass) {
+		
 		Place result = new Place();
 		
 		if (originalDbPlace!=null) {
@@ -23,34 +35,28 @@ public class PlaceConverter {
 			
 			result.setClassCode(originalDbPlace.getPlaceClass().getCode());
 			
+			result.setVersion(originalDbPlace.getVersion());
+			
+			// Defaults taken from the converted placeClass when given
+			// (the place class may not be loaded along with the place)
 			result.setName(originalDbPlace.getName()!=null ? 
 						originalDbPlace.getName() : 
-						originalDbPlace.getPlaceClass().getName());
+						placeClass!=null ? placeClass.getName() : originalDbPlace.getPlaceClass().getName());
 			
 			result.setDescription(originalDbPlace.getDescription()!=null ?
 						originalDbPlace.getDescription() :
-						originalDbPlace.getPlaceClass().getDescription());
+						placeClass!=null ? placeClass.getDescription() : originalDbPlace.getPlaceClass().getDescription());
 					
-			result.setPlaceClass(
-					PlaceClassConverter.convert(originalDbPlace.getPlaceClass())
-							);
+			result.setPlaceClass(placeClass);
 
-			// Map the database list with the exits in a map
-			result.setExits(
-				originalDbPlace.getExits().stream()
-					.collect(Collectors.toMap(
-							PlaceExitEntity::getDirection,
-							PlaceExitConverter::convert
-							))
-					);
+			// Exits and attributes go straight into the maps the place was created with
+			for(PlaceExitEntity curExit: originalDbPlace.getExits()) {
+				result.getExits().put(curExit.getDirection(), PlaceExitConverter.convert(curExit));
+			}
 	
-			// Map the database attributes
-			result.setAttrs(
-				originalDbPlace.getAttrs().stream()
-					.collect(Collectors.toMap(
-							PlaceAttrEntity::getCode, 
-							PlaceAttrEntity::getValue))
-					);
+			for(PlaceAttrEntity curAttr: originalDbPlace.getAttrs()) {
+				result.getAttrs().put(curAttr.getCode(), curAttr.getValue());
+			}
 		}
 		
 		
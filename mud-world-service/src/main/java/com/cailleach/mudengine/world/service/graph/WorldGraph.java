@@ -0,0 +1,501 @@
+package com.cailleach.mudengine.world.service.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.model.PlaceExitEntity;
+import com.cailleach.mudengine.world.repository.PlaceExitRepository;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.PlaceExit;
+import com.cailleach.mudengine.world.rest.dto.PlaceNeighbourhood;
+import com.cailleach.mudengine.world.rest.dto.PlacePath;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory graph of the world, built from the place exits.
+ * 
+ * Each place gets an int index when it enters the graph, and its exits are packed
+ * in a long[] (target index, direction and exit flags), so the world can be walked
+ * without going to the database or boxing place codes.  The standard directions
+ * have fixed small ids; any other direction found in the exits gets the next free one.
+ * 
+ * The graph is loaded at startup and kept up to date by the place service as places
+ * are created, updated and destroyed.  Lookups and changes are guarded by a read/write lock.
+ */
+@Component
+public class WorldGraph {
+	
+	private static final Logger log = LoggerFactory.getLogger(WorldGraph.class);
+	
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private static final int NO_PLACE = -1;
+	
+	private static final long[] NO_EXITS = new long[0];
+	
+	// Direction ids are packed in a single byte
+	private static final int MAX_DIRECTIONS = 256;
+	
+	private static final int OPENED = 1;
+	
+	private static final int LOCKED = 2;
+	
+	private final PlaceRepository placeRepository;
+	
+	private final PlaceExitRepository exitRepository;
+	
+	/**
+	 * Caps on neighbourhood searches, so a single request can't walk the whole world
+	 */
+	private final int maxNeighbourhoodDepth;
+	
+	private final int maxNeighbourhoodSize;
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private final Map<Long, Integer> indexes = new HashMap<>();
+	
+	private final List<String> directions = new ArrayList<>();
+	
+	private final Map<String, Integer> directionIds = new HashMap<>();
+	
+	/**
+	 * Place code of each index
+	 */
+	private long[] codes;
+	
+	/**
+	 * Exits of each index
+	 */
+	private long[][] exits;
+	
+	/**
+	 * Indexes left by destroyed places, to be reused
+	 */
+	private int[] freeIndexes;
+	
+	private int freeCount;
+	
+	/**
+	 * All indexes in use are below this one
+	 */
+	private int size;
+	
+	public WorldGraph(PlaceRepository placeRepository, PlaceExitRepository exitRepository, 
+			@Value("${place.neighbourhood.max-depth:10}") int maxNeighbourhoodDepth, 
+			@Value("${place.neighbourhood.max-size:1000}") int maxNeighbourhoodSize) {
+		
+		this.placeRepository = placeRepository;
+		this.exitRepository = exitRepository;
+		this.maxNeighbourhoodDepth = maxNeighbourhoodDepth;
+		this.maxNeighbourhoodSize = maxNeighbourhoodSize;
+		
+		clear();
+	}
+	
+	@PostConstruct
+	public void warmUp() {
+		reload();
+	}
+	
+	/**
+	 * Discard the whole graph and load all places and exits again from database.
+	 */
+	public void reload() {
+		
+		List<Long> placeCodes = placeRepository.findAllCodes();
+		Iterable<PlaceExitEntity> dbExits = exitRepository.findAll();
+		
+		lock.writeLock().lock();
+		
+		try {
+			clear();
+			
+			placeCodes.forEach(this::indexOf);
+			
+			int exitCount = 0;
+			
+			for(PlaceExitEntity curExit: dbExits) {
+				
+				int placeIndex = indexOf(curExit.getPk().getPlaceCode());
+				
+				long exit = toExit(curExit);
+				
+				if (exit!=NO_PLACE) {
+					exits[placeIndex] = Arrays.copyOf(exits[placeIndex], exits[placeIndex].length + 1);
+					exits[placeIndex][exits[placeIndex].length - 1] = exit;
+					
+					exitCount++;
+				}
+			}
+			
+			log.info("world graph loaded: {} places, {} exits", indexes.size(), exitCount);
+		
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Replace the exits of a place (adding it to the graph if needed)
+	 * with the ones currently in the entity.
+	 */
+	public void update(PlaceEntity dbPlace) {
+		
+		lock.writeLock().lock();
+		
+		try {
+			int placeIndex = indexOf(dbPlace.getCode());
+			
+			long[] placeExits = new long[dbPlace.getExits().size()];
+			int exitCount = 0;
+			
+			for(PlaceExitEntity curExit: dbPlace.getExits()) {
+				
+				long exit = toExit(curExit);
+				
+				if (exit!=NO_PLACE) {
+					placeExits[exitCount++] = exit;
+				}
+			}
+			
+			exits[placeIndex] = (exitCount==0) ? NO_EXITS : Arrays.copyOf(placeExits, exitCount);
+		
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Remove a place from the graph, along with all exits leading to it.
+	 */
+	public void remove(Long placeCode) {
+		
+		lock.writeLock().lock();
+		
+		try {
+			Integer placeIndex = indexes.remove(placeCode);
+			
+			if (placeIndex!=null) {
+				
+				codes[placeIndex] = 0;
+				exits[placeIndex] = NO_EXITS;
+				
+				// The database drops the exits leading to the place as well
+				for(int i=0;i<size;i++) {
+					exits[i] = withoutTarget(exits[i], placeIndex);
+				}
+				
+				if (freeCount==freeIndexes.length) {
+					freeIndexes = Arrays.copyOf(freeIndexes, freeCount * 2);
+				}
+				
+				freeIndexes[freeCount++] = placeIndex;
+			}
+		
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	public boolean contains(Long placeCode) {
+		
+		lock.readLock().lock();
+		
+		try {
+			return indexes.containsKey(placeCode);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Look for the shortest path between two places, in number of exits taken.
+	 * 
+	 * The search is breadth-first: all exits have the same cost and places have
+	 * no coordinates that could guide the search towards the target.
+	 * 
+	 * @param fromPlaceCode - place where the path starts
+	 * @param toPlaceCode - place to be reached
+	 * @param throughClosedExits - whether closed (but unlocked) exits can be taken
+	 * @return the path, if the target place can be reached
+	 */
+	public Optional<PlacePath> findPath(Long fromPlaceCode, Long toPlaceCode, boolean throughClosedExits) {
+		
+		lock.readLock().lock();
+		
+		try {
+			Integer source = indexes.get(fromPlaceCode);
+			Integer target = indexes.get(toPlaceCode);
+			
+			if ((source==null) || (target==null)) {
+				return Optional.empty();
+			}
+			
+			int[] previous = new int[size];
+			long[] previousExit = new long[size];
+			int[] queue = new int[size];
+			
+			Arrays.fill(previous, NO_PLACE);
+			
+			int head = 0;
+			int tail = 0;
+			
+			previous[source] = source;
+			queue[tail++] = source;
+			
+			while ((head < tail) && (previous[target]==NO_PLACE)) {
+				
+				int curIndex = queue[head++];
+				
+				for(long curExit: exits[curIndex]) {
+					
+					int nextIndex = targetOf(curExit);
+					
+					if ((previous[nextIndex]==NO_PLACE) && isPassable(curExit, throughClosedExits)) {
+						
+						previous[nextIndex] = curIndex;
+						previousExit[nextIndex] = curExit;
+						queue[tail++] = nextIndex;
+					}
+				}
+			}
+			
+			if (previous[target]==NO_PLACE) {
+				return Optional.empty();
+			}
+			
+			PlacePath path = new PlacePath();
+			path.setFromPlaceCode(fromPlaceCode);
+			path.setToPlaceCode(toPlaceCode);
+			
+			// Walk back from the target
+			for(int curIndex = target; curIndex!=source; curIndex = previous[curIndex]) {
+				
+				PlacePath.Step step = new PlacePath.Step();
+				step.setDirection(directions.get(directionOf(previousExit[curIndex])));
+				step.setPlaceCode(codes[curIndex]);
+				
+				path.getSteps().add(step);
+			}
+			
+			Collections.reverse(path.getSteps());
+			
+			return Optional.of(path);
+		
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Look for all places within a number of exits from a place.
+	 * 
+	 * All exits are followed, whether opened, closed or locked: this is about
+	 * how near places are (for spells, weather or sounds), not about walking.
+	 * The depth and the number of places returned are capped (place.neighbourhood.*).
+	 * 
+	 * @param placeCode - place at the center of the neighbourhood
+	 * @param depth - maximum number of exits between the place and its neighbours
+	 * @return the places reached, nearest first, if the place exists
+	 */
+	public Optional<PlaceNeighbourhood> findNeighbourhood(Long placeCode, int depth) {
+		
+		int allowedDepth = Math.max(0, Math.min(depth, maxNeighbourhoodDepth));
+		
+		lock.readLock().lock();
+		
+		try {
+			Integer source = indexes.get(placeCode);
+			
+			if (source==null) {
+				return Optional.empty();
+			}
+			
+			PlaceNeighbourhood neighbourhood = new PlaceNeighbourhood();
+			neighbourhood.setPlaceCode(placeCode);
+			neighbourhood.setDepth(allowedDepth);
+			
+			int[] distance = new int[size];
+			int[] queue = new int[size];
+			
+			Arrays.fill(distance, NO_PLACE);
+			
+			int head = 0;
+			int tail = 0;
+			
+			distance[source] = 0;
+			queue[tail++] = source;
+			
+			while (head < tail) {
+				
+				int curIndex = queue[head++];
+				
+				PlaceNeighbourhood.Neighbour neighbour = new PlaceNeighbourhood.Neighbour();
+				neighbour.setPlaceCode(codes[curIndex]);
+				neighbour.setDistance(distance[curIndex]);
+				
+				neighbourhood.getPlaces().add(neighbour);
+				
+				if (distance[curIndex] < allowedDepth) {
+					
+					for(long curExit: exits[curIndex]) {
+						
+						int nextIndex = targetOf(curExit);
+						
+						if (distance[nextIndex]==NO_PLACE) {
+							
+							distance[nextIndex] = distance[curIndex] + 1;
+							queue[tail++] = nextIndex;
+						}
+					}
+				}
+				
+				if (neighbourhood.getPlaces().size()==maxNeighbourhoodSize) {
+					
+					// Anything left in the queue is beyond the cap
+					neighbourhood.setTruncated(head < tail);
+					break;
+				}
+			}
+			
+			return Optional.of(neighbourhood);
+			
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	private void clear() {
+		
+		indexes.clear();
+		
+		directions.clear();
+		directionIds.clear();
+		
+		PlaceExit.getDirections().forEach(this::directionId);
+		
+		codes = new long[INITIAL_CAPACITY];
+		exits = new long[INITIAL_CAPACITY][];
+		
+		freeIndexes = new int[INITIAL_CAPACITY];
+		freeCount = 0;
+		
+		size = 0;
+	}
+	
+	/**
+	 * Index of a place in the graph.  Places not yet in the graph are added.
+	 * Must be called holding the write lock.
+	 */
+	private int indexOf(Long placeCode) {
+		
+		Integer placeIndex = indexes.get(placeCode);
+		
+		if (placeIndex==null) {
+			
+			placeIndex = (freeCount > 0) ? freeIndexes[--freeCount] : size++;
+			
+			if (placeIndex==codes.length) {
+				codes = Arrays.copyOf(codes, codes.length * 2);
+				exits = Arrays.copyOf(exits, exits.length * 2);
+			}
+			
+			codes[placeIndex] = placeCode;
+			exits[placeIndex] = NO_EXITS;
+			
+			indexes.put(placeCode, placeIndex);
+		}
+		
+		return placeIndex;
+	}
+	
+	/**
+	 * Id of a direction, assigning the next free one to directions not seen yet.
+	 * Must be called holding the write lock.
+	 */
+	private int directionId(String direction) {
+		
+		Integer directionId = directionIds.get(direction);
+		
+		if ((directionId==null) && (directions.size() < MAX_DIRECTIONS)) {
+			
+			directionId = directions.size();
+			
+			directions.add(direction);
+			directionIds.put(direction, directionId);
+		}
+		
+		return (directionId!=null) ? directionId : NO_PLACE;
+	}
+	
+	/**
+	 * Pack a place exit.  Must be called holding the write lock.
+	 * 
+	 * @return the packed exit, or NO_PLACE if there are no direction ids left for it
+	 */
+	private long toExit(PlaceExitEntity dbExit) {
+		
+		int directionId = directionId(dbExit.getDirection());
+		
+		if (directionId==NO_PLACE) {
+			
+			log.warn("too many directions, exit {} of place {} left out of the world graph",
+					dbExit.getDirection(), dbExit.getPk().getPlaceCode());
+			
+			return NO_PLACE;
+		}
+		
+		int flags = (dbExit.isOpened() ? OPENED : 0) | (dbExit.isLocked() ? LOCKED : 0);
+		
+		return ((long)indexOf(dbExit.getTargetPlaceCode()) << 32) | (directionId << 8) | flags;
+	}
+	
+	private static long[] withoutTarget(long[] placeExits, int targetIndex) {
+		
+		long[] remaining = placeExits;
+		
+		for(long curExit: placeExits) {
+			
+			if (targetOf(curExit)==targetIndex) {
+				
+				remaining = Arrays.stream(placeExits)
+						.filter(d -> targetOf(d)!=targetIndex)
+						.toArray();
+				
+				break;
+			}
+		}
+		
+		return (remaining.length==0) ? NO_EXITS : remaining;
+	}
+	
+	private static boolean isPassable(long exit, boolean throughClosedExits) {
+		
+		int flags = (int)exit & 0xFF;
+		
+		return ((flags & LOCKED)==0) && (throughClosedExits || ((flags & OPENED)!=0));
+	}
+	
+	private static int targetOf(long exit) {
+		return (int)(exit >>> 32);
+	}
+	
+	private static int directionOf(long exit) {
+		return (int)(exit >>> 8) & 0xFF;
+	}
+}
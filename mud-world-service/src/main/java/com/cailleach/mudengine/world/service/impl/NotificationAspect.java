@@ -1,27 +1,37 @@
 package com.cailleach.mudengine.world.service.impl;
 
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.ArrayList;
-
-
 import java.util.List;
+import java.util.Optional;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.cailleach.mudengine.common.utils.NotificationMessage;
 import com.cailleach.mudengine.world.model.PlaceEntity;
 import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.service.converter.todb.PlaceSnapshotConverter;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 
+/**
+ * Comparisons of saved places are timed in place.notifications.diff, by where the
+ * state before the save came from (snapshot or database).
+ */
 @Aspect
 @Component
 @RequiredArgsConstructor
 public class NotificationAspect {
+	
+	public static final String DIFF_METRIC = "place.notifications.diff";
 
 	private final NotificationService service;
 	
@@ -30,10 +40,19 @@ public class NotificationAspect {
 	@PersistenceContext
 	private final EntityManager em;
 	
+	private final TransactionTemplate transactionTemplate;
+	
+	private final MeterRegistry meterRegistry;
+	
 	/**
 	 * This join point intercepts all place saves performed by the service. 
 	 * 
-	 * For each save operation, we compare the current status of the object in database against the future state object.
+	 * For each save operation, we compare the state of the object when it was loaded against the future state object.
+	 * The loaded state is the snapshot kept in the entity by the service ({@link PlaceEntity#getLoadedState()}),
+	 * so no database read is needed.  Only places saved without a snapshot are read again from the database.
+	 * 
+	 * The save and the dispatch of its notifications run in the same transaction, so notifications
+	 * written to the outbox are committed (or rolled back) along with the change.
 	 * 
 	 * @param pjp - object that holds the actual call.  Only after this call succeeded we send the notifications
 	 * @param afterPlace - future state of the place being altered
@@ -48,36 +67,60 @@ public class NotificationAspect {
 		// is also used to create entities
 		if (afterPlace.getCode()!=null) {
 			
-			// This operation is important as the entity at this time will be in managed state,
-			// therefore all find calls to database will return the same managed object.
-			// To avoid this and get a fresh database version of the entity, we detached the future-state
-			// MudPlace from persistenceContext in order to force it to retrieve another.
-			em.detach(afterPlace);
-			
-			List<NotificationMessage> notifications =
-					// Getting the 'before' entity					
-					repository.findById(afterPlace.getCode())
-					// Comparing before and after items					
-					.map(beforePlace -> service.handlePlaceChange(beforePlace, afterPlace))
-					.orElse(new ArrayList<>());
+			savedPlace = inTransaction(() -> {
 			
-			// Execute the save operation
-			savedPlace = pjp.proceed();
+				Timer.Sample diffSample = Timer.start(meterRegistry);
+				String beforeSource = afterPlace.getLoadedState()!=null ? "snapshot" : "database";
 			
-			// Dispatch the notifications collected before
-			// (Only after the previous database operation succeed)
-			service.dispatchNotifications(notifications);			
+				List<NotificationMessage> notifications =
+						// Getting the 'before' entity
+						getBeforePlace(afterPlace)
+						// Comparing before and after items					
+						.map(beforePlace -> service.handlePlaceChange(beforePlace, afterPlace))
+						.orElse(new ArrayList<>());
+				
+				diffSample.stop(meterRegistry.timer(DIFF_METRIC, "before", beforeSource));
+				
+				// Execute the save operation
+				Object curSavedPlace = pjp.proceed();
+				
+				// Dispatch the notifications collected before
+				// (Only after the previous database operation succeed)
+				service.dispatchNotifications(notifications);
+				
+				return curSavedPlace;
+			});
 
 		} else {
 			// In this case a place is being created, just proceed
-			// (this use case will generate further notifications when the place will be
-			// updated with the new exit)
+			// (its attributes and exits are notified by the service, once they're added)
 			savedPlace = pjp.proceed();
 		}
 		
+		// The saved state is the 'before' state of any further save
+		if (savedPlace instanceof PlaceEntity savedPlaceEntity) {
+			savedPlaceEntity.setLoadedState(PlaceSnapshotConverter.snapshot(savedPlaceEntity));
+		}
+		
 		return savedPlace;
 	}
 	
+	private Optional<PlaceEntity> getBeforePlace(PlaceEntity afterPlace) {
+		
+		if (afterPlace.getLoadedState()!=null) {
+			return Optional.of(afterPlace.getLoadedState());
+		}
+		
+		// This operation is important as the entity at this time will be in managed state,
+		// therefore all find calls to database will return the same managed object.
+		// To avoid this and get a fresh database version of the entity, we detached the future-state
+		// MudPlace from persistenceContext in order to force it to retrieve another.
+		// (read in the transaction of the save, as places to be changed are read with a lock)
+		em.detach(afterPlace);
+		
+		return repository.findForUpdateByCode(afterPlace.getCode());
+	}
+	
 	/**
 	 * This join point intercepts all place destructions.
 	 * 
@@ -98,12 +141,47 @@ public class NotificationAspect {
 	@Around(value = "execution(public * org.springframework.data.repository.Repository+.delete(..)) && args(destroyedPlace)")
 	public void sendDestroyNotification(ProceedingJoinPoint pjp, PlaceEntity destroyedPlace) throws Throwable {
 
-		// First of all, execute the change in database
-		pjp.proceed();
+		inTransaction(() -> {
+			
+			// First of all, execute the change in database
+			pjp.proceed();
+			
+			// Build (and dispatch) notifications
+			service.dispatchNotifications(
+					service.handlePlaceDestroy(destroyedPlace)
+					);
+			
+			return null;
+		});
+	}
+	
+	/**
+	 * Run the intercepted operation (and whatever comes with it) in a transaction,
+	 * joining the current one if it exists.
+	 * Exceptions thrown by the operation are propagated as they are.
+	 */
+	private Object inTransaction(JoinPointCall call) throws Throwable {
+		
+		try {
+			return transactionTemplate.execute(status -> {
+				
+				try {
+					return call.proceed();
+				} catch(RuntimeException | Error e) {
+					throw e;
+				} catch(Throwable e) {
+					throw new UndeclaredThrowableException(e);
+				}
+			});
+			
+		} catch(UndeclaredThrowableException e) {
+			throw e.getUndeclaredThrowable();
+		}
+	}
+	
+	@FunctionalInterface
+	private interface JoinPointCall {
 		
-		// Build (and dispatch) notifications
-		service.dispatchNotifications(
-				service.handlePlaceDestroy(destroyedPlace)
-				);
+		Object proceed() throws Throwable;
 	}
 }
@@ -3,26 +3,43 @@ package com.cailleach.mudengine.world.service.impl;
 import org.springframework.stereotype.Service;
 
 import com.cailleach.mudengine.common.exception.EntityNotFoundException;
-import com.cailleach.mudengine.world.repository.PlaceClassRepository;
 import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.rest.dto.PlaceClassLineage;
 import com.cailleach.mudengine.world.service.PlaceClassService;
-import com.cailleach.mudengine.world.service.converter.todto.PlaceClassConverter;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
 import com.cailleach.mudengine.common.utils.LocalizedMessages;
 
 @Service
 public class PlaceClassServiceImpl implements PlaceClassService {
 
-	private PlaceClassRepository repository;
+	private PlaceClassCatalog catalog;
 	
-	public PlaceClassServiceImpl(PlaceClassRepository repository) {
-		this.repository = repository;
+	public PlaceClassServiceImpl(PlaceClassCatalog catalog) {
+		this.catalog = catalog;
 	}
 	
 	@Override
 	public PlaceClass getPlaceClass(String placeClass) {
 		
-		return repository.findById(placeClass)
-				.map(PlaceClassConverter::convert)
+		return catalog.findPlaceClass(placeClass)
 				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_CLASS_NOT_FOUND, placeClass));
 	}
+	
+	@Override
+	public PlaceClassLineage getPlaceClassLineage(String placeClass) {
+		
+		return catalog.find(placeClass)
+				.map(PlaceClassCatalog.Entry::getPlaceClassLineage)
+				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_CLASS_NOT_FOUND, placeClass));
+	}
+	
+	@Override
+	public boolean isA(String placeClass, String ancestorClass) {
+		
+		if (catalog.find(placeClass).isEmpty()) {
+			throw new EntityNotFoundException(LocalizedMessages.PLACE_CLASS_NOT_FOUND, placeClass);
+		}
+		
+		return catalog.isA(placeClass, ancestorClass);
+	}
 }
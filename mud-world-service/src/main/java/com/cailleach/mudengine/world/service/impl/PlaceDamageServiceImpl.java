@@ -0,0 +1,204 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.common.exception.EntityNotFoundException;
+import com.cailleach.mudengine.common.utils.LocalizedMessages;
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.world.model.PlaceClassEntity;
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.model.PlaceExitEntity;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamage;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamageResult;
+import com.cailleach.mudengine.world.service.PlaceDamageService;
+import com.cailleach.mudengine.world.service.cache.PlaceCache;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
+import com.cailleach.mudengine.world.service.converter.todb.PlaceSnapshotConverter;
+import com.cailleach.mudengine.world.service.graph.WorldGraph;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Damage of many places at once (area attacks, sieges).
+ * 
+ * All the damage is applied in one transaction with set-based statements: the places
+ * are locked in code order (so overlapping batches don't deadlock), their versions are
+ * bumped (so full updates read before conflict) and their HP changed in one single
+ * update, capped to MAXHP.  Only the places whose HP is exhausted are loaded: they
+ * change to their demised class or are removed, and the notifications of the whole
+ * batch are dispatched at once.
+ * 
+ * Places without an HP row aren't damaged, and reported as skipped.  A full update would
+ * take their HP as zero and destroy them when they have a MAXHP: that is left to a
+ * request about that place alone, not to an attack that didn't change any HP.
+ */
+@Service
+@RequiredArgsConstructor
+public class PlaceDamageServiceImpl implements PlaceDamageService {
+	
+	private static final String LOCK_PLACES =
+			"select CODE from MUD_PLACE where CODE = any(?) order by CODE for update";
+	
+	private static final String INCREMENT_VERSIONS =
+			"update MUD_PLACE set VERSION = VERSION + 1 where CODE = any(?)";
+	
+	/**
+	 * Add each delta to the place HP, capped to its MAXHP (when it has one),
+	 * returning the resulting HP and MAXHP
+	 */
+	private static final String APPLY_DAMAGE =
+			"update MUD_PLACE_ATTR hp set VALUE = "
+			+ "case when coalesce(maxhp.VALUE, 0) <> 0 then least(hp.VALUE + d.DELTA, maxhp.VALUE) else hp.VALUE + d.DELTA end "
+			+ "from unnest(?, ?) as d(PLACE_CODE, DELTA) "
+			+ "left join MUD_PLACE_ATTR maxhp on maxhp.PLACE_CODE = d.PLACE_CODE and maxhp.CODE = 'MAXHP' "
+			+ "where hp.PLACE_CODE = d.PLACE_CODE and hp.CODE = 'HP' "
+			+ "returning hp.PLACE_CODE, hp.VALUE, coalesce(maxhp.VALUE, 0)";
+	
+	private final JdbcTemplate jdbcTemplate;
+	
+	private final TransactionTemplate transactionTemplate;
+	
+	private final PlaceRepository placeRepository;
+	
+	private final PlaceClassCatalog placeClassCatalog;
+	
+	private final NotificationService notificationService;
+	
+	private final PlaceCache placeCache;
+	
+	private final WorldGraph worldGraph;
+	
+	@Override
+	public PlaceDamageResult damagePlaces(List<PlaceDamage> damages) {
+		
+		// One delta per place, in code order
+		Map<Long, Integer> deltas = new TreeMap<>();
+		
+		damages.forEach(d -> deltas.merge(d.getPlaceCode(), d.getHpDelta(), Integer::sum));
+		
+		PlaceDamageResult result = new PlaceDamageResult();
+		
+		if (deltas.isEmpty()) {
+			return result;
+		}
+		
+		Set<Long> changedCodes = transactionTemplate.execute(status -> internalDamagePlaces(deltas, result));
+		
+		Set<Long> damagedCodes = new HashSet<>(result.getDamagedPlaceCodes());
+		
+		deltas.keySet().stream()
+			.filter(d -> !damagedCodes.contains(d))
+			.forEach(result.getSkippedPlaceCodes()::add);
+		
+		// Damaged places and the neighbours of the destroyed ones leave the cache
+		placeCache.invalidateAll(changedCodes);
+		
+		result.getRemovedPlaceCodes().forEach(worldGraph::remove);
+		
+		return result;
+	}
+	
+	/**
+	 * @return codes of all places to leave the cache
+	 */
+	private Set<Long> internalDamagePlaces(Map<Long, Integer> deltas, PlaceDamageResult result) {
+		
+		Long[] placeCodes = deltas.keySet().toArray(new Long[0]);
+		Integer[] hpDeltas = deltas.values().toArray(new Integer[0]);
+		
+		// Places not found are left out from here on
+		if (jdbcTemplate.queryForList(LOCK_PLACES, Long.class, (Object) placeCodes).isEmpty()) {
+			return Set.of();
+		}
+		
+		jdbcTemplate.update(INCREMENT_VERSIONS, (Object) placeCodes);
+		
+		List<Long> exhaustedCodes = new ArrayList<>();
+		
+		jdbcTemplate.query(APPLY_DAMAGE, rs -> {
+			
+			long placeCode = rs.getLong(1);
+			int currentHP = rs.getInt(2);
+			int maxHP = rs.getInt(3);
+			
+			result.getDamagedPlaceCodes().add(placeCode);
+			
+			// Same rule as in a place update
+			if ((maxHP!=0) && (currentHP <= 0)) {
+				exhaustedCodes.add(placeCode);
+			}
+		
+		}, placeCodes, hpDeltas);
+		
+		Set<Long> changedCodes = new HashSet<>(result.getDamagedPlaceCodes());
+		
+		if (!exhaustedCodes.isEmpty()) {
+			changedCodes.addAll(destroyPlaces(exhaustedCodes, result));
+		}
+		
+		return changedCodes;
+	}
+	
+	/**
+	 * Change the exhausted places to their demised class, or remove them if they have none.
+	 * Demise classes come from the catalog and the places are flushed along with the transaction,
+	 * not saved one by one: the notifications of all of them are dispatched at once.
+	 * 
+	 * @return codes of the neighbours of the destroyed places
+	 */
+	private Set<Long> destroyPlaces(List<Long> exhaustedCodes, PlaceDamageResult result) {
+		
+		List<NotificationMessage> notifications = new ArrayList<>();
+		List<PlaceEntity> removedPlaces = new ArrayList<>();
+		Set<Long> neighbourCodes = new HashSet<>();
+		
+		for(PlaceEntity dbPlace: placeRepository.findForUpdateByCodeIn(exhaustedCodes)) {
+			
+			dbPlace.getExits().stream()
+				.map(PlaceExitEntity::getTargetPlaceCode)
+				.forEach(neighbourCodes::add);
+			
+			PlaceClassEntity placeClass = findPlaceClass(dbPlace.getPlaceClass().getCode());
+			
+			if (placeClass.getDemisedPlaceClassCode()!=null) {
+				
+				PlaceEntity beforePlace = PlaceSnapshotConverter.snapshot(dbPlace);
+				PlaceClassEntity demisedPlaceClass = findPlaceClass(placeClass.getDemisedPlaceClassCode());
+				
+				PlaceServiceImpl.internalSyncAttr(dbPlace, placeClass, demisedPlaceClass);
+				dbPlace.setPlaceClass(demisedPlaceClass);
+				
+				notifications.addAll(notificationService.handlePlaceChange(beforePlace, dbPlace));
+				result.getDemisedPlaceCodes().add(dbPlace.getCode());
+			
+			} else {
+				
+				notifications.addAll(notificationService.handlePlaceDestroy(dbPlace));
+				removedPlaces.add(dbPlace);
+				result.getRemovedPlaceCodes().add(dbPlace.getCode());
+			}
+		}
+		
+		placeRepository.deleteAll(removedPlaces);
+		
+		notificationService.dispatchNotifications(notifications);
+		
+		return neighbourCodes;
+	}
+	
+	private PlaceClassEntity findPlaceClass(String placeClassCode) {
+		
+		return placeClassCatalog.findEntity(placeClassCode)
+				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_CLASS_NOT_FOUND, placeClassCode));
+	}
+}
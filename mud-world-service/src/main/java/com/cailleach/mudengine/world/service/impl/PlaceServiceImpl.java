@@ -1,122 +1,472 @@
 package com.cailleach.mudengine.world.service.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
-
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.cailleach.mudengine.common.exception.EntityNotFoundException;
 import com.cailleach.mudengine.common.exception.IllegalParameterException;
 import com.cailleach.mudengine.world.model.PlaceEntity;
 import com.cailleach.mudengine.world.model.PlaceAttrEntity;
+import com.cailleach.mudengine.world.model.PlaceClassAttrEntity;
 import com.cailleach.mudengine.world.model.PlaceClassEntity;
 import com.cailleach.mudengine.world.model.PlaceExitEntity;
-import com.cailleach.mudengine.world.repository.PlaceClassRepository;
+import com.cailleach.mudengine.world.repository.PlaceAttrRepository;
 import com.cailleach.mudengine.world.repository.PlaceRepository;
 import com.cailleach.mudengine.world.rest.dto.Place;
 import com.cailleach.mudengine.world.rest.dto.PlaceExit;
+import com.cailleach.mudengine.world.rest.dto.PlaceNeighbourhood;
+import com.cailleach.mudengine.world.rest.dto.PlacePath;
 import com.cailleach.mudengine.world.service.PlaceService;
+import com.cailleach.mudengine.world.service.cache.PlaceCache;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
 import com.cailleach.mudengine.world.service.converter.todb.PlaceAttrEntityConverter;
 import com.cailleach.mudengine.world.service.converter.todb.PlaceExitEntityConverter;
+import com.cailleach.mudengine.world.service.converter.todb.PlaceSnapshotConverter;
+import com.cailleach.mudengine.world.service.converter.todto.PlaceClassConverter;
 import com.cailleach.mudengine.world.service.converter.todto.PlaceConverter;
+import com.cailleach.mudengine.world.service.graph.WorldGraph;
 import com.cailleach.mudengine.common.utils.LocalizedMessages;
+import com.cailleach.mudengine.common.utils.NotificationMessage;
 import com.cailleach.mudengine.world.util.WorldHelper;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
+/**
+ * Place updates are timed in place.update (by outcome: updated, destroyed, conflict or failed),
+ * and each of their steps in place.update.stage (by stage: load, attrs, health, destroy, class,
+ * exits and save).  Updates retried after a conflict are counted in place.update.retries.
+ */
 @Service
-@RequiredArgsConstructor
 public class PlaceServiceImpl implements PlaceService {
+	
+	/**
+	 * Places loaded at once by getPlaces (see hibernate.default_batch_fetch_size)
+	 */
+	private static final int BULK_CHUNK_SIZE = 100;
+	
+	/**
+	 * Times an attribute update is tried when concurrent changes keep getting in its way
+	 */
+	private static final int MAX_UPDATE_ATTEMPTS = 3;
+
+	public static final String UPDATE_METRIC = "place.update";
+	public static final String UPDATE_STAGE_METRIC = "place.update.stage";
+	public static final String UPDATE_RETRIES_METRIC = "place.update.retries";
+	
+	public static final String PLACE_ATTR_NOT_FOUND = "place.attr.not.found";
+	
+	public static final String PLACE_BULK_TOO_LARGE = "place.bulk.too.large";
 
 	private final PlaceRepository placeRepository;
+	
+	private final PlaceAttrRepository placeAttrRepository;
 
-	private final PlaceClassRepository placeClassRepository;
+	private final PlaceClassCatalog placeClassCatalog;
+	
+	private final PlaceCache placeCache;
+	
+	private final WorldGraph worldGraph;
+	
+	private final NotificationService notificationService;
+	
+	private final TransactionTemplate transactionTemplate;
+	
+	private final MeterRegistry meterRegistry;
+	
+	/**
+	 * Places that can be asked for at once in getPlaces
+	 */
+	private final int maxBulkIds;
+	
+	public PlaceServiceImpl(PlaceRepository placeRepository, PlaceAttrRepository placeAttrRepository,
+			PlaceClassCatalog placeClassCatalog, PlaceCache placeCache, WorldGraph worldGraph,
+			NotificationService notificationService, TransactionTemplate transactionTemplate,
+			MeterRegistry meterRegistry,
+			@Value("${place.bulk.max-ids:1000}") int maxBulkIds) {
+		
+		this.placeRepository = placeRepository;
+		this.placeAttrRepository = placeAttrRepository;
+		this.placeClassCatalog = placeClassCatalog;
+		this.placeCache = placeCache;
+		this.worldGraph = worldGraph;
+		this.notificationService = notificationService;
+		this.transactionTemplate = transactionTemplate;
+		this.meterRegistry = meterRegistry;
+		this.maxBulkIds = maxBulkIds;
+	}
 
 	@Override
 	public Place getPlace(Long placeId) {
 		
+		return placeCache.get(placeId, this::loadPlace);
+	}
+	
+	@Override
+	public Stream<Place> getPlaces(Collection<Long> placeIds) {
+		
+		// Checked up front, before anything is written to the response
+		if (placeIds.size() > maxBulkIds) {
+			throw new IllegalParameterException(PLACE_BULK_TOO_LARGE, maxBulkIds);
+		}
+		
+		return streamPlaces(placeIds);
+	}
+	
+	/**
+	 * Places requested, with no limit on how many.
+	 * They're loaded one chunk at a time, as the stream is consumed.
+	 */
+	private Stream<Place> streamPlaces(Collection<Long> placeIds) {
+		
+		List<Long> distinctIds = placeIds.stream().distinct().toList();
+		
+		return IntStream.range(0, (distinctIds.size() + BULK_CHUNK_SIZE - 1) / BULK_CHUNK_SIZE)
+				.mapToObj(i -> distinctIds.subList(
+						i * BULK_CHUNK_SIZE, 
+						Math.min((i + 1) * BULK_CHUNK_SIZE, distinctIds.size())))
+				.flatMap(d -> loadPlaces(d).stream());
+	}
+	
+	/**
+	 * Load a set of places at once, in the order requested.
+	 * Cached places are reused; the others are read in one findAllById (exits and
+	 * attributes come in batched fetches) and their exit names in one single query.
+	 * Places not found are left out.
+	 */
+	private List<Place> loadPlaces(List<Long> placeIds) {
+		
+		Map<Long, Place> places = new HashMap<>(placeCache.getAllPresent(placeIds));
+		
+		List<Long> missingIds = placeIds.stream()
+				.filter(d -> !places.containsKey(d))
+				.toList();
+		
+		if (!missingIds.isEmpty()) {
+			
+			List<Place> loadedPlaces = new ArrayList<>();
+			
+			placeRepository.findViewByCodeIn(missingIds)
+				.forEach(d -> loadedPlaces.add(convertPlace(d)));
+			
+			updateExitNames(loadedPlaces);
+			
+			loadedPlaces.forEach(d -> {
+				placeCache.put(d);
+				places.put(d.getCode(), d);
+			});
+		}
+		
+		return placeIds.stream()
+				.map(places::get)
+				.filter(Objects::nonNull)
+				.toList();
+	}
+	
+	private Place loadPlace(Long placeId) {
+		
 		return placeRepository
-				.findById(placeId)
-				.map(PlaceConverter::convert)
+				.findViewByCode(placeId)
+				.map(this::convertPlace)
 				.map(this::updateExitNames)
 				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_NOT_FOUND, placeId));
 	}
 	
+	/**
+	 * Convert a place to its service response, reusing the placeClass
+	 * already converted in the catalog.
+	 */
+	private Place convertPlace(PlaceEntity dbPlace) {
+		
+		return PlaceConverter.convert(dbPlace, 
+				placeClassCatalog.findPlaceClass(dbPlace.getPlaceClass().getCode())
+					.orElseGet(() -> PlaceClassConverter.convert(dbPlace.getPlaceClass()))
+				);
+	}
+	
 	private Place updateExitNames(Place originalPlace) {
 		
-		originalPlace.getExits().keySet().stream()
-			.forEach(curDirection -> {
-				
-				PlaceExit curExit = originalPlace.getExits().get(curDirection);
-				
-				curExit.setName(
-						placeRepository.findById(curExit.getTargetPlaceCode())
-						.map(d -> d.getPlaceClass().getName())
-						.orElse(null)
-						);
-				
-			});
+		updateExitNames(List.of(originalPlace));
 		
 		return originalPlace;
 	}
+	
+	private void updateExitNames(Collection<Place> places) {
+		
+		// Resolve the names of all exit targets in one single query
+		Map<Long, String> exitNames = resolveExitNames(
+				places.stream()
+					.flatMap(d -> d.getExits().values().stream())
+					.map(PlaceExit::getTargetPlaceCode)
+					.collect(Collectors.toSet())
+				);
+		
+		places.stream()
+			.flatMap(d -> d.getExits().values().stream())
+			.forEach(curExit -> 
+				curExit.setName(exitNames.get(curExit.getTargetPlaceCode()))
+			);
+	}
+	
+	/**
+	 * Retrieve the names to be shown for a set of exit target places.
+	 * Only the place class name is fetched (through a projection), no
+	 * place graph is loaded.
+	 * 
+	 * @param targetPlaceCodes - codes of the places targeted by the exits
+	 * @return map of place code x exit name
+	 */
+	private Map<Long, String> resolveExitNames(Set<Long> targetPlaceCodes) {
+		
+		Map<Long, String> exitNames = new HashMap<>();
+		
+		if (!targetPlaceCodes.isEmpty()) {
+			
+			placeRepository.findNamesByCodeIn(targetPlaceCodes)
+				.forEach(d -> exitNames.put(d.getCode(), d.getClassName()));
+		}
+		
+		return exitNames;
+	}
 
 	
 	@Override
 	public Place updatePlace(Long placeId, Place requestPlace) {
 		
-		Place response = null;
+		PlaceUpdate update = new PlaceUpdate(requestPlace);
 		
-		PlaceEntity dbPlace = placeRepository
-				.findById(placeId)
-				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_NOT_FOUND, placeId));
+		Timer.Sample sample = Timer.start(meterRegistry);
+		String outcome = "failed";
+		
+		try {
+			
+			for(int attempt = 1;; attempt++) {
+				
+				ChangedPlace changed;
+				
+				try {
+					changed = transactionTemplate.execute(status -> internalUpdatePlace(placeId, update));
+					
+				} catch(OptimisticLockingFailureException e) {
+					
+					// Whatever is cached of this place may be behind the database now
+					placeCache.invalidate(placeId);
+					
+					// Only attribute changes are merged into the changes made meanwhile
+					if (!update.isMergeable() || (attempt == MAX_UPDATE_ATTEMPTS)) {
+						outcome = "conflict";
+						throw e;
+					}
+					
+					meterRegistry.counter(UPDATE_RETRIES_METRIC).increment();
+					
+					continue;
+				}
+				
+				if (changed.destroyed()) {
+					
+					afterDestroy(changed);
+					
+					outcome = "destroyed";
+					
+					// Retrieve it again from the database.
+					return getPlace(placeId);
+				}
+				
+				// Mounting the response
+				Place response = updateExitNames(convertPlace(changed.place()));
+				
+				// Keep the cache in sync with the database
+				placeCache.invalidateAll(changed.neighbourCodes());
+				placeCache.put(response);
+				
+				worldGraph.update(changed.place());
+				
+				outcome = "updated";
+				
+				return response;
+			}
+		
+		} finally {
+			sample.stop(meterRegistry.timer(UPDATE_METRIC, "outcome", outcome));
+		}
+	}
+	
+	private ChangedPlace internalUpdatePlace(Long placeId, PlaceUpdate update) {
+		
+		PlaceEntity dbPlace = stageTimer("load").record(() -> findForUpdate(placeId));
+		
+		// The request itself, or (when retrying) the request merged into the current place
+		Place requestPlace = update.applyTo(dbPlace);
+		
+		// Neighbours linked before the update also have to leave the cache
+		Set<Long> neighbourCodes = getNeighbourCodes(dbPlace);
 		
 		
 		// 1.. Check place attributes
 		// ============================================
-		internalSyncAttr(dbPlace, requestPlace);
+		stageTimer("attrs").record(() -> internalSyncAttr(dbPlace, requestPlace));
 		
 		
 		// 2.. Check place HP
 		// ============================================
-		boolean placeToBeDestroyed = internalSyncPlaceHealth(dbPlace, requestPlace);
+		boolean placeToBeDestroyed = stageTimer("health").record(() -> internalSyncPlaceHealth(dbPlace, requestPlace));
 		
 		if (placeToBeDestroyed) {
 			
 			// destroy the place
-			destroyPlace(dbPlace.getCode());
+			return stageTimer("destroy").record(() -> internalDestroyPlace(dbPlace));
+		}
+		
+		// 3.. Check place class
+		// ============================================
+		
+		// if placeClass is changed, resync the attributes of changed place
+		if (!dbPlace.getPlaceClass().getCode().equals(requestPlace.getClassCode())) {
 
-			// Retrieve it again from the database.
-			response = getPlace(placeId);
+			// change placeClass			
+			stageTimer("class").record(() -> internalUpdateClass(dbPlace, requestPlace.getClassCode()));
 			
-		} else {
+		}
+		
+		// 4.. Check place exits
+		// ============================================
+		
+		stageTimer("exits").record(() -> internalSyncExits(dbPlace, requestPlace));
 
-			// 3.. Check place class
-			// ============================================
+		// updating the place in database
+		// (along with the notifications of the change, see NotificationAspect)
+		PlaceEntity savedPlace = stageTimer("save").record(() -> placeRepository.save(dbPlace));
+		
+		neighbourCodes.addAll(getNeighbourCodes(savedPlace));
+		
+		return new ChangedPlace(savedPlace, neighbourCodes, false, false);
+	}
+	
+	/**
+	 * Place changed in a transaction, along with what has to be done once it's committed.
+	 * 
+	 * @param place - place as saved
+	 * @param neighbourCodes - places linked to it, before and after the change
+	 * @param destroyed - the place was destroyed (it either changed to its demised class or was removed)
+	 * @param removed - the place doesn't exist anymore
+	 */
+	private record ChangedPlace(PlaceEntity place, Set<Long> neighbourCodes, boolean destroyed, boolean removed) {}
+	
+	@Override
+	public Place updatePlaceAttrs(Long placeId, Map<String, Integer> attrDeltas) {
+		
+		if (!attrDeltas.isEmpty()) {
+			
+			Optional<ChangedPlace> destroyed = transactionTemplate.execute(status -> 
+					internalUpdatePlaceAttrs(placeId, attrDeltas));
 			
-			// if placeClass is changed, resync the attributes of changed place
-			if (!dbPlace.getPlaceClass().getCode().equals(requestPlace.getClassCode())) {
+			// Only the place itself changed, unless it was destroyed
+			placeCache.invalidate(placeId);
+			
+			destroyed.ifPresent(this::afterDestroy);
+		}
+		
+		return getPlace(placeId);
+	}
 	
-				// change placeClass			
-				internalUpdateClass(dbPlace, requestPlace.getClassCode());
-				
-			}
+	/**
+	 * Add the deltas to the place attributes in the database, without loading the place,
+	 * then check the place health as it is after them.
+	 * An attribute the place doesn't have fails the whole update.
+	 * 
+	 * The place version is bumped first: that holds the place row until the transaction
+	 * ends (so concurrent deltas are checked one at a time) and makes full updates of the
+	 * place read before this one conflict.
+	 * 
+	 * @return the place, if it was destroyed
+	 */
+	private Optional<ChangedPlace> internalUpdatePlaceAttrs(Long placeId, Map<String, Integer> attrDeltas) {
+		
+		if (placeRepository.incrementVersion(placeId)==0) {
+			throw new EntityNotFoundException(LocalizedMessages.PLACE_NOT_FOUND, placeId);
+		}
+		
+		attrDeltas.forEach((code, delta) -> {
 			
-			// 4.. Check place exits
-			// ============================================
+			if (placeAttrRepository.addToValue(placeId, code, delta)==0) {
+				throw new EntityNotFoundException(PLACE_ATTR_NOT_FOUND, placeId, code);
+			}
+		});
+		
+		// The place health only changes along with these attributes
+		if (!attrDeltas.containsKey(WorldHelper.PLACE_HP_ATTR) && 
+				!attrDeltas.containsKey(WorldHelper.PLACE_MAX_HP_ATTR)) {
 			
-			internalSyncExits(dbPlace, requestPlace);
+			return Optional.empty();
+		}
+		
+		Map<String, PlaceAttrEntity> healthAttrs = indexByCode(
+				placeAttrRepository.findByIdPlaceCodeAndIdCodeIn(placeId, 
+						List.of(WorldHelper.PLACE_HP_ATTR, WorldHelper.PLACE_MAX_HP_ATTR))
+				);
+		
+		if (internalSyncPlaceHealth(healthAttrs)) {
+			return Optional.of(internalDestroyPlace(findForUpdate(placeId)));
+		}
+		
+		return Optional.empty();
+	}
+	
+	private Timer stageTimer(String stage) {
+		return meterRegistry.timer(UPDATE_STAGE_METRIC, "stage", stage);
+	}
 	
-			// updating the place in database
-			// Mounting the response
-			response = PlaceConverter.convert(
-					placeRepository.save(dbPlace)
-					);
+	/**
+	 * Load a place that is about to be changed.
+	 * 
+	 * A snapshot of the place as loaded is kept in the entity, so the changes
+	 * can be compared on save without reading the place again.
+	 * 
+	 * @param placeId - code of the place
+	 * @return
+	 */
+	private PlaceEntity findForUpdate(Long placeId) {
+		
+		PlaceEntity dbPlace = placeRepository
+				.findForUpdateByCode(placeId)
+				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_NOT_FOUND, placeId));
+		
+		// Keep the first snapshot taken, it's the one matching the database
+		if (dbPlace.getLoadedState()==null) {
+			dbPlace.setLoadedState(PlaceSnapshotConverter.snapshot(dbPlace));
 		}
 		
-		return response;
+		return dbPlace;
+	}
+	
+	/**
+	 * Codes of all places linked to this one through its exits.
+	 * As exits are reciprocal, these are the places whose cached exits
+	 * (and exit names) may be affected by a change in this place.
+	 */
+	private static Set<Long> getNeighbourCodes(PlaceEntity dbPlace) {
+		
+		return dbPlace.getExits().stream()
+				.map(PlaceExitEntity::getTargetPlaceCode)
+				.collect(Collectors.toCollection(HashSet::new));
 	}
 	
 	/**
@@ -167,6 +517,30 @@ public class PlaceServiceImpl implements PlaceService {
 		return placeDestroyed;
 	}
 	
+	/**
+	 * Same as {@link #internalSyncPlaceHealth(PlaceEntity, Place)}, over the health attributes
+	 * as they are in the database (the HP is capped in the entity, saved when the transaction ends).
+	 * 
+	 * @param healthAttrs - HP and MAXHP attributes of the place, when it has them
+	 * @return
+	 */
+	private static boolean internalSyncPlaceHealth(Map<String, PlaceAttrEntity> healthAttrs) {
+		
+		PlaceAttrEntity maxHPAttr = healthAttrs.get(WorldHelper.PLACE_MAX_HP_ATTR);
+		PlaceAttrEntity currentHPAttr = healthAttrs.get(WorldHelper.PLACE_HP_ATTR);
+		
+		int maxHP = maxHPAttr!=null ? maxHPAttr.getValue() : 0;
+		int currentHP = currentHPAttr!=null ? currentHPAttr.getValue() : 0;
+		
+		if ((currentHPAttr!=null) && (maxHP!=0) && (currentHP > maxHP)) {
+			
+			// Adjusts the currentHP to the maximum
+			currentHPAttr.setValue(maxHP);
+		}
+		
+		return (maxHP!=0) && (currentHP <=0);
+	}
+	
 	/**
 	 * Sync the place attributes according to placeClass changes.
 	 * Attributes found in previous class and NOT in the new place class will be removed.
@@ -177,43 +551,52 @@ public class PlaceServiceImpl implements PlaceService {
 	 * @param previousPlaceClass - previous place class (null during place creation)
 	 * @param placeClass - new place class to be applied
 	 * @return
+	 * (also used by PlaceDamageServiceImpl, for the places demised in a batch)
 	 */
-	private PlaceEntity internalSyncAttr(PlaceEntity dbPlace, PlaceClassEntity previousPlaceClass, PlaceClassEntity placeClass) {
+	static PlaceEntity internalSyncAttr(PlaceEntity dbPlace, PlaceClassEntity previousPlaceClass, PlaceClassEntity placeClass) {
+		
+		Map<String, PlaceAttrEntity> dbAttrs = indexByCode(dbPlace.getAttrs());
 		
 		if (previousPlaceClass!=null) {
 			
-			// Check all the attributes that existed in old class
-			// and not exists in the new one
+			Set<String> newClassAttrs = new HashSet<>();
 			
-			dbPlace.getAttrs().removeIf(d -> {
-				
-				boolean existsInOldClass = previousPlaceClass.getAttrs().stream()
-						.anyMatch(e -> e.getCode().equals(d.getCode()));
-				
-				boolean existsInNewClass = placeClass.getAttrs().stream()
-						.anyMatch(e -> e.getCode().equals(d.getCode()));
+			for(PlaceClassAttrEntity curClassAttr: placeClass.getAttrs()) {
+				newClassAttrs.add(curClassAttr.getCode());
+			}
 			
-				return existsInOldClass && !existsInNewClass;
-			});
+			// Remove all the attributes that existed in old class
+			// and not exists in the new one
+			for(PlaceClassAttrEntity oldClassAttr: previousPlaceClass.getAttrs()) {
+				
+				if (!newClassAttrs.contains(oldClassAttr.getCode())) {
+					
+					PlaceAttrEntity removedAttr = dbAttrs.remove(oldClassAttr.getCode());
+					
+					if (removedAttr!=null) {
+						dbPlace.getAttrs().remove(removedAttr);
+					}
+				}
+			}
 		}
 		
 		// Looking for attributes to add/update
-		placeClass.getAttrs().stream()
-			.forEach(curClassAttr -> {
-				
-				PlaceAttrEntity dbAttr = 
-					dbPlace.getAttrs().stream()
-						.filter(e -> e.getCode().equals(curClassAttr.getCode()))
-						.findFirst()
-						.orElse(PlaceAttrEntityConverter.convert(dbPlace.getCode(), curClassAttr));
+		for(PlaceClassAttrEntity curClassAttr: placeClass.getAttrs()) {
+			
+			PlaceAttrEntity dbAttr = dbAttrs.get(curClassAttr.getCode());
+			
+			if (dbAttr!=null) {
 				
-				// Set the value regardless if the attr came from existing
-				// list or was created now
+				// Updates the value of existing attribute
 				dbAttr.setValue(curClassAttr.getValue());
+			} else {
 				
-				// Update the attribute list in entity
-				dbPlace.getAttrs().add(dbAttr);
-		});
+				// Creates a new attribute
+				dbPlace.getAttrs().add(
+						PlaceAttrEntityConverter.convert(dbPlace.getCode(), curClassAttr)
+						);
+			}
+		}
 
 		return dbPlace;
 	}
@@ -233,40 +616,39 @@ public class PlaceServiceImpl implements PlaceService {
 	 */
 	private PlaceEntity internalSyncAttr(final PlaceEntity dbPlace, final Place requestPlace) {
 		
-		// Looking for attributes to remove
-		Set<PlaceAttrEntity> filteredSet =
-			dbPlace.getAttrs().stream()
-				// Filtering all database attributes...
-				.filter(db -> requestPlace.getAttrs().keySet().stream()
-						// ... that isn't in the request
-						.noneMatch(req -> req.equals(db.getId().getCode())))
-				.collect(Collectors.toSet());
-
+		Map<String, Integer> requestAttrs = requestPlace.getAttrs();
+		Map<String, PlaceAttrEntity> dbAttrs = new HashMap<>();
+		
+		// Remove the database attributes that aren't in the request,
+		// indexing the remaining ones by code
+		Iterator<PlaceAttrEntity> it = dbPlace.getAttrs().iterator();
 		
-		dbPlace.getAttrs().removeAll(filteredSet);
+		while (it.hasNext()) {
 			
+			PlaceAttrEntity dbAttr = it.next();
+			
+			if (requestAttrs.containsKey(dbAttr.getCode())) {
+				dbAttrs.put(dbAttr.getCode(), dbAttr);
+			} else {
+				it.remove();
+			}
+		}
 
 		// Looking for attributes to add/update
-		for(String curAttr: requestPlace.getAttrs().keySet()) {
-			
-			Integer curValue = requestPlace.getAttrs().get(curAttr);
+		for(Map.Entry<String, Integer> curAttr: requestAttrs.entrySet()) {
 			
-			// Looking for existing attribute in db record list
-			Optional<PlaceAttrEntity> foundAttr = 
-				dbPlace.getAttrs().stream()
-					.filter(a -> a.getId().getCode().equals(curAttr))
-					.findFirst();
+			PlaceAttrEntity dbAttr = dbAttrs.get(curAttr.getKey());
 
 			// If the value exists in db record
-			if (foundAttr.isPresent()) {
+			if (dbAttr!=null) {
 				
 				// Updates the value of existing attribute
-				foundAttr.get().setValue(curValue);
+				dbAttr.setValue(curAttr.getValue());
 			} else {
 				
 				// Creates a new attribute
 				dbPlace.getAttrs().add(
-						PlaceAttrEntityConverter.build(dbPlace.getCode(), curAttr, curValue)
+						PlaceAttrEntityConverter.build(dbPlace.getCode(), curAttr.getKey(), curAttr.getValue())
 						);
 			}
 		}
@@ -274,6 +656,21 @@ public class PlaceServiceImpl implements PlaceService {
 		return dbPlace;
 	}
 	
+	/**
+	 * Index the place attributes by their code, so they can be looked up
+	 * without scanning the whole set for every attribute being synced.
+	 */
+	private static Map<String, PlaceAttrEntity> indexByCode(Collection<PlaceAttrEntity> attrs) {
+		
+		Map<String, PlaceAttrEntity> index = new HashMap<>();
+		
+		for(PlaceAttrEntity curAttr: attrs) {
+			index.put(curAttr.getCode(), curAttr);
+		}
+		
+		return index;
+	}
+	
 	private PlaceEntity internalSyncExits(PlaceEntity dbPlace, Place requestPlace) {
 		
 		// 4. exits		
@@ -333,11 +730,16 @@ public class PlaceServiceImpl implements PlaceService {
 	 */
 	private PlaceEntity internalUpdateClass(PlaceEntity original, String newPlaceClassCode) {
 		
-		PlaceClassEntity placeClass = placeClassRepository
-				.findById(newPlaceClassCode)
+		PlaceClassEntity placeClass = placeClassCatalog
+				.findEntity(newPlaceClassCode)
 				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_CLASS_NOT_FOUND, newPlaceClassCode));
 
-		internalSyncAttr(original, original.getPlaceClass(), placeClass);
+		// Attributes of the current class come from the catalog, they're not loaded with the place
+		PlaceClassEntity currentPlaceClass = placeClassCatalog
+				.findEntity(original.getPlaceClass().getCode())
+				.orElse(null);
+		
+		internalSyncAttr(original, currentPlaceClass, placeClass);
 		original.setPlaceClass(placeClass);
 		
 		return original;
@@ -347,9 +749,14 @@ public class PlaceServiceImpl implements PlaceService {
 	@Override
 	public void destroyPlace(Long placeId) {
 		
-		PlaceEntity dbPlace = placeRepository
-				.findById(placeId)
-				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_NOT_FOUND, placeId));
+		afterDestroy(
+				transactionTemplate.execute(status -> internalDestroyPlace(findForUpdate(placeId)))
+				);
+	}
+
+	private ChangedPlace internalDestroyPlace(PlaceEntity dbPlace) {
+		
+		Set<Long> neighbourCodes = getNeighbourCodes(dbPlace);
 
 		// If exists a demise place class for this location
 		if (dbPlace.getPlaceClass().getDemisedPlaceClassCode()!=null) {
@@ -357,12 +764,24 @@ public class PlaceServiceImpl implements PlaceService {
 			// Change the placeClass to the demised one
 			internalUpdateClass(dbPlace, dbPlace.getPlaceClass().getDemisedPlaceClassCode());
 			
-			placeRepository.save(dbPlace);
+			return new ChangedPlace(placeRepository.save(dbPlace), neighbourCodes, true, false);
+		}
+			
+		// Destroy the place
+		placeRepository.deleteById(dbPlace.getCode());
 			
-		} else {
+		return new ChangedPlace(dbPlace, neighbourCodes, true, true);
+	}
 			
-			// Destroy the place
-			placeRepository.deleteById(dbPlace.getCode());
+	private void afterDestroy(ChangedPlace destroyed) {
+
+		// The place and all its neighbours leave the cache, as the place
+		// is either changing its class or being removed altogether
+		placeCache.invalidate(destroyed.place().getCode());
+		placeCache.invalidateAll(destroyed.neighbourCodes());
+		
+		if (destroyed.removed()) {
+			worldGraph.remove(destroyed.place().getCode());
 		}
 	}
 
@@ -371,14 +790,36 @@ public class PlaceServiceImpl implements PlaceService {
 	public Place createPlace(String placeClassCode, String direction, Long targetPlaceCode) {
 		
 		// Retrieving the placeClass
-		PlaceClassEntity dbPlaceClass = placeClassRepository
-				.findById(placeClassCode)
+		PlaceClassEntity dbPlaceClass = placeClassCatalog
+				.findEntity(placeClassCode)
 				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_CLASS_NOT_FOUND, placeClassCode));
 		
+		// The new place, its attributes and exits and the new exit of the target place
+		// are all written in one flush, when the transaction ends
+		CreatedPlace created = transactionTemplate.execute(status -> 
+				internalCreatePlace(dbPlaceClass, direction, targetPlaceCode));
+		
+		PlaceEntity dbPlace = created.place();
+		PlaceEntity targetDbPlace = created.targetPlace();
+		
+		// The target place has a new exit now
+		placeCache.invalidate(targetDbPlace.getCode());
+		
+		worldGraph.update(dbPlace);
+		worldGraph.update(targetDbPlace);
+		
+		// Converting the response to service-like response
+		Place response = updateExitNames(convertPlace(dbPlace));
+		
+		placeCache.put(response);
+		
+		return response;
+	}
+	
+	private CreatedPlace internalCreatePlace(PlaceClassEntity dbPlaceClass, String direction, Long targetPlaceCode) {
+		
 		// Retrieving the targetPlace
-		PlaceEntity targetDbPlace = placeRepository
-				.findById(targetPlaceCode)
-				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_NOT_FOUND, targetPlaceCode));
+		PlaceEntity targetDbPlace = findForUpdate(targetPlaceCode);
 		
 		// Check the corresponding exit of target place to be update in this flow
 		String correspondingDirection = PlaceExit.getOpposedDirection(direction);
@@ -393,9 +834,12 @@ public class PlaceServiceImpl implements PlaceService {
 		PlaceEntity newPlace = new PlaceEntity();
 		newPlace.setPlaceClass(dbPlaceClass);
 
-		// Saving in database with minimum information in order to have the placeId
+		// Persisting with minimum information in order to have the placeId.
+		// The code comes from the pooled sequence and nothing is written yet.
 		PlaceEntity dbPlace = placeRepository.save(newPlace);
 		
+		PlaceEntity emptyPlace = PlaceSnapshotConverter.snapshot(dbPlace);
+		
 		// Updating attributes based on PlaceClass attributes
 		internalSyncAttr(dbPlace, null, dbPlaceClass);
 
@@ -407,9 +851,6 @@ public class PlaceServiceImpl implements PlaceService {
 						targetPlaceCode)
 				);
 		
-		// Updating the new place in database
-		dbPlace = placeRepository.save(dbPlace);
-		
 		// Updating the targetPlace exit to have a corresponding exit to new place created
 		PlaceExitEntity correspondingExit = PlaceExitEntityConverter.build(
 				targetDbPlace.getCode(), 
@@ -417,9 +858,64 @@ public class PlaceServiceImpl implements PlaceService {
 				dbPlace.getCode());
 		
 		targetDbPlace.getExits().add(correspondingExit);
-		placeRepository.save(targetDbPlace);
 		
-		// Converting the response to service-like response
-		return PlaceConverter.convert(dbPlace);
-	}	
+		// Both places are managed: their new attributes and exits are persisted along with them
+		// when the transaction is flushed (the target's version is bumped by its lock).
+		// Saving them again would merge the new rows, reading each one first.
+		// The new place is notified as a change from the empty place.
+		List<NotificationMessage> notifications = new ArrayList<>();
+		
+		notifications.addAll(notificationService.handlePlaceChange(emptyPlace, dbPlace));
+		notifications.addAll(notificationService.handlePlaceChange(targetDbPlace.getLoadedState(), targetDbPlace));
+		
+		notificationService.dispatchNotifications(notifications);
+		
+		return new CreatedPlace(dbPlace, targetDbPlace);
+	}
+	
+	/**
+	 * New place and the place it was created from
+	 */
+	private record CreatedPlace(PlaceEntity place, PlaceEntity targetPlace) {}
+	
+	
+	@Override
+	public PlaceNeighbourhood getNeighbourhood(Long placeId, int depth, boolean withPlaces) {
+		
+		PlaceNeighbourhood neighbourhood = worldGraph
+				.findNeighbourhood(placeId, depth)
+				.orElseThrow(() -> new EntityNotFoundException(LocalizedMessages.PLACE_NOT_FOUND, placeId));
+		
+		if (withPlaces) {
+			
+			// Neighbourhoods are bounded by the world graph (place.neighbourhood.max-size),
+			// not by the limit of place.bulk.max-ids on requested places
+			Map<Long, Place> places = streamPlaces(
+					neighbourhood.getPlaces().stream()
+						.map(PlaceNeighbourhood.Neighbour::getPlaceCode)
+						.toList()
+					)
+					.collect(Collectors.toMap(Place::getCode, Function.identity()));
+			
+			neighbourhood.getPlaces()
+				.forEach(d -> d.setPlace(places.get(d.getPlaceCode())));
+		}
+		
+		return neighbourhood;
+	}
+	
+	@Override
+	public Optional<PlacePath> findPath(Long placeId, Long targetPlaceId, boolean throughClosedExits) {
+		
+		// Every existing place is in the world graph
+		if (!worldGraph.contains(placeId)) {
+			throw new EntityNotFoundException(LocalizedMessages.PLACE_NOT_FOUND, placeId);
+		}
+		
+		if (!worldGraph.contains(targetPlaceId)) {
+			throw new EntityNotFoundException(LocalizedMessages.PLACE_NOT_FOUND, targetPlaceId);
+		}
+		
+		return worldGraph.findPath(placeId, targetPlaceId, throughClosedExits);
+	}
 }
@@ -0,0 +1,167 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import com.cailleach.mudengine.world.model.PlaceAttrEntity;
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.model.PlaceExitEntity;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceExit;
+
+/**
+ * An update request of a place, along with the state of the place it was first applied to.
+ * 
+ * If the update conflicts with a concurrent one (the place changed before it was committed)
+ * it may be applied again over the current state of the place, as long as the request only
+ * changes attributes: each attribute change is taken as a delta from the state the request
+ * was first applied to.  Two hits of 10 HP on a place with 100 HP leave it with 80 HP,
+ * whatever the order they're committed.
+ * 
+ * Requests changing the place class or its exits aren't merged, and neither are requests
+ * carrying a version other than the current one (the state they were built upon is unknown).
+ */
+class PlaceUpdate {
+	
+	private final Place request;
+	
+	/**
+	 * Attributes of the place when the request was first applied
+	 */
+	private Map<String, Integer> baseAttrs;
+	
+	private String baseClassCode;
+	
+	private boolean mergeable;
+	
+	PlaceUpdate(Place request) {
+		this.request = request;
+	}
+	
+	/**
+	 * Request to be applied over the current state of the place.
+	 * That's the request itself the first time; when retrying, the request attribute
+	 * changes are merged into the current attributes of the place.
+	 * 
+	 * @param dbPlace - place about to be changed
+	 * @return
+	 * @throws ObjectOptimisticLockingFailureException if the request can't be applied to this place
+	 */
+	Place applyTo(PlaceEntity dbPlace) {
+		
+		if (baseAttrs==null) {
+			
+			if ((request.getVersion()!=null) && !request.getVersion().equals(dbPlace.getVersion())) {
+				throw new ObjectOptimisticLockingFailureException(PlaceEntity.class, dbPlace.getCode());
+			}
+			
+			baseAttrs = attrsOf(dbPlace);
+			baseClassCode = dbPlace.getPlaceClass().getCode();
+			
+			mergeable = baseClassCode.equals(request.getClassCode()) &&
+					sameExits(request.getExits(), dbPlace.getExits());
+			
+			return request;
+		}
+		
+		// The attributes of a place that changed its class meanwhile mean something else now
+		if (!baseClassCode.equals(dbPlace.getPlaceClass().getCode())) {
+			
+			mergeable = false;
+			
+			throw new ObjectOptimisticLockingFailureException(PlaceEntity.class, dbPlace.getCode());
+		}
+		
+		Place mergedRequest = new Place();
+		
+		mergedRequest.setCode(request.getCode());
+		mergedRequest.setClassCode(baseClassCode);
+		mergedRequest.setVersion(dbPlace.getVersion());
+		mergedRequest.setAttrs(mergeAttrs(attrsOf(dbPlace)));
+		
+		// Exits are left as they are
+		mergedRequest.setExits(null);
+		
+		return mergedRequest;
+	}
+	
+	/**
+	 * Whether this update can be applied again after conflicting with a concurrent one
+	 */
+	boolean isMergeable() {
+		return mergeable;
+	}
+	
+	/**
+	 * Apply the attribute changes of the request over the current attributes of the place.
+	 * Attributes not changed by the request keep their current values.
+	 */
+	private Map<String, Integer> mergeAttrs(Map<String, Integer> currentAttrs) {
+		
+		Map<String, Integer> mergedAttrs = new HashMap<>(currentAttrs);
+		
+		// Attributes removed by the request
+		baseAttrs.keySet().stream()
+			.filter(d -> !request.getAttrs().containsKey(d))
+			.forEach(mergedAttrs::remove);
+		
+		for(Map.Entry<String, Integer> curAttr: request.getAttrs().entrySet()) {
+			
+			Integer baseValue = baseAttrs.get(curAttr.getKey());
+			Integer currentValue = currentAttrs.get(curAttr.getKey());
+			
+			if ((baseValue==null) || (currentValue==null)) {
+				
+				// Added by the request (or removed meanwhile): the request value is taken
+				mergedAttrs.put(curAttr.getKey(), curAttr.getValue());
+			
+			} else if (!baseValue.equals(curAttr.getValue())) {
+				
+				// Changed by the request: the same change is applied to the current value
+				mergedAttrs.put(curAttr.getKey(), currentValue + (curAttr.getValue() - baseValue));
+			}
+		}
+		
+		return mergedAttrs;
+	}
+	
+	private static Map<String, Integer> attrsOf(PlaceEntity dbPlace) {
+		
+		Map<String, Integer> attrs = new HashMap<>();
+		
+		for(PlaceAttrEntity curAttr: dbPlace.getAttrs()) {
+			attrs.put(curAttr.getCode(), curAttr.getValue());
+		}
+		
+		return attrs;
+	}
+	
+	/**
+	 * Whether the exits of the request leave the exits of the place as they are
+	 * (no exits in the request means no change, see PlaceServiceImpl.internalSyncExits)
+	 */
+	private static boolean sameExits(Map<String, PlaceExit> requestExits, Set<PlaceExitEntity> dbExits) {
+		
+		if (requestExits==null) {
+			return true;
+		}
+		
+		if (requestExits.size()!=dbExits.size()) {
+			return false;
+		}
+		
+		return dbExits.stream()
+				.allMatch(d -> {
+					
+					PlaceExit requestExit = requestExits.get(d.getDirection());
+					
+					return (requestExit!=null) &&
+							(requestExit.isOpened()==d.isOpened()) &&
+							(requestExit.isVisible()==d.isVisible()) &&
+							(requestExit.isLocked()==d.isLocked());
+				});
+	}
+}
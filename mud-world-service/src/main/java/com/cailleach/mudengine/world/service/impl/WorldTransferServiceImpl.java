@@ -0,0 +1,385 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.world.model.PlaceClassEntity;
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.repository.PlaceClassRepository;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.rest.dto.PlaceExit;
+import com.cailleach.mudengine.world.rest.dto.WorldImportResult;
+import com.cailleach.mudengine.world.rest.dto.WorldRecord;
+import com.cailleach.mudengine.world.service.WorldTransferService;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
+import com.cailleach.mudengine.world.service.converter.todto.PlaceClassConverter;
+import com.cailleach.mudengine.world.service.converter.todto.PlaceConverter;
+import com.cailleach.mudengine.world.service.graph.WorldGraph;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Whole world export and import, as newline delimited JSON.
+ * 
+ * The import goes straight to the tables through JDBC batches, bypassing the
+ * place repository: no entity is loaded and no notification is sent.  Place codes
+ * are reserved from the sequence in blocks, the same way Hibernate does, and exits
+ * are written after all places, as they may lead to places further ahead in the import.
+ */
+@Service
+@RequiredArgsConstructor
+public class WorldTransferServiceImpl implements WorldTransferService {
+	
+	private static final Logger log = LoggerFactory.getLogger(WorldTransferServiceImpl.class);
+	
+	/**
+	 * Rows sent in each JDBC batch, places read at once on export and place codes reserved at once on import
+	 */
+	private static final int BATCH_SIZE = 1000;
+	
+	private static final String NEXT_PLACE_CODES =
+			"select nextval('mud_place_seq') from generate_series(1, ?)";
+	
+	private static final String INSERT_PLACE_CLASS =
+			"insert into MUD_PLACE_CLASS (CODE, NAME, DEFAULT_DESCRIPTION, SIZE_CAPACITY, WEIGHT_CAPACITY, "
+			+ "PARENT_CLASS_CODE, DEMISED_CLASS_CODE, BUILD_COST, BUILD_EFFORT) "
+			+ "values (?, ?, ?, ?, ?, ?, ?, ?, ?) on conflict do nothing";
+	
+	private static final String INSERT_PLACE_CLASS_ATTR =
+			"insert into MUD_PLACE_CLASS_ATTR (CLASS_CODE, CODE, VALUE) values (?, ?, ?) on conflict do nothing";
+	
+	private static final String INSERT_PLACE =
+			"insert into MUD_PLACE (CODE, CLASS_CODE, NAME, DESCRIPTION, VERSION) values (?, ?, ?, ?, 0)";
+	
+	private static final String INSERT_PLACE_ATTR =
+			"insert into MUD_PLACE_ATTR (PLACE_CODE, CODE, VALUE) values (?, ?, ?)";
+	
+	private static final String INSERT_PLACE_EXIT =
+			"insert into MUD_PLACE_EXIT (PLACE_CODE, DIRECTION, OPENED, VISIBLE, LOCKED, LOCKABLE, TARGET_PLACE_CODE) "
+			+ "values (?, ?, ?, ?, ?, ?, ?)";
+	
+	private final JdbcTemplate jdbcTemplate;
+	
+	private final TransactionTemplate transactionTemplate;
+	
+	private final ObjectMapper objectMapper;
+	
+	private final PlaceRepository placeRepository;
+	
+	private final PlaceClassRepository placeClassRepository;
+	
+	private final PlaceClassCatalog placeClassCatalog;
+	
+	private final WorldGraph worldGraph;
+	
+	@Override
+	public void exportWorld(OutputStream out) throws IOException {
+		
+		try (SequenceWriter writer = objectMapper.copy()
+				.setSerializationInclusion(JsonInclude.Include.NON_NULL)
+				.writer()
+				.withRootValueSeparator("\n")
+				.writeValues(out)) {
+			
+			for(PlaceClassEntity curClass: placeClassRepository.findAll()) {
+				
+				WorldRecord record = new WorldRecord();
+				record.setPlaceClass(PlaceClassConverter.convert(curClass));
+				
+				writer.write(record);
+			}
+			
+			List<Long> placeCodes = new ArrayList<>(placeRepository.findAllCodes());
+			placeCodes.sort(null);
+			
+			for(int i=0;i<placeCodes.size();i+=BATCH_SIZE) {
+				
+				for(PlaceEntity curPlace: placeRepository.findViewByCodeIn(placeCodes.subList(i, Math.min(i + BATCH_SIZE, placeCodes.size())))) {
+					
+					WorldRecord record = new WorldRecord();
+					record.setPlace(exportPlace(curPlace));
+					
+					writer.write(record);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Place as stored: the class is referenced by its code, and name and description
+	 * aren't filled with the class defaults.  Versions start over in the importing world.
+	 */
+	private Place exportPlace(PlaceEntity dbPlace) {
+		
+		Place place = PlaceConverter.convert(dbPlace, 
+				placeClassCatalog.findPlaceClass(dbPlace.getPlaceClass().getCode()).orElse(null));
+		
+		place.setPlaceClass(null);
+		place.setVersion(null);
+		place.setName(dbPlace.getName());
+		place.setDescription(dbPlace.getDescription());
+		
+		return place;
+	}
+	
+	@Override
+	public WorldImportResult importWorld(InputStream in) {
+		
+		long start = System.currentTimeMillis();
+		
+		WorldImportResult result = transactionTemplate.execute(status -> {
+			
+			try {
+				return new WorldImport().run(in).toResult();
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		
+		// New places and exits (and maybe new place classes)
+		placeClassCatalog.reload();
+		worldGraph.reload();
+		
+		result.setElapsedMillis(System.currentTimeMillis() - start);
+		
+		log.info("world imported: {} place classes, {} places, {} attributes, {} exits in {} ms",
+				result.getPlaceClasses(), result.getPlaces(), result.getAttrs(), result.getExits(), result.getElapsedMillis());
+		
+		return result;
+	}
+	
+	/**
+	 * State of one import
+	 */
+	private class WorldImport {
+		
+		private final Batch placeClasses = new Batch(INSERT_PLACE_CLASS);
+		
+		private final Batch placeClassAttrs = new Batch(INSERT_PLACE_CLASS_ATTR);
+		
+		private final Batch places = new Batch(INSERT_PLACE);
+		
+		private final Batch attrs = new Batch(INSERT_PLACE_ATTR);
+		
+		private final Batch exits = new Batch(INSERT_PLACE_EXIT);
+		
+		/**
+		 * Code in the import x code given to the place
+		 */
+		private final Map<Long, Long> placeCodes = new HashMap<>();
+		
+		private long[] reservedCodes = new long[0];
+		
+		private int nextReservedCode;
+		
+		private long exitCount;
+		
+		WorldImport run(InputStream in) throws IOException {
+			
+			// Exits are kept aside until all places are in
+			Path pendingExits = Files.createTempFile("world-import", ".exits");
+			
+			try {
+				try (MappingIterator<WorldRecord> records = objectMapper.readerFor(WorldRecord.class).readValues(in);
+						DataOutputStream exitsOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pendingExits)))) {
+					
+					while (records.hasNextValue()) {
+						
+						WorldRecord record = records.nextValue();
+						
+						if (record.getPlaceClass()!=null) {
+							addPlaceClass(record.getPlaceClass());
+						}
+						
+						if (record.getPlace()!=null) {
+							addPlace(record.getPlace(), exitsOut);
+						}
+					}
+				}
+				
+				flushPlaces();
+				
+				try (DataInputStream exitsIn = new DataInputStream(new BufferedInputStream(Files.newInputStream(pendingExits)))) {
+					
+					for(long i=0;i<exitCount;i++) {
+						addExit(exitsIn);
+					}
+				}
+				
+				exits.flush();
+			
+			} finally {
+				Files.delete(pendingExits);
+			}
+			
+			return this;
+		}
+		
+		WorldImportResult toResult() {
+			
+			WorldImportResult result = new WorldImportResult();
+			
+			result.setPlaceClasses(placeClasses.getTotal());
+			result.setPlaces(places.getTotal());
+			result.setAttrs(attrs.getTotal());
+			result.setExits(exits.getTotal());
+			
+			return result;
+		}
+		
+		private void addPlaceClass(PlaceClass placeClass) {
+			
+			placeClasses.add(placeClass.getPlaceClassCode(), placeClass.getName(), placeClass.getDescription(),
+					placeClass.getSizeCapacity(), placeClass.getWeightCapacity(), placeClass.getParentClassCode(),
+					placeClass.getDemisePlaceClassCode(), placeClass.getBuildCost(), placeClass.getBuildEffort());
+			
+			placeClass.getAttrs()
+				.forEach((code, value) -> placeClassAttrs.add(placeClass.getPlaceClassCode(), code, value));
+		}
+		
+		private void addPlace(Place place, DataOutputStream exitsOut) throws IOException {
+			
+			long placeCode = nextPlaceCode();
+			
+			if (place.getCode()!=null) {
+				placeCodes.put(place.getCode(), placeCode);
+			}
+			
+			places.add(placeCode, place.getClassCode(), place.getName(), place.getDescription());
+			
+			place.getAttrs()
+				.forEach((code, value) -> attrs.add(placeCode, code, value));
+			
+			for(Map.Entry<String, PlaceExit> curExit: place.getExits().entrySet()) {
+				
+				if (curExit.getValue().getTargetPlaceCode()!=null) {
+					
+					exitsOut.writeLong(placeCode);
+					exitsOut.writeUTF(curExit.getKey());
+					exitsOut.writeBoolean(curExit.getValue().isOpened());
+					exitsOut.writeBoolean(curExit.getValue().isVisible());
+					exitsOut.writeBoolean(curExit.getValue().isLocked());
+					exitsOut.writeBoolean(curExit.getValue().isLockable());
+					exitsOut.writeLong(curExit.getValue().getTargetPlaceCode());
+					
+					exitCount++;
+				}
+			}
+			
+			if (places.size()==BATCH_SIZE) {
+				flushPlaces();
+			}
+		}
+		
+		private void addExit(DataInputStream exitsIn) throws IOException {
+			
+			long placeCode = exitsIn.readLong();
+			String direction = exitsIn.readUTF();
+			boolean opened = exitsIn.readBoolean();
+			boolean visible = exitsIn.readBoolean();
+			boolean locked = exitsIn.readBoolean();
+			boolean lockable = exitsIn.readBoolean();
+			long targetPlaceCode = exitsIn.readLong();
+			
+			// Targets out of the import are places already in database
+			exits.add(placeCode, direction, opened, visible, locked, lockable,
+					placeCodes.getOrDefault(targetPlaceCode, targetPlaceCode));
+			
+			if (exits.size()==BATCH_SIZE) {
+				exits.flush();
+			}
+		}
+		
+		/**
+		 * Places refer to their classes, attributes to their places
+		 */
+		private void flushPlaces() {
+			
+			placeClasses.flush();
+			placeClassAttrs.flush();
+			places.flush();
+			attrs.flush();
+		}
+		
+		private long nextPlaceCode() {
+			
+			if (nextReservedCode==reservedCodes.length) {
+				
+				// As with the pooled optimizer, each value of the sequence closes a block of codes
+				reservedCodes = jdbcTemplate.queryForList(NEXT_PLACE_CODES, Long.class, BATCH_SIZE / PlaceEntity.CODE_ALLOCATION_SIZE)
+						.stream()
+						.flatMapToLong(d -> LongStream.rangeClosed(d - PlaceEntity.CODE_ALLOCATION_SIZE + 1, d))
+						.filter(d -> d > 0)
+						.toArray();
+				
+				nextReservedCode = 0;
+			}
+			
+			return reservedCodes[nextReservedCode++];
+		}
+	}
+	
+	/**
+	 * Rows waiting to be sent in one JDBC batch
+	 */
+	private class Batch {
+		
+		private final String sql;
+		
+		private final List<Object[]> rows = new ArrayList<>();
+		
+		private long total;
+		
+		Batch(String sql) {
+			this.sql = sql;
+		}
+		
+		void add(Object... row) {
+			rows.add(row);
+		}
+		
+		int size() {
+			return rows.size();
+		}
+		
+		long getTotal() {
+			return total;
+		}
+		
+		void flush() {
+			
+			if (!rows.isEmpty()) {
+				
+				jdbcTemplate.batchUpdate(sql, rows);
+				
+				total += rows.size();
+				rows.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package com.cailleach.mudengine.world.service.graph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.model.PlaceExitEntity;
+import com.cailleach.mudengine.world.repository.PlaceExitRepository;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.PlaceNeighbourhood;
+import com.cailleach.mudengine.world.rest.dto.PlacePath;
+import com.cailleach.mudengine.world.service.converter.todb.PlaceExitEntityConverter;
+
+@ExtendWith(MockitoExtension.class)
+class WorldGraphTests {
+	
+	// A corridor going east (1 -> 2 -> 3 -> 4) and a shortcut through the north (1 -> 10 -> 4)
+	private static final Long START = 1L;
+	private static final Long SHORTCUT = 10L;
+	private static final Long END = 4L;
+	private static final Long NEW_PLACE = 11L;
+	
+	private static final int MAX_NEIGHBOURHOOD_DEPTH = 3;
+	private static final int MAX_NEIGHBOURHOOD_SIZE = 4;
+	
+	@Mock
+	private PlaceRepository mockRepository;
+	
+	@Mock
+	private PlaceExitRepository mockExitRepository;
+	
+	private WorldGraph graph;
+	
+	@BeforeEach
+	public void setup() {
+		
+		graph = new WorldGraph(mockRepository, mockExitRepository, MAX_NEIGHBOURHOOD_DEPTH, MAX_NEIGHBOURHOOD_SIZE);
+		
+		graph.update(place(1L, Map.of("EAST", 2L, "NORTH", SHORTCUT)));
+		graph.update(place(2L, Map.of("EAST", 3L)));
+		graph.update(place(3L, Map.of("EAST", END)));
+		graph.update(place(SHORTCUT, Map.of("EAST", END)));
+		graph.update(place(END, Map.of()));
+	}
+	
+	@Test
+	void testShortestPath() {
+		
+		PlacePath path = graph.findPath(START, END, false).orElseThrow();
+		
+		assertEquals(START, path.getFromPlaceCode());
+		assertEquals(END, path.getToPlaceCode());
+		
+		assertEquals(List.of("NORTH", "EAST"), directions(path));
+		assertEquals(List.of(SHORTCUT, END), path.getSteps().stream().map(PlacePath.Step::getPlaceCode).toList());
+	}
+	
+	@Test
+	void testSamePlace() {
+		
+		assertTrue(graph.findPath(START, START, false).orElseThrow().getSteps().isEmpty());
+	}
+	
+	@Test
+	void testOneWayExits() {
+		
+		// Exits only lead from one place to the other
+		assertTrue(graph.findPath(END, START, false).isEmpty());
+	}
+	
+	@Test
+	void testClosedExits() {
+		
+		PlaceEntity start = place(START, Map.of("EAST", 2L, "NORTH", SHORTCUT));
+		start.getExits().stream()
+			.filter(d -> d.getDirection().equals("NORTH"))
+			.forEach(d -> d.setOpened(false));
+		
+		graph.update(start);
+		
+		// The long way, unless the closed exit can be opened
+		assertEquals(List.of("EAST", "EAST", "EAST"), directions(graph.findPath(START, END, false).orElseThrow()));
+		assertEquals(List.of("NORTH", "EAST"), directions(graph.findPath(START, END, true).orElseThrow()));
+		
+		start.getExits().stream()
+			.filter(d -> d.getDirection().equals("NORTH"))
+			.forEach(d -> d.setLocked(true));
+		
+		graph.update(start);
+		
+		// Locked exits are never taken
+		assertEquals(List.of("EAST", "EAST", "EAST"), directions(graph.findPath(START, END, true).orElseThrow()));
+	}
+	
+	@Test
+	void testRemovePlace() {
+		
+		graph.remove(SHORTCUT);
+		
+		// The exit leading to it is gone as well
+		assertEquals(List.of("EAST", "EAST", "EAST"), directions(graph.findPath(START, END, false).orElseThrow()));
+		assertTrue(graph.findPath(START, SHORTCUT, false).isEmpty());
+		
+		// A new place takes the index left behind
+		graph.update(place(END, Map.of("SOUTH", NEW_PLACE)));
+		graph.update(place(NEW_PLACE, Map.of()));
+		
+		assertEquals(List.of("EAST", "EAST", "EAST", "SOUTH"), directions(graph.findPath(START, NEW_PLACE, false).orElseThrow()));
+	}
+	
+	@Test
+	void testNeighbourhood() {
+		
+		PlaceNeighbourhood neighbourhood = graph.findNeighbourhood(START, 1).orElseThrow();
+		
+		assertEquals(1, neighbourhood.getDepth());
+		assertFalse(neighbourhood.isTruncated());
+		
+		assertEquals(Map.of(START, 0, 2L, 1, SHORTCUT, 1), distances(neighbourhood));
+		
+		// Nearest first
+		assertEquals(START, neighbourhood.getPlaces().get(0).getPlaceCode());
+	}
+	
+	@Test
+	void testNeighbourhoodThroughClosedExits() {
+		
+		PlaceEntity start = place(START, Map.of("EAST", 2L, "NORTH", SHORTCUT));
+		start.getExits().forEach(d -> {
+			d.setOpened(false);
+			d.setLocked(true);
+		});
+		
+		graph.update(start);
+		
+		assertEquals(Map.of(START, 0, 2L, 1, SHORTCUT, 1), distances(graph.findNeighbourhood(START, 1).orElseThrow()));
+	}
+	
+	@Test
+	void testNeighbourhoodCaps() {
+		
+		PlaceNeighbourhood neighbourhood = graph.findNeighbourhood(START, 99).orElseThrow();
+		
+		assertEquals(MAX_NEIGHBOURHOOD_DEPTH, neighbourhood.getDepth());
+		
+		// Five places are reachable, only four are returned
+		assertTrue(neighbourhood.isTruncated());
+		assertEquals(MAX_NEIGHBOURHOOD_SIZE, neighbourhood.getPlaces().size());
+		
+		// Unknown places have no neighbourhood
+		assertTrue(graph.findNeighbourhood(NEW_PLACE, 1).isEmpty());
+	}
+	
+	@Test
+	void testReload() {
+		
+		PlaceExitEntity inside = PlaceExitEntityConverter.build(START, "IN", NEW_PLACE);
+		
+		when(mockRepository.findAllCodes()).thenReturn(List.of(START, NEW_PLACE));
+		when(mockExitRepository.findAll()).thenReturn(List.of(inside));
+		
+		graph.reload();
+		
+		// Non-standard directions are kept as well
+		assertEquals(List.of("IN"), directions(graph.findPath(START, NEW_PLACE, false).orElseThrow()));
+		
+		// Places not in database anymore are gone
+		assertTrue(graph.contains(NEW_PLACE));
+		assertFalse(graph.contains(END));
+	}
+	
+	private static PlaceEntity place(Long code, Map<String, Long> exits) {
+		
+		PlaceEntity place = new PlaceEntity();
+		place.setCode(code);
+		
+		Set<PlaceExitEntity> placeExits = place.getExits();
+		
+		exits.forEach((direction, target) ->
+			placeExits.add(PlaceExitEntityConverter.build(code, direction, target))
+		);
+		
+		return place;
+	}
+	
+	private static Map<Long, Integer> distances(PlaceNeighbourhood neighbourhood) {
+		
+		return neighbourhood.getPlaces().stream()
+				.collect(Collectors.toMap(PlaceNeighbourhood.Neighbour::getPlaceCode, PlaceNeighbourhood.Neighbour::getDistance));
+	}
+	
+	private static List<String> directions(PlacePath path) {
+		return path.getSteps().stream().map(PlacePath.Step::getDirection).toList();
+	}
+}
@@ -0,0 +1,108 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.service.converter.todb.PlaceSnapshotConverter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationAspectTests {
+
+	@Mock
+	private NotificationService mockNotificationService;
+	
+	@Mock
+	private PlaceRepository mockRepository;
+	
+	@Mock
+	private EntityManager mockEntityManager;
+	
+	@Mock
+	private ProceedingJoinPoint mockJoinPoint;
+	
+	@Mock
+	private PlatformTransactionManager mockTransactionManager;
+	
+	private NotificationAspect aspect;
+	
+	@BeforeEach
+	public void setup() {
+		
+		aspect = new NotificationAspect(mockNotificationService, mockRepository, mockEntityManager,
+				new TransactionTemplate(mockTransactionManager), new SimpleMeterRegistry());
+	}
+	
+	@Test
+	void testCompareWithLoadedState() throws Throwable {
+		
+		PlaceEntity afterPlace = PlaceTestData.loadMudPlace(PlaceTestData.READ_PLACE_ID);
+		PlaceEntity beforePlace = PlaceSnapshotConverter.snapshot(afterPlace);
+		
+		afterPlace.setLoadedState(beforePlace);
+		afterPlace.getExits().iterator().next().setOpened(false);
+		
+		when(mockJoinPoint.proceed()).thenReturn(afterPlace);
+		
+		aspect.comparePlaces(mockJoinPoint, afterPlace);
+		
+		// The loaded state is used, no extra read
+		verify(mockNotificationService).handlePlaceChange(beforePlace, afterPlace);
+		verify(mockRepository, never()).findForUpdateByCode(ArgumentMatchers.anyLong());
+		verify(mockEntityManager, never()).detach(ArgumentMatchers.any());
+		
+		// The saved state is the new loaded state
+		assertNotNull(afterPlace.getLoadedState());
+	}
+	
+	@Test
+	void testCompareWithoutLoadedState() throws Throwable {
+		
+		PlaceEntity afterPlace = PlaceTestData.loadMudPlace(PlaceTestData.READ_PLACE_ID);
+		PlaceEntity beforePlace = PlaceTestData.loadMudPlace(PlaceTestData.READ_PLACE_ID);
+		
+		when(mockRepository.findForUpdateByCode(PlaceTestData.READ_PLACE_ID)).thenReturn(Optional.of(beforePlace));
+		when(mockJoinPoint.proceed()).thenReturn(afterPlace);
+		
+		aspect.comparePlaces(mockJoinPoint, afterPlace);
+		
+		// Without a snapshot, the place is read again
+		verify(mockEntityManager).detach(afterPlace);
+		verify(mockNotificationService).handlePlaceChange(beforePlace, afterPlace);
+	}
+	
+	@Test
+	void testCreateKeepsLoadedState() throws Throwable {
+		
+		PlaceEntity newPlace = new PlaceEntity();
+		PlaceEntity savedPlace = new PlaceEntity();
+		savedPlace.setCode(PlaceTestData.READ_PLACE_ID);
+		
+		when(mockJoinPoint.proceed()).thenReturn(savedPlace);
+		
+		aspect.comparePlaces(mockJoinPoint, newPlace);
+		
+		// Further saves of the new place will be compared against this state
+		assertNotNull(savedPlace.getLoadedState());
+		verify(mockRepository, never()).findForUpdateByCode(ArgumentMatchers.anyLong());
+	}
+}
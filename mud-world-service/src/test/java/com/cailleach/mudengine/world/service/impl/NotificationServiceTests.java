@@ -1,5 +1,6 @@
 package com.cailleach.mudengine.world.service.impl;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
@@ -10,8 +11,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.jms.core.JmsTemplate;
 
 import com.cailleach.mudengine.common.utils.NotificationMessage;
 import com.cailleach.mudengine.common.utils.NotificationMessage.EnumNotificationEvent;
@@ -19,7 +20,8 @@ import com.cailleach.mudengine.world.model.PlaceEntity;
 import com.cailleach.mudengine.world.model.PlaceExitEntity;
 import com.cailleach.mudengine.world.model.pk.PlaceExitEntityPK;
 
-import jakarta.jms.Destination;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 class NotificationServiceTests {
@@ -29,7 +31,19 @@ class NotificationServiceTests {
 	private static final Long NEW_EXIT_TARGET = 2L;
 	
 	@Mock
-	private JmsTemplate jmsTemplate;
+	private NotificationPublisher publisher;
+	
+	@Mock
+	private NotificationOutbox outbox;
+	
+	@Mock
+	private NotificationCoalescer coalescer;
+	
+	@Mock
+	private NotificationDispatcher dispatcher;
+	
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 	
 	@InjectMocks
 	private NotificationService service;
@@ -51,10 +65,11 @@ class NotificationServiceTests {
 				.event(EnumNotificationEvent.PLACE_DESTROY)
 			.build();
 		
-		verify(jmsTemplate).convertAndSend((Destination)ArgumentMatchers.any(), 
-				ArgumentMatchers.eq(placeNotification), 
+		verify(publisher).publish(
+				ArgumentMatchers.argThat(l -> l.contains(placeNotification)), 
 				ArgumentMatchers.any());
 		
+		assertEquals(1.0, meterRegistry.counter(NotificationService.DISPATCHED_METRIC, "event", "PLACE_DESTROY").count());
 	}
 	
 	@Test
@@ -81,8 +96,8 @@ class NotificationServiceTests {
 				.event(EnumNotificationEvent.PLACE_CLASS_CHANGE)
 			.build();
 		
-		verify(jmsTemplate).convertAndSend((Destination)ArgumentMatchers.any(), 
-				ArgumentMatchers.eq(placeClassNotification), 
+		verify(publisher).publish(
+				ArgumentMatchers.argThat(l -> l.contains(placeClassNotification)), 
 				ArgumentMatchers.any());		
 	}
 	
@@ -121,12 +136,12 @@ class NotificationServiceTests {
 				.event(EnumNotificationEvent.PLACE_EXIT_CREATE)
 			.build();
 		
-		verify(jmsTemplate).convertAndSend((Destination)ArgumentMatchers.any(), 
-				ArgumentMatchers.eq(placeExitNotification), 
+		verify(publisher).publish(
+				ArgumentMatchers.argThat(l -> l.contains(placeExitNotification)), 
 				ArgumentMatchers.any());
 		
-		verify(jmsTemplate).convertAndSend((Destination)ArgumentMatchers.any(), 
-				ArgumentMatchers.eq(placeExit2Notification), 
+		verify(publisher).publish(
+				ArgumentMatchers.argThat(l -> l.contains(placeExit2Notification)), 
 				ArgumentMatchers.any());
 	}
 	
@@ -151,8 +166,8 @@ class NotificationServiceTests {
 				.event(EnumNotificationEvent.PLACE_EXIT_CLOSE)
 			.build();
 		
-		verify(jmsTemplate).convertAndSend((Destination)ArgumentMatchers.any(), 
-				ArgumentMatchers.eq(placeExitNotification), 
+		verify(publisher).publish(
+				ArgumentMatchers.argThat(l -> l.contains(placeExitNotification)), 
 				ArgumentMatchers.any());		
 		
 	}
@@ -178,8 +193,8 @@ class NotificationServiceTests {
 				.event(EnumNotificationEvent.PLACE_EXIT_LOCK)
 			.build();
 		
-		verify(jmsTemplate).convertAndSend((Destination)ArgumentMatchers.any(), 
-				ArgumentMatchers.eq(placeExitNotification), 
+		verify(publisher).publish(
+				ArgumentMatchers.argThat(l -> l.contains(placeExitNotification)), 
 				ArgumentMatchers.any());		
 		
 	}
@@ -206,8 +221,8 @@ class NotificationServiceTests {
 				.event(EnumNotificationEvent.PLACE_EXIT_OPEN)
 			.build();
 		
-		verify(jmsTemplate).convertAndSend((Destination)ArgumentMatchers.any(), 
-				ArgumentMatchers.eq(placeExitNotification), 
+		verify(publisher).publish(
+				ArgumentMatchers.argThat(l -> l.contains(placeExitNotification)), 
 				ArgumentMatchers.any());		
 		
 	}
@@ -233,8 +248,8 @@ class NotificationServiceTests {
 				.event(EnumNotificationEvent.PLACE_EXIT_UNLOCK)
 			.build();
 		
-		verify(jmsTemplate).convertAndSend((Destination)ArgumentMatchers.any(), 
-				ArgumentMatchers.eq(placeExitNotification), 
+		verify(publisher).publish(
+				ArgumentMatchers.argThat(l -> l.contains(placeExitNotification)), 
 				ArgumentMatchers.any());		
 		
 	}
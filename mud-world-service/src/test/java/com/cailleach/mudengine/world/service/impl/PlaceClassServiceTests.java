@@ -2,40 +2,61 @@ package com.cailleach.mudengine.world.service.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import com.cailleach.mudengine.world.model.PlaceClassEntity;
 import com.cailleach.mudengine.world.repository.PlaceClassRepository;
 import com.cailleach.mudengine.world.rest.dto.PlaceClass;
+import com.cailleach.mudengine.world.rest.dto.PlaceClassLineage;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
 
 @ExtendWith(MockitoExtension.class)
 class PlaceClassServiceTests {
 
+	private static final String PARENT_PLACE_CLASS = "TEST";
+	private static final String CHILD_PLACE_CLASS = "TESTCHILD";
+	private static final String UNKNOWN_PLACE_CLASS = "NOWHERE";
+	
+	private static final String HP_ATTR = "HP";
+	private static final String MAXHP_ATTR = "MAXHP";
+	private static final String DEF_ATTR = "DEF";
+	
+	private static final Integer CHILD_HP_VALUE = 70;
+	private static final Integer CHILD_DEF_VALUE = 5;
+	private static final Integer PARENT_MAXHP_VALUE = 500;
+	
 	@Mock
 	private PlaceClassRepository mockClassRepository;
 
 	
-	@InjectMocks
 	private PlaceClassServiceImpl service;
 	
 	
 	@BeforeEach
 	public void setup() throws IOException {
 		
-		given(mockClassRepository.findById(ArgumentMatchers.anyString()))
-			.willAnswer(i -> {
+		service = new PlaceClassServiceImpl(new PlaceClassCatalog(mockClassRepository));
+		
+		lenient().when(mockClassRepository.findById(ArgumentMatchers.anyString()))
+			.thenAnswer(i -> {
 				
 				return Optional.of(
 						PlaceTestData.loadMudPlaceClass(i.getArgument(0, String.class))
@@ -71,4 +92,78 @@ class PlaceClassServiceTests {
 				)
 				);
 	}
+	
+	@Test
+	void testGetPlaceClassCached() {
+		
+		service.getPlaceClass(PlaceTestData.UPDATE_CLASS_PLACE_CLASS);
+		service.getPlaceClass(PlaceTestData.UPDATE_CLASS_PLACE_CLASS);
+		
+		// Only the first lookup goes to the database
+		verify(mockClassRepository, times(1)).findById(PlaceTestData.UPDATE_CLASS_PLACE_CLASS);
+	}
+	
+	@Test
+	void testGetPlaceClassAfterWarmUp() throws IOException {
+		
+		PlaceClassCatalog catalog = new PlaceClassCatalog(mockClassRepository);
+		
+		when(mockClassRepository.findAll())
+			.thenReturn(List.of(PlaceTestData.loadMudPlaceClass(PlaceTestData.UPDATE_CLASS_PLACE_CLASS)));
+		
+		catalog.warmUp();
+		
+		PlaceClass responseClass = new PlaceClassServiceImpl(catalog)
+				.getPlaceClass(PlaceTestData.UPDATE_CLASS_PLACE_CLASS);
+		
+		assertEquals(PlaceTestData.UPDATE_CLASS_PLACE_CLASS, responseClass.getPlaceClassCode());
+		
+		// Served entirely from the catalog
+		verify(mockClassRepository, never()).findById(ArgumentMatchers.anyString());
+	}
+	
+	@Test
+	void testUnknownPlaceClassCached() {
+		
+		PlaceClassCatalog catalog = new PlaceClassCatalog(mockClassRepository);
+		
+		// Stubbed without calling findById, as the default answer reads the class from the test data
+		doReturn(Optional.empty()).when(mockClassRepository).findById(UNKNOWN_PLACE_CLASS);
+		
+		assertTrue(catalog.find(UNKNOWN_PLACE_CLASS).isEmpty());
+		assertTrue(catalog.find(UNKNOWN_PLACE_CLASS).isEmpty());
+		
+		// Only the first lookup goes to the database ...
+		verify(mockClassRepository, times(1)).findById(UNKNOWN_PLACE_CLASS);
+		
+		// ... until the catalog is reloaded
+		catalog.reload();
+		
+		assertTrue(catalog.find(UNKNOWN_PLACE_CLASS).isEmpty());
+		
+		verify(mockClassRepository, times(2)).findById(UNKNOWN_PLACE_CLASS);
+	}
+	
+	@Test
+	void testGetPlaceClassLineage() {
+		
+		PlaceClassLineage lineage = service.getPlaceClassLineage(CHILD_PLACE_CLASS);
+		
+		assertEquals(List.of(PARENT_PLACE_CLASS), lineage.getAncestors());
+		
+		// Own attributes override the inherited ones
+		assertEquals(CHILD_HP_VALUE, lineage.getEffectiveAttrs().get(HP_ATTR));
+		assertEquals(CHILD_DEF_VALUE, lineage.getEffectiveAttrs().get(DEF_ATTR));
+		
+		// ... and the others are inherited
+		assertEquals(PARENT_MAXHP_VALUE, lineage.getEffectiveAttrs().get(MAXHP_ATTR));
+	}
+	
+	@Test
+	void testIsA() {
+		
+		assertTrue(service.isA(CHILD_PLACE_CLASS, PARENT_PLACE_CLASS));
+		assertTrue(service.isA(CHILD_PLACE_CLASS, CHILD_PLACE_CLASS));
+		assertFalse(service.isA(PARENT_PLACE_CLASS, CHILD_PLACE_CLASS));
+	}
 }
@@ -0,0 +1,261 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.common.utils.NotificationMessage;
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.repository.PlaceClassRepository;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamage;
+import com.cailleach.mudengine.world.rest.dto.PlaceDamageResult;
+import com.cailleach.mudengine.world.service.cache.PlaceCache;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
+import com.cailleach.mudengine.world.service.graph.WorldGraph;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class PlaceDamageServiceTests {
+	
+	private static final Long DEMISED_PLACE_ID = 6L;
+	private static final String DEMISED_PLACE_CLASS = "RUIN";
+	
+	private static final Integer MAXHP = 500;
+	
+	private static final long PLACE_CACHE_MAX_WEIGHT = 1000L;
+	
+	@Mock
+	private JdbcTemplate mockJdbcTemplate;
+	
+	@Mock
+	private TransactionTemplate mockTransactionTemplate;
+	
+	@Mock
+	private PlaceRepository mockRepository;
+	
+	@Mock
+	private PlaceClassRepository mockClassRepository;
+	
+	@Mock
+	private NotificationService mockNotificationService;
+	
+	@Mock
+	private WorldGraph mockWorldGraph;
+	
+	private PlaceCache placeCache;
+	
+	/**
+	 * Rows returned by the damage update: place code, HP, MAXHP
+	 */
+	private final List<int[]> damagedRows = new ArrayList<>();
+	
+	private PlaceDamageServiceImpl service;
+	
+	@BeforeEach
+	public void setup() throws SQLException {
+		
+		placeCache = new PlaceCache(new SimpleMeterRegistry(), PLACE_CACHE_MAX_WEIGHT);
+		
+		service = new PlaceDamageServiceImpl(mockJdbcTemplate, mockTransactionTemplate, mockRepository,
+				new PlaceClassCatalog(mockClassRepository), mockNotificationService, placeCache, mockWorldGraph);
+		
+		lenient().when(mockTransactionTemplate.execute(any()))
+			.thenAnswer(i -> i.getArgument(0, TransactionCallback.class).doInTransaction(null));
+		
+		lenient().when(mockClassRepository.findById(anyString()))
+			.thenAnswer(i -> Optional.of(PlaceTestData.loadMudPlaceClass(i.getArgument(0, String.class))));
+		
+		lenient().doAnswer(i -> {
+			
+			RowCallbackHandler handler = i.getArgument(1, RowCallbackHandler.class);
+			
+			for(int[] curRow: damagedRows) {
+				handler.processRow(row(curRow));
+			}
+			
+			return null;
+		
+		}).when(mockJdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+	}
+	
+	@Test
+	void testDamageInOneStatement() {
+		
+		when(mockJdbcTemplate.queryForList(anyString(), eq(Long.class), any()))
+			.thenReturn(List.of(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID));
+		
+		damagedRows.add(new int[] { PlaceTestData.READ_PLACE_ID.intValue(), 35, MAXHP });
+		damagedRows.add(new int[] { PlaceTestData.TARGET_PLACE_ID.intValue(), 10, 0 });
+		
+		Place cachedPlace = new Place();
+		cachedPlace.setCode(PlaceTestData.READ_PLACE_ID);
+		placeCache.put(cachedPlace);
+		
+		PlaceDamageResult result = service.damagePlaces(List.of(
+				damage(PlaceTestData.TARGET_PLACE_ID, -5),
+				damage(PlaceTestData.READ_PLACE_ID, -10),
+				damage(PlaceTestData.READ_PLACE_ID, -5)));
+		
+		assertEquals(List.of(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID), result.getDamagedPlaceCodes());
+		assertTrue(result.getSkippedPlaceCodes().isEmpty());
+		assertTrue(result.getDemisedPlaceCodes().isEmpty());
+		assertTrue(result.getRemovedPlaceCodes().isEmpty());
+		
+		// All the damage of a place is added up, places go in code order
+		verify(mockJdbcTemplate).query(startsWith("update MUD_PLACE_ATTR"), any(RowCallbackHandler.class),
+				eq(new Long[] { PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID }),
+				eq(new Integer[] { -15, -5 }));
+		
+		verify(mockJdbcTemplate).update(startsWith("update MUD_PLACE set VERSION"), any(Object[].class));
+		
+		// No place is loaded
+		verify(mockRepository, never()).findForUpdateByCodeIn(anyCollection());
+		verify(mockNotificationService, never()).dispatchNotifications(any());
+		
+		assertTrue(placeCache.getAllPresent(List.of(PlaceTestData.READ_PLACE_ID)).isEmpty());
+	}
+	
+	@Test
+	void testDamageDestroysInBulk() throws IOException {
+		
+		when(mockJdbcTemplate.queryForList(anyString(), eq(Long.class), any()))
+			.thenReturn(List.of(PlaceTestData.READ_PLACE_ID, DEMISED_PLACE_ID));
+		
+		damagedRows.add(new int[] { PlaceTestData.READ_PLACE_ID.intValue(), 0, MAXHP });
+		damagedRows.add(new int[] { DEMISED_PLACE_ID.intValue(), -3, MAXHP });
+		
+		PlaceEntity removedPlace = PlaceTestData.loadMudPlace(PlaceTestData.READ_PLACE_ID);
+		PlaceEntity demisedPlace = PlaceTestData.loadMudPlace(DEMISED_PLACE_ID);
+		
+		when(mockRepository.findForUpdateByCodeIn(List.of(PlaceTestData.READ_PLACE_ID, DEMISED_PLACE_ID)))
+			.thenReturn(List.of(removedPlace, demisedPlace));
+		
+		NotificationMessage destroyNotification = notification(NotificationMessage.EnumNotificationEvent.PLACE_DESTROY);
+		NotificationMessage classChangeNotification = notification(NotificationMessage.EnumNotificationEvent.PLACE_CLASS_CHANGE);
+		
+		when(mockNotificationService.handlePlaceDestroy(removedPlace)).thenReturn(List.of(destroyNotification));
+		when(mockNotificationService.handlePlaceChange(any(PlaceEntity.class), eq(demisedPlace))).thenReturn(List.of(classChangeNotification));
+		
+		PlaceDamageResult result = service.damagePlaces(List.of(
+				damage(PlaceTestData.READ_PLACE_ID, -MAXHP),
+				damage(DEMISED_PLACE_ID, -MAXHP)));
+		
+		assertEquals(List.of(DEMISED_PLACE_ID), result.getDemisedPlaceCodes());
+		assertEquals(List.of(PlaceTestData.READ_PLACE_ID), result.getRemovedPlaceCodes());
+		
+		assertEquals(DEMISED_PLACE_CLASS, demisedPlace.getPlaceClass().getCode());
+		
+		verify(mockRepository).deleteAll(List.of(removedPlace));
+		verify(mockRepository, never()).save(any(PlaceEntity.class));
+		
+		// One single dispatch for the whole batch
+		verify(mockNotificationService, times(1)).dispatchNotifications(List.of(destroyNotification, classChangeNotification));
+		
+		verify(mockWorldGraph).remove(PlaceTestData.READ_PLACE_ID);
+		verify(mockWorldGraph, never()).remove(DEMISED_PLACE_ID);
+	}
+	
+	@Test
+	void testDamageSkipsPlacesWithoutHP() {
+		
+		when(mockJdbcTemplate.queryForList(anyString(), eq(Long.class), any()))
+			.thenReturn(List.of(PlaceTestData.READ_PLACE_ID, DEMISED_PLACE_ID));
+		
+		// The second place has a MAXHP but no HP row: the update doesn't touch it
+		damagedRows.add(new int[] { PlaceTestData.READ_PLACE_ID.intValue(), 35, MAXHP });
+		
+		PlaceDamageResult result = service.damagePlaces(List.of(
+				damage(PlaceTestData.READ_PLACE_ID, -10),
+				damage(DEMISED_PLACE_ID, -10)));
+		
+		assertEquals(List.of(PlaceTestData.READ_PLACE_ID), result.getDamagedPlaceCodes());
+		assertEquals(List.of(DEMISED_PLACE_ID), result.getSkippedPlaceCodes());
+		
+		// ... nor destroys it
+		assertTrue(result.getDemisedPlaceCodes().isEmpty());
+		assertTrue(result.getRemovedPlaceCodes().isEmpty());
+		
+		verify(mockRepository, never()).findForUpdateByCodeIn(anyCollection());
+	}
+	
+	@Test
+	void testDamageUnknownPlaces() {
+		
+		when(mockJdbcTemplate.queryForList(anyString(), eq(Long.class), any())).thenReturn(List.of());
+		
+		PlaceDamageResult result = service.damagePlaces(List.of(damage(PlaceTestData.READ_PLACE_ID, -1)));
+		
+		assertTrue(result.getDamagedPlaceCodes().isEmpty());
+		assertEquals(List.of(PlaceTestData.READ_PLACE_ID), result.getSkippedPlaceCodes());
+		
+		verify(mockJdbcTemplate, never()).update(anyString(), any(Object[].class));
+		verify(mockJdbcTemplate, never()).query(anyString(), any(RowCallbackHandler.class), any(), any());
+	}
+	
+	@Test
+	void testNoDamage() {
+		
+		assertTrue(service.damagePlaces(List.of()).getDamagedPlaceCodes().isEmpty());
+		
+		verify(mockTransactionTemplate, never()).execute(any());
+	}
+	
+	private static PlaceDamage damage(Long placeCode, int hpDelta) {
+		
+		PlaceDamage damage = new PlaceDamage();
+		damage.setPlaceCode(placeCode);
+		damage.setHpDelta(hpDelta);
+		
+		return damage;
+	}
+	
+	private static NotificationMessage notification(NotificationMessage.EnumNotificationEvent event) {
+		
+		return NotificationMessage.builder()
+				.entity(NotificationMessage.EnumEntity.PLACE)
+				.event(event)
+				.build();
+	}
+	
+	private static ResultSet row(int[] values) throws SQLException {
+		
+		ResultSet rs = mock(ResultSet.class);
+		
+		when(rs.getLong(1)).thenReturn((long) values[0]);
+		when(rs.getInt(2)).thenReturn(values[1]);
+		when(rs.getInt(3)).thenReturn(values[2]);
+		
+		return rs;
+	}
+}
@@ -0,0 +1,335 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.world.model.PlaceAttrEntity;
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.repository.PlaceAttrRepository;
+import com.cailleach.mudengine.world.repository.PlaceClassRepository;
+import com.cailleach.mudengine.world.repository.PlaceExitRepository;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceExit;
+import com.cailleach.mudengine.world.service.cache.PlaceCache;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
+import com.cailleach.mudengine.world.service.graph.WorldGraph;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Concurrent updates of the same place, over a fake database holding
+ * the HP and the version of the test place.
+ */
+@ExtendWith(MockitoExtension.class)
+class PlaceServiceConcurrencyTests {
+	
+	private static final String HP_ATTR = "HP";
+	private static final int INITIAL_HP = 400;
+	private static final int HIT = 1;
+	
+	private static final int THREADS = 8;
+	private static final int HITS_PER_THREAD = 25;
+	
+	private static final long PLACE_CACHE_MAX_WEIGHT = 1000L;
+	private static final int MAX_NEIGHBOURHOOD_DEPTH = 10;
+	private static final int MAX_NEIGHBOURHOOD_SIZE = 1000;
+	private static final int MAX_BULK_IDS = 300;
+	
+	@Mock
+	private PlaceRepository mockRepository;
+	
+	@Mock
+	private PlaceExitRepository mockExitRepository;
+	
+	@Mock
+	private PlaceAttrRepository mockAttrRepository;
+	
+	@Mock
+	private PlaceClassRepository mockClassRepository;
+	
+	@Mock
+	private NotificationService mockNotificationService;
+	
+	@Mock
+	private TransactionTemplate mockTransactionTemplate;
+	
+	private final Object database = new Object();
+	
+	private int storedHP;
+	
+	private int storedVersion;
+	
+	/**
+	 * When set, another hit is committed right before the next save
+	 */
+	private final AtomicBoolean concurrentHit = new AtomicBoolean();
+	
+	private PlaceServiceImpl service;
+	
+	@BeforeEach
+	public void setup() {
+		
+		storedHP = INITIAL_HP;
+		storedVersion = 0;
+		
+		service = new PlaceServiceImpl(mockRepository,
+				mockAttrRepository,
+				new PlaceClassCatalog(mockClassRepository),
+				new PlaceCache(new SimpleMeterRegistry(), PLACE_CACHE_MAX_WEIGHT),
+				new WorldGraph(mockRepository, mockExitRepository, MAX_NEIGHBOURHOOD_DEPTH, MAX_NEIGHBOURHOOD_SIZE),
+				mockNotificationService,
+				mockTransactionTemplate,
+				new SimpleMeterRegistry(),
+				MAX_BULK_IDS);
+		
+		lenient().when(mockTransactionTemplate.execute(ArgumentMatchers.any()))
+			.thenAnswer(i -> i.getArgument(0, TransactionCallback.class).doInTransaction(null));
+		
+		lenient().when(mockClassRepository.findById(ArgumentMatchers.anyString()))
+			.thenAnswer(i -> Optional.of(PlaceTestData.loadMudPlaceClass(i.getArgument(0, String.class))));
+		
+		lenient().when(mockRepository.findViewByCode(PlaceTestData.READ_PLACE_ID))
+			.thenAnswer(i -> Optional.of(loadStoredPlace()));
+		
+		lenient().when(mockRepository.findForUpdateByCode(PlaceTestData.READ_PLACE_ID))
+			.thenAnswer(i -> {
+				
+				PlaceEntity dbPlace = loadStoredPlace();
+				
+				// Let other updates get in between the read and the save
+				Thread.yield();
+				
+				return Optional.of(dbPlace);
+			});
+		
+		lenient().when(mockRepository.findNamesByCodeIn(ArgumentMatchers.anyCollection()))
+			.thenReturn(List.of());
+		
+		// Saves are refused if the place changed since it was read, as the version check
+		// does when the transaction commits
+		lenient().when(mockRepository.save(ArgumentMatchers.any(PlaceEntity.class)))
+			.thenAnswer(i -> {
+				
+				PlaceEntity placeBeingSaved = i.getArgument(0, PlaceEntity.class);
+				
+				synchronized(database) {
+					
+					if (concurrentHit.getAndSet(false)) {
+						storedHP -= HIT;
+						storedVersion++;
+					}
+					
+					if (placeBeingSaved.getVersion()!=storedVersion) {
+						throw new ObjectOptimisticLockingFailureException(PlaceEntity.class, placeBeingSaved.getCode());
+					}
+					
+					storedHP = getHP(placeBeingSaved);
+					storedVersion++;
+					
+					placeBeingSaved.setVersion(storedVersion);
+				}
+				
+				return placeBeingSaved;
+			});
+	}
+	
+	@Test
+	void testConflictingHitsAreMerged() {
+		
+		Place place = service.getPlace(PlaceTestData.READ_PLACE_ID);
+		
+		concurrentHit.set(true);
+		
+		Place responsePlace = service.updatePlace(PlaceTestData.READ_PLACE_ID, hit(place));
+		
+		// Both hits are taken
+		assertEquals(INITIAL_HP - 2 * HIT, storedHP);
+		assertEquals(INITIAL_HP - 2 * HIT, responsePlace.getAttrs().get(HP_ATTR));
+		assertEquals(storedVersion, responsePlace.getVersion());
+		
+		verify(mockRepository, times(2)).findForUpdateByCode(PlaceTestData.READ_PLACE_ID);
+	}
+	
+	@Test
+	void testStaleVersionIsRejected() {
+		
+		Place place = service.getPlace(PlaceTestData.READ_PLACE_ID);
+		
+		// The place changes after being read by the caller
+		synchronized(database) {
+			storedVersion++;
+		}
+		
+		Place request = hit(place);
+		
+		assertThrows(OptimisticLockingFailureException.class,
+				() -> service.updatePlace(PlaceTestData.READ_PLACE_ID, request));
+		
+		verify(mockRepository, never()).save(ArgumentMatchers.any(PlaceEntity.class));
+		
+		// Reading it again gives the current version
+		assertEquals(storedVersion, service.getPlace(PlaceTestData.READ_PLACE_ID).getVersion());
+	}
+	
+	@Test
+	void testConflictingExitChangeIsRejected() {
+		
+		Place place = service.getPlace(PlaceTestData.READ_PLACE_ID);
+		
+		Place request = hit(place);
+		request.getExits().values().forEach(d -> d.setOpened(false));
+		
+		concurrentHit.set(true);
+		
+		assertThrows(OptimisticLockingFailureException.class,
+				() -> service.updatePlace(PlaceTestData.READ_PLACE_ID, request));
+		
+		// Only the other hit is taken, and no retry is attempted
+		assertEquals(INITIAL_HP - HIT, storedHP);
+		
+		verify(mockRepository, times(1)).findForUpdateByCode(PlaceTestData.READ_PLACE_ID);
+	}
+	
+	@Test
+	void testConcurrentHitsLoseNoUpdate() throws Exception {
+		
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		
+		try {
+			
+			List<Future<?>> hitters = new ArrayList<>();
+			
+			for(int i = 0; i < THREADS; i++) {
+				hitters.add(executor.submit(this::hitRepeatedly));
+			}
+			
+			for(Future<?> curHitter: hitters) {
+				curHitter.get(30, TimeUnit.SECONDS);
+			}
+		
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		int expectedHP = INITIAL_HP - THREADS * HITS_PER_THREAD * HIT;
+		
+		assertEquals(expectedHP, storedHP);
+		
+		// The cache ends with the last version as well
+		assertEquals(expectedHP, service.getPlace(PlaceTestData.READ_PLACE_ID).getAttrs().get(HP_ATTR));
+	}
+	
+	/**
+	 * Hit the place as a client would: read it, take the hit and update it,
+	 * reading it again when the update is refused.
+	 */
+	private void hitRepeatedly() {
+		
+		for(int i = 0; i < HITS_PER_THREAD; i++) {
+			
+			boolean hitTaken = false;
+			
+			while (!hitTaken) {
+				
+				try {
+					service.updatePlace(PlaceTestData.READ_PLACE_ID, hit(service.getPlace(PlaceTestData.READ_PLACE_ID)));
+					
+					hitTaken = true;
+				
+				} catch(OptimisticLockingFailureException e) {
+					// Read it again and retry
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Update request taking a hit from the place read
+	 * (cached places are shared, so the request is a copy)
+	 */
+	private static Place hit(Place place) {
+		
+		Place request = new Place();
+		
+		request.setCode(place.getCode());
+		request.setClassCode(place.getClassCode());
+		request.setVersion(place.getVersion());
+		request.setExits(new HashMap<>());
+		request.setAttrs(new HashMap<>(place.getAttrs()));
+		
+		place.getExits().forEach((direction, exit) -> {
+			
+			PlaceExit requestExit = new PlaceExit();
+			
+			requestExit.setOpened(exit.isOpened());
+			requestExit.setVisible(exit.isVisible());
+			requestExit.setLocked(exit.isLocked());
+			requestExit.setTargetPlaceCode(exit.getTargetPlaceCode());
+			
+			request.getExits().put(direction, requestExit);
+		});
+		
+		request.getAttrs().merge(HP_ATTR, -HIT, Integer::sum);
+		
+		return request;
+	}
+	
+	private PlaceEntity loadStoredPlace() {
+		
+		PlaceEntity dbPlace;
+		
+		try {
+			dbPlace = PlaceTestData.loadMudPlace(PlaceTestData.READ_PLACE_ID);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		synchronized(database) {
+			
+			dbPlace.setVersion(storedVersion);
+			
+			dbPlace.getAttrs().stream()
+				.filter(d -> d.getCode().equals(HP_ATTR))
+				.forEach(d -> d.setValue(storedHP));
+		}
+		
+		return dbPlace;
+	}
+	
+	private static int getHP(PlaceEntity dbPlace) {
+		
+		return dbPlace.getAttrs().stream()
+				.filter(d -> d.getCode().equals(HP_ATTR))
+				.mapToInt(PlaceAttrEntity::getValue)
+				.findFirst()
+				.orElseThrow();
+	}
+}
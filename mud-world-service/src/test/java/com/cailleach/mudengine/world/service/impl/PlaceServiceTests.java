@@ -3,25 +3,42 @@ package com.cailleach.mudengine.world.service.impl;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.stream.LongStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.cailleach.mudengine.common.exception.EntityNotFoundException;
+import com.cailleach.mudengine.common.exception.IllegalParameterException;
+import com.cailleach.mudengine.world.model.PlaceAttrEntity;
 import com.cailleach.mudengine.world.model.PlaceEntity;
 import com.cailleach.mudengine.world.model.PlaceClassEntity;
+import com.cailleach.mudengine.world.model.PlaceExitEntity;
+import com.cailleach.mudengine.world.model.projection.PlaceNameProjection;
+import com.cailleach.mudengine.world.repository.PlaceAttrRepository;
 import com.cailleach.mudengine.world.repository.PlaceClassRepository;
 import com.cailleach.mudengine.world.repository.PlaceExitRepository;
 import com.cailleach.mudengine.world.repository.PlaceRepository;
 import com.cailleach.mudengine.world.rest.dto.Place;
+import com.cailleach.mudengine.world.rest.dto.PlaceNeighbourhood;
+import com.cailleach.mudengine.world.rest.dto.PlacePath;
+import com.cailleach.mudengine.world.service.cache.PlaceCache;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
+import com.cailleach.mudengine.world.service.converter.todb.PlaceAttrEntityConverter;
+import com.cailleach.mudengine.world.service.graph.WorldGraph;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 class PlaceServiceTests {
@@ -44,6 +61,11 @@ class PlaceServiceTests {
 	private static final Long CREATE_PLACE_EXIT_TARGET = 1L;
 	
 	private static final Long DELETE_DEMISED_PLACE_ID = 6L;
+	
+	private static final long PLACE_CACHE_MAX_WEIGHT = 1000L;
+	private static final int MAX_NEIGHBOURHOOD_DEPTH = 10;
+	private static final int MAX_NEIGHBOURHOOD_SIZE = 1000;
+	private static final int MAX_BULK_IDS = 300;
 	private static final String DELETE_DEMISED_PLACE_CLASS = "RUIN";
 
 	@Mock
@@ -52,16 +74,58 @@ class PlaceServiceTests {
 	@Mock
 	private PlaceExitRepository mockExitRepository;
 	
+	@Mock
+	private PlaceAttrRepository mockAttrRepository;
+	
 	@Mock
 	private PlaceClassRepository mockClassRepository;
 	
-	@InjectMocks
+	@Mock
+	private NotificationService mockNotificationService;
+	
+	@Mock
+	private TransactionTemplate mockTransactionTemplate;
+	
+	private WorldGraph worldGraph;
+	
+	private boolean inTransaction;
+	
+	private int savesOutOfTransaction;
+	
+	private SimpleMeterRegistry meterRegistry;
+	
 	private PlaceServiceImpl service;
 	
 	
 	@BeforeEach
 	public void setup() throws IOException {
 		
+		worldGraph = new WorldGraph(mockRepository, mockExitRepository, MAX_NEIGHBOURHOOD_DEPTH, MAX_NEIGHBOURHOOD_SIZE);
+		
+		meterRegistry = new SimpleMeterRegistry();
+		
+		service = new PlaceServiceImpl(mockRepository,
+				mockAttrRepository,
+				new PlaceClassCatalog(mockClassRepository),
+				new PlaceCache(new SimpleMeterRegistry(), PLACE_CACHE_MAX_WEIGHT),
+				worldGraph,
+				mockNotificationService,
+				mockTransactionTemplate,
+				meterRegistry,
+				MAX_BULK_IDS);
+		
+		lenient().when(mockTransactionTemplate.execute(ArgumentMatchers.any()))
+			.thenAnswer(i -> {
+				
+				inTransaction = true;
+				
+				try {
+					return i.getArgument(0, TransactionCallback.class).doInTransaction(null);
+				} finally {
+					inTransaction = false;
+				}
+			});
+		
 		lenient().when(mockClassRepository.findById(ArgumentMatchers.anyString()))
 			.thenAnswer(i -> {
 				
@@ -70,7 +134,7 @@ class PlaceServiceTests {
 						);
 			});
 		
-		lenient().when(mockRepository.findById(ArgumentMatchers.anyLong()))
+		lenient().when(mockRepository.findViewByCode(ArgumentMatchers.anyLong()))
 			.thenAnswer(i -> {
 				
 				return Optional.of(
@@ -78,11 +142,51 @@ class PlaceServiceTests {
 						);
 			});
 		
+		lenient().when(mockRepository.findForUpdateByCode(ArgumentMatchers.anyLong()))
+			.thenAnswer(i -> {
+				
+				return Optional.of(
+						PlaceTestData.loadMudPlace(i.getArgument(0, Long.class))
+						);
+			});
+		
+		lenient().when(mockRepository.findViewByCodeIn(ArgumentMatchers.anyCollection()))
+			.thenAnswer(i -> {
+				
+				List<PlaceEntity> places = new ArrayList<>();
+				
+				for(Object curCode: i.getArgument(0, Collection.class)) {
+					
+					// Only the places in test data exist
+					if (PlaceTestData.EXISTING_PLACE_IDS.contains(curCode)) {
+						places.add(PlaceTestData.loadMudPlace((Long)curCode));
+					}
+				}
+				
+				return places;
+			});
+		
+		lenient().when(mockRepository.findNamesByCodeIn(ArgumentMatchers.anyCollection()))
+			.thenAnswer(i -> {
+				
+				List<PlaceNameProjection> names = new ArrayList<>();
+				
+				for(Object curCode: i.getArgument(0, Collection.class)) {
+					names.add(buildNameProjection(PlaceTestData.loadMudPlace((Long)curCode)));
+				}
+				
+				return names;
+			});
+		
 		lenient().when(mockRepository.save(ArgumentMatchers.any(PlaceEntity.class)))
 			.thenAnswer(i -> {
 			
 			PlaceEntity placeBeingSaved = i.getArgument(0, PlaceEntity.class);
 			
+			if (!inTransaction) {
+				savesOutOfTransaction++;
+			}
+			
 			// Is it being created?
 			if (placeBeingSaved.getCode()==null) {
 				
@@ -113,6 +217,39 @@ class PlaceServiceTests {
 
 		// Checking if all attrs from mudclass are present
 		checkAttrMap(createdPlace, PlaceServiceTests.CREATE_PLACE_CLASS);
+		
+		// The new place can be reached from its neighbour and the other way around
+		assertEquals(PlaceServiceTests.CREATE_PLACE_ID, 
+				service.findPath(PlaceServiceTests.CREATE_PLACE_EXIT_TARGET, PlaceServiceTests.CREATE_PLACE_ID, false)
+					.map(d -> d.getSteps().get(0).getPlaceCode())
+					.orElse(null));
+		
+		assertTrue(service.findPath(PlaceServiceTests.CREATE_PLACE_ID, PlaceServiceTests.CREATE_PLACE_EXIT_TARGET, false).isPresent());
+	}
+	
+	@Test
+	void testCreatePlaceInOneTransaction() {
+		
+		service.createPlace(
+				PlaceServiceTests.CREATE_PLACE_CLASS, 
+				PlaceServiceTests.CREATE_PLACE_EXIT_DIRECTION,
+				PlaceServiceTests.CREATE_PLACE_EXIT_TARGET);
+		
+		// New place saved once (for its code) and everything written in a single flush
+		// of the same transaction
+		verify(mockTransactionTemplate, times(1)).execute(ArgumentMatchers.any());
+		verify(mockRepository, times(1)).save(ArgumentMatchers.any(PlaceEntity.class));
+		
+		// New place notified as a change from the empty place, along with the target place
+		verify(mockNotificationService, times(1)).handlePlaceChange(
+				ArgumentMatchers.argThat(d -> d.getAttrs().isEmpty() && d.getExits().isEmpty()), 
+				ArgumentMatchers.argThat(d -> PlaceServiceTests.CREATE_PLACE_ID.equals(d.getCode())));
+		verify(mockNotificationService, times(1)).handlePlaceChange(
+				ArgumentMatchers.any(PlaceEntity.class), 
+				ArgumentMatchers.argThat(d -> PlaceServiceTests.CREATE_PLACE_EXIT_TARGET.equals(d.getCode())));
+		verify(mockNotificationService, times(1)).dispatchNotifications(ArgumentMatchers.any());
+		
+		assertEquals(0, savesOutOfTransaction);
 	}
 	
 	@Test
@@ -138,6 +275,99 @@ class PlaceServiceTests {
 		checkAttrMap(responsePlace, responsePlace.getPlaceClass().getPlaceClassCode());
 	}
 	
+	@Test
+	void testReadPlaceExitNames() throws IOException {
+		
+		Place responsePlace = service.getPlace(PlaceTestData.READ_PLACE_ID);
+		
+		PlaceEntity targetPlace = PlaceTestData.loadMudPlace(PlaceTestData.TARGET_PLACE_ID);
+		
+		// All exits must be named after the target place class
+		assertTrue(responsePlace.getExits().values().stream()
+				.allMatch(curExit -> targetPlace.getPlaceClass().getName().equals(curExit.getName()))
+				);
+		
+		// Only the place itself is loaded, the exit names came from one single query
+		verify(mockRepository, times(1)).findViewByCode(ArgumentMatchers.anyLong());
+		verify(mockRepository, times(1)).findNamesByCodeIn(ArgumentMatchers.anyCollection());
+	}
+	
+	@Test
+	void testReadPlaceCached() {
+		
+		service.getPlace(PlaceTestData.READ_PLACE_ID);
+		service.getPlace(PlaceTestData.READ_PLACE_ID);
+		
+		// Only the first read goes to the database
+		verify(mockRepository, times(1)).findViewByCode(PlaceTestData.READ_PLACE_ID);
+	}
+	
+	@Test
+	void testReadPlaces() {
+		
+		// Put one of them in cache
+		service.getPlace(PlaceTestData.TARGET_PLACE_ID);
+		
+		List<Long> placeCodes = service.getPlaces(
+				List.of(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID, PlaceServiceTests.CREATE_PLACE_ID, 
+						PlaceServiceTests.DELETE_DEMISED_PLACE_ID, PlaceTestData.READ_PLACE_ID))
+				.map(Place::getCode)
+				.toList();
+		
+		// In the order requested, with no duplicates and no missing places
+		assertEquals(List.of(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID, PlaceServiceTests.DELETE_DEMISED_PLACE_ID), placeCodes);
+		
+		// Only the places not in cache are read, all at once
+		verify(mockRepository).findViewByCodeIn(List.of(PlaceTestData.READ_PLACE_ID, PlaceServiceTests.CREATE_PLACE_ID, PlaceServiceTests.DELETE_DEMISED_PLACE_ID));
+		verify(mockRepository, times(1)).findViewByCode(ArgumentMatchers.anyLong());
+		
+		// Exit names: once for the cached place, once for all the others
+		verify(mockRepository, times(2)).findNamesByCodeIn(ArgumentMatchers.anyCollection());
+	}
+	
+	@Test
+	void testReadPlacesInChunks() {
+		
+		List<Long> placeCodes = LongStream.rangeClosed(1, 250).boxed().toList();
+		
+		assertEquals(PlaceTestData.EXISTING_PLACE_IDS.size(), service.getPlaces(placeCodes).count());
+		
+		verify(mockRepository, times(3)).findViewByCodeIn(ArgumentMatchers.anyCollection());
+	}
+	
+	@Test
+	void testReadTooManyPlaces() {
+		
+		List<Long> placeCodes = LongStream.rangeClosed(1, MAX_BULK_IDS + 1).boxed().toList();
+		
+		assertThrows(IllegalParameterException.class, () -> service.getPlaces(placeCodes));
+		
+		verify(mockRepository, never()).findViewByCodeIn(ArgumentMatchers.anyCollection());
+	}
+	
+	@Test
+	void testUpdateInvalidatesNeighbours() {
+		
+		// Put the neighbour in cache
+		service.getPlace(PlaceTestData.TARGET_PLACE_ID);
+		
+		Place originalPlace = service.getPlace(PlaceTestData.READ_PLACE_ID);
+		
+		service.updatePlace(PlaceTestData.READ_PLACE_ID, originalPlace);
+		
+		// The updated place is served from cache...
+		service.getPlace(PlaceTestData.READ_PLACE_ID);
+		
+		// ... but the neighbour must be read again
+		service.getPlace(PlaceTestData.TARGET_PLACE_ID);
+		
+		verify(mockRepository, times(2)).findViewByCode(PlaceTestData.TARGET_PLACE_ID);
+		
+		// (once to be shown in getPlace, once to be changed in updatePlace)
+		verify(mockRepository, times(1)).findViewByCode(PlaceTestData.READ_PLACE_ID);
+		verify(mockRepository, times(1)).findForUpdateByCode(PlaceTestData.READ_PLACE_ID);
+	}
+	
 	@Test
 	void testUpdateClass() throws IOException {
 		
@@ -201,6 +431,188 @@ class PlaceServiceTests {
 		assertEquals(PlaceServiceTests.OTHER_ATTR_CHANGED_VALUE, responsePlace.getAttrs().get(PlaceServiceTests.OTHER_ATTR));
 	}
 
+	@Test
+	void testUpdateIsTimed() {
+		
+		Place originalPlace = service.getPlace(PlaceTestData.READ_PLACE_ID);
+		
+		originalPlace.getAttrs().put(PlaceServiceTests.OTHER_ATTR, PlaceServiceTests.OTHER_ATTR_CHANGED_VALUE);
+		
+		service.updatePlace(PlaceTestData.READ_PLACE_ID, originalPlace);
+		
+		assertEquals(1, meterRegistry.get(PlaceServiceImpl.UPDATE_METRIC).tag("outcome", "updated").timer().count());
+		
+		// Each step of the update is timed, the class didn't change
+		List.of("load", "attrs", "health", "exits", "save").forEach(d -> 
+			assertEquals(1, meterRegistry.get(PlaceServiceImpl.UPDATE_STAGE_METRIC).tag("stage", d).timer().count())
+			);
+		
+		assertTrue(meterRegistry.find(PlaceServiceImpl.UPDATE_STAGE_METRIC).tag("stage", "class").timers().isEmpty());
+	}
+
+	@Test
+	void testUpdateAttrDeltas() {
+		
+		when(mockRepository.incrementVersion(PlaceTestData.READ_PLACE_ID)).thenReturn(1);
+		when(mockAttrRepository.addToValue(ArgumentMatchers.eq(PlaceTestData.READ_PLACE_ID), ArgumentMatchers.anyString(), ArgumentMatchers.anyInt())).thenReturn(1);
+		
+		service.updatePlaceAttrs(PlaceTestData.READ_PLACE_ID, Map.of(PlaceServiceTests.OTHER_ATTR, PlaceServiceTests.OTHER_ATTR_CHANGED_VALUE));
+		
+		verify(mockAttrRepository).addToValue(PlaceTestData.READ_PLACE_ID, PlaceServiceTests.OTHER_ATTR, PlaceServiceTests.OTHER_ATTR_CHANGED_VALUE);
+		
+		// Neither the place nor its health are read to be changed
+		verify(mockRepository, never()).findForUpdateByCode(ArgumentMatchers.anyLong());
+		verify(mockAttrRepository, never()).findByIdPlaceCodeAndIdCodeIn(ArgumentMatchers.anyLong(), ArgumentMatchers.anyCollection());
+		verify(mockRepository, never()).save(ArgumentMatchers.any(PlaceEntity.class));
+	}
+	
+	@Test
+	void testUpdateAttrDeltasAboveMAXHP() {
+		
+		PlaceAttrEntity currentHP = healthAttr(PlaceServiceTests.HP_ATTR, PlaceServiceTests.HP_ATTR_ABOVE_VALUE);
+		
+		when(mockRepository.incrementVersion(PlaceTestData.READ_PLACE_ID)).thenReturn(1);
+		when(mockAttrRepository.addToValue(ArgumentMatchers.eq(PlaceTestData.READ_PLACE_ID), ArgumentMatchers.anyString(), ArgumentMatchers.anyInt())).thenReturn(1);
+		when(mockAttrRepository.findByIdPlaceCodeAndIdCodeIn(ArgumentMatchers.eq(PlaceTestData.READ_PLACE_ID), ArgumentMatchers.anyCollection()))
+			.thenReturn(List.of(currentHP, healthAttr(PlaceServiceTests.MAXHP_ATTR, PlaceServiceTests.MAXHP_ATTR_VALUE)));
+		
+		service.updatePlaceAttrs(PlaceTestData.READ_PLACE_ID, Map.of(PlaceServiceTests.HP_ATTR, PlaceServiceTests.HP_ATTR_ABOVE_VALUE));
+		
+		// The HP is capped to MAXHP
+		assertEquals(PlaceServiceTests.MAXHP_ATTR_VALUE, currentHP.getValue());
+		
+		verify(mockRepository, never()).deleteById(ArgumentMatchers.anyLong());
+	}
+	
+	@Test
+	void testUpdateAttrDeltasBelowZero() {
+		
+		when(mockRepository.incrementVersion(PlaceTestData.READ_PLACE_ID)).thenReturn(1);
+		when(mockAttrRepository.addToValue(ArgumentMatchers.eq(PlaceTestData.READ_PLACE_ID), ArgumentMatchers.anyString(), ArgumentMatchers.anyInt())).thenReturn(1);
+		when(mockAttrRepository.findByIdPlaceCodeAndIdCodeIn(ArgumentMatchers.eq(PlaceTestData.READ_PLACE_ID), ArgumentMatchers.anyCollection()))
+			.thenReturn(List.of(
+					healthAttr(PlaceServiceTests.HP_ATTR, PlaceServiceTests.HP_ATTR_ZEROES_VALUE), 
+					healthAttr(PlaceServiceTests.MAXHP_ATTR, PlaceServiceTests.MAXHP_ATTR_VALUE)));
+		
+		service.updatePlaceAttrs(PlaceTestData.READ_PLACE_ID, Map.of(PlaceServiceTests.HP_ATTR, -PlaceServiceTests.MAXHP_ATTR_VALUE));
+		
+		verify(mockRepository).deleteById(PlaceTestData.READ_PLACE_ID);
+		
+		// Everything in the same transaction
+		assertEquals(0, savesOutOfTransaction);
+	}
+	
+	@Test
+	void testUpdateAttrDeltasUnknownAttr() {
+		
+		Map<String, Integer> attrDeltas = Map.of(PlaceServiceTests.OTHER_ATTR, PlaceServiceTests.OTHER_ATTR_CHANGED_VALUE);
+		
+		when(mockRepository.incrementVersion(PlaceTestData.READ_PLACE_ID)).thenReturn(1);
+		
+		EntityNotFoundException e = assertThrows(EntityNotFoundException.class, 
+				() -> service.updatePlaceAttrs(PlaceTestData.READ_PLACE_ID, attrDeltas));
+		
+		assertEquals(PlaceServiceImpl.PLACE_ATTR_NOT_FOUND, e.getMessageKey());
+		
+		// Failing inside the transaction, so the version bump is rolled back with it
+		verify(mockTransactionTemplate).execute(ArgumentMatchers.any());
+		verify(mockAttrRepository, never()).findByIdPlaceCodeAndIdCodeIn(ArgumentMatchers.anyLong(), ArgumentMatchers.anyCollection());
+	}
+	
+	@Test
+	void testUpdateAttrDeltasUnknownPlace() {
+		
+		Map<String, Integer> attrDeltas = Map.of(PlaceServiceTests.HP_ATTR, PlaceServiceTests.HP_ATTR_CHANGED_VALUE);
+		
+		assertThrows(EntityNotFoundException.class, 
+				() -> service.updatePlaceAttrs(PlaceServiceTests.CREATE_PLACE_ID, attrDeltas));
+		
+		verify(mockAttrRepository, never()).addToValue(ArgumentMatchers.anyLong(), ArgumentMatchers.anyString(), ArgumentMatchers.anyInt());
+	}
+
+	@Test
+	void testFindPath() throws IOException {
+		
+		loadWorldGraph();
+		
+		PlacePath path = service.findPath(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID, false)
+				.orElseThrow();
+		
+		assertEquals(1, path.getSteps().size());
+		assertEquals("OUT", path.getSteps().get(0).getDirection());
+		assertEquals(PlaceTestData.TARGET_PLACE_ID, path.getSteps().get(0).getPlaceCode());
+		
+		// The way back is locked
+		assertTrue(service.findPath(PlaceTestData.TARGET_PLACE_ID, PlaceTestData.READ_PLACE_ID, true).isEmpty());
+		
+		// No place is read to find a path
+		verify(mockRepository, never()).findViewByCode(ArgumentMatchers.anyLong());
+	}
+	
+	@Test
+	void testFindPathUnknownPlace() throws IOException {
+		
+		loadWorldGraph();
+		
+		assertThrows(EntityNotFoundException.class, 
+				() -> service.findPath(PlaceTestData.READ_PLACE_ID, PlaceServiceTests.CREATE_PLACE_ID, false));
+	}
+	
+	@Test
+	void testNeighbourhood() throws IOException {
+		
+		loadWorldGraph();
+		
+		PlaceNeighbourhood neighbourhood = service.getNeighbourhood(PlaceTestData.READ_PLACE_ID, 1, true);
+		
+		assertEquals(List.of(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID), 
+				neighbourhood.getPlaces().stream().map(PlaceNeighbourhood.Neighbour::getPlaceCode).toList());
+		
+		assertEquals(List.of(0, 1), 
+				neighbourhood.getPlaces().stream().map(PlaceNeighbourhood.Neighbour::getDistance).toList());
+		
+		// The whole places came in one single read
+		assertTrue(neighbourhood.getPlaces().stream()
+				.allMatch(d -> d.getPlace().getCode().equals(d.getPlaceCode())));
+		
+		verify(mockRepository).findViewByCodeIn(List.of(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID));
+	}
+	
+	@Test
+	void testNeighbourhoodOverBulkLimit() throws IOException {
+		
+		loadWorldGraph();
+		
+		// Neighbourhoods aren't held to the limit of requested places
+		PlaceServiceImpl limitedService = new PlaceServiceImpl(mockRepository,
+				mockAttrRepository,
+				new PlaceClassCatalog(mockClassRepository),
+				new PlaceCache(new SimpleMeterRegistry(), PLACE_CACHE_MAX_WEIGHT),
+				worldGraph,
+				mockNotificationService,
+				mockTransactionTemplate,
+				meterRegistry,
+				1);
+		
+		PlaceNeighbourhood neighbourhood = limitedService.getNeighbourhood(PlaceTestData.READ_PLACE_ID, 1, true);
+		
+		assertEquals(2, neighbourhood.getPlaces().size());
+		
+		assertTrue(neighbourhood.getPlaces().stream()
+				.allMatch(d -> d.getPlace().getCode().equals(d.getPlaceCode())));
+	}
+	
+	@Test
+	void testDeleteRemovesFromWorldGraph() throws IOException {
+		
+		loadWorldGraph();
+		
+		service.destroyPlace(PlaceTestData.TARGET_PLACE_ID);
+		
+		assertThrows(EntityNotFoundException.class, 
+				() -> service.findPath(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID, false));
+	}
+	
 	@Test
 	void testDeleteDemised() throws IOException {
 		
@@ -223,6 +635,50 @@ class PlaceServiceTests {
 	}
 	
 	
+	private static PlaceAttrEntity healthAttr(String code, Integer value) {
+		return PlaceAttrEntityConverter.build(PlaceTestData.READ_PLACE_ID, code, value);
+	}
+	
+	private void loadWorldGraph() throws IOException {
+		
+		List<PlaceExitEntity> dbExits = new ArrayList<>();
+		
+		for(Long curCode: List.of(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID)) {
+			
+			PlaceEntity dbPlace = PlaceTestData.loadMudPlace(curCode);
+			
+			// The test data has no place code in the exits' keys
+			dbPlace.getExits().forEach(d -> d.getPk().setPlaceCode(curCode));
+			dbExits.addAll(dbPlace.getExits());
+		}
+		
+		when(mockRepository.findAllCodes()).thenReturn(List.of(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID));
+		when(mockExitRepository.findAll()).thenReturn(dbExits);
+		
+		worldGraph.reload();
+	}
+	
+	private static PlaceNameProjection buildNameProjection(PlaceEntity dbPlace) {
+		
+		return new PlaceNameProjection() {
+			
+			@Override
+			public Long getCode() {
+				return dbPlace.getCode();
+			}
+
+			@Override
+			public String getName() {
+				return dbPlace.getName();
+			}
+
+			@Override
+			public String getClassName() {
+				return dbPlace.getPlaceClass().getName();
+			}
+		};
+	}
+	
 	private void checkAttrMap(Place changedPlace, String expectedClassName) throws IOException {
 		
 		PlaceClassEntity changedPlaceClass = PlaceTestData.loadMudPlaceClass(expectedClassName);
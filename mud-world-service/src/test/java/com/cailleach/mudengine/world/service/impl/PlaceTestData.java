@@ -2,6 +2,7 @@ package com.cailleach.mudengine.world.service.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Set;
 
 import com.cailleach.mudengine.world.model.PlaceEntity;
 import com.cailleach.mudengine.world.model.PlaceClassEntity;
@@ -20,6 +21,8 @@ public class PlaceTestData {
 	
 	public static final Long TARGET_PLACE_ID = 2L;
 	
+	public static final Set<Long> EXISTING_PLACE_IDS = Set.of(1L, 2L, 6L);
+	
 	private static ObjectMapper jsonMapper = new ObjectMapper();
 	
 	public static PlaceClassEntity loadMudPlaceClass(String className) throws IOException{
@@ -0,0 +1,189 @@
+package com.cailleach.mudengine.world.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cailleach.mudengine.world.model.PlaceEntity;
+import com.cailleach.mudengine.world.repository.PlaceClassRepository;
+import com.cailleach.mudengine.world.repository.PlaceRepository;
+import com.cailleach.mudengine.world.rest.dto.WorldImportResult;
+import com.cailleach.mudengine.world.rest.dto.WorldRecord;
+import com.cailleach.mudengine.world.service.cache.PlaceClassCatalog;
+import com.cailleach.mudengine.world.service.graph.WorldGraph;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+class WorldTransferServiceTests {
+	
+	private static final long FIRST_RESERVED_CODE = 500L;
+	
+	private static final Long OUTSIDE_PLACE_ID = 999L;
+	
+	private static final String WORLD = """
+			{"placeClass":{"placeClassCode":"NEW","name":"New","attrs":{"HP":10}}}
+			{"place":{"code":10,"classCode":"NEW","attrs":{"HP":10},"exits":{"EAST":{"opened":true,"targetPlaceCode":11}}}}
+			{"place":{"code":11,"classCode":"NEW","exits":{"WEST":{"opened":true,"targetPlaceCode":10}}}}
+			{"place":{"code":12,"classCode":"NEW","exits":{"UP":{"locked":true,"targetPlaceCode":999}}}}
+			""";
+	
+	@Mock
+	private JdbcTemplate mockJdbcTemplate;
+	
+	@Mock
+	private TransactionTemplate mockTransactionTemplate;
+	
+	@Mock
+	private PlaceRepository mockRepository;
+	
+	@Mock
+	private PlaceClassRepository mockClassRepository;
+	
+	@Mock
+	private PlaceClassCatalog mockCatalog;
+	
+	@Mock
+	private WorldGraph mockWorldGraph;
+	
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	
+	private WorldTransferServiceImpl service;
+	
+	@BeforeEach
+	public void setup() {
+		
+		service = new WorldTransferServiceImpl(mockJdbcTemplate, mockTransactionTemplate, objectMapper,
+				mockRepository, mockClassRepository, mockCatalog, mockWorldGraph);
+		
+		lenient().when(mockTransactionTemplate.execute(any()))
+			.thenAnswer(i -> i.getArgument(0, TransactionCallback.class).doInTransaction(null));
+		
+		lenient().when(mockJdbcTemplate.queryForList(anyString(), eq(Long.class), any()))
+			.thenAnswer(i -> LongStream.range(0, i.getArgument(2, Integer.class))
+					// Each value closes a block of codes
+					.map(d -> FIRST_RESERVED_CODE + (d + 1) * PlaceEntity.CODE_ALLOCATION_SIZE - 1)
+					.boxed()
+					.toList());
+	}
+	
+	@Test
+	void testImport() {
+		
+		List<List<Object>> placeRows = new ArrayList<>();
+		List<List<Object>> exitRows = new ArrayList<>();
+		
+		when(mockJdbcTemplate.batchUpdate(anyString(), anyList()))
+			.thenAnswer(i -> {
+				
+				List<Object[]> rows = i.getArgument(1);
+				
+				if (i.getArgument(0, String.class).startsWith("insert into MUD_PLACE (")) {
+					rows.forEach(d -> placeRows.add(List.of(d[0], d[1])));
+				}
+				
+				if (i.getArgument(0, String.class).startsWith("insert into MUD_PLACE_EXIT")) {
+					rows.forEach(d -> exitRows.add(List.of(d[0], d[1], d[6])));
+				}
+				
+				return new int[rows.size()];
+			});
+		
+		WorldImportResult result = service.importWorld(stream(WORLD));
+		
+		assertEquals(1, result.getPlaceClasses());
+		assertEquals(3, result.getPlaces());
+		assertEquals(1, result.getAttrs());
+		assertEquals(3, result.getExits());
+		
+		// Places get new codes ...
+		assertEquals(List.of(
+				List.of(FIRST_RESERVED_CODE, "NEW"),
+				List.of(FIRST_RESERVED_CODE + 1, "NEW"),
+				List.of(FIRST_RESERVED_CODE + 2, "NEW")), placeRows);
+		
+		// ... exits lead to them, except the one leading out of the import
+		assertEquals(List.of(
+				List.of(FIRST_RESERVED_CODE, "EAST", FIRST_RESERVED_CODE + 1),
+				List.of(FIRST_RESERVED_CODE + 1, "WEST", FIRST_RESERVED_CODE),
+				List.of(FIRST_RESERVED_CODE + 2, "UP", OUTSIDE_PLACE_ID)), exitRows);
+		
+		// Nothing goes through the repository (and its notifications)
+		verify(mockRepository, never()).save(any(PlaceEntity.class));
+		
+		verify(mockCatalog).reload();
+		verify(mockWorldGraph).reload();
+	}
+	
+	@Test
+	void testImportMalformed() {
+		
+		assertThrows(UncheckedIOException.class, () -> service.importWorld(stream("{\"place\":")));
+		
+		verify(mockWorldGraph, never()).reload();
+	}
+	
+	@Test
+	void testExport() throws IOException {
+		
+		when(mockClassRepository.findAll()).thenReturn(List.of(PlaceTestData.loadMudPlaceClass("TEST")));
+		when(mockRepository.findAllCodes()).thenReturn(List.of(PlaceTestData.TARGET_PLACE_ID, PlaceTestData.READ_PLACE_ID));
+		when(mockRepository.findViewByCodeIn(anyCollection()))
+			.thenReturn(List.of(
+					PlaceTestData.loadMudPlace(PlaceTestData.READ_PLACE_ID),
+					PlaceTestData.loadMudPlace(PlaceTestData.TARGET_PLACE_ID)));
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		service.exportWorld(out);
+		
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		
+		assertEquals(3, lines.length);
+		
+		assertEquals("TEST", objectMapper.readValue(lines[0], WorldRecord.class).getPlaceClass().getPlaceClassCode());
+		
+		WorldRecord placeRecord = objectMapper.readValue(lines[1], WorldRecord.class);
+		
+		assertEquals(PlaceTestData.READ_PLACE_ID, placeRecord.getPlace().getCode());
+		assertEquals("TEST", placeRecord.getPlace().getClassCode());
+		
+		// Only the class code, with no defaults taken from it
+		assertNull(placeRecord.getPlace().getPlaceClass());
+		assertNull(placeRecord.getPlace().getName());
+		assertEquals("teste", placeRecord.getPlace().getDescription());
+		
+		// Places are read in chunks, in code order
+		verify(mockRepository).findViewByCodeIn(List.of(PlaceTestData.READ_PLACE_ID, PlaceTestData.TARGET_PLACE_ID));
+	}
+	
+	private static ByteArrayInputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+}